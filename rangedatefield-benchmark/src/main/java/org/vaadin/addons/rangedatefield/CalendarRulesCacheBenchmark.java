@@ -0,0 +1,69 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building the holiday rules of a session with getting them from a shared {@link CalendarRulesCache}, the
+ * way sessions do at a login peak. Each thread asks for a different region, and the cache holds them all.
+ * <p>
+ * Run with e.g. {@code java -jar target/benchmarks.jar CalendarRulesCacheBenchmark -t 8} to see the cache under
+ * contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalendarRulesCacheBenchmark {
+    private static final int REGIONS = 64;
+
+    @Param({"100", "1000"})
+    public int holidays;
+
+    private CalendarRulesCache cache;
+
+    /**
+     * The region a thread asks for next
+     */
+    @State(Scope.Thread)
+    public static class Region {
+        private int next;
+
+        int next() {
+            return next++ & (REGIONS - 1);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        cache = new CalendarRulesCache(new CalendarRulesCache.Loader() {
+            public CalendarRules load(String region, int year) {
+                return build(Integer.parseInt(region));
+            }
+        }, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public CalendarRules buildRules(Region region) {
+        return build(region.next());
+    }
+
+    @Benchmark
+    public CalendarRules cachedRules(Region region) {
+        return cache.get(Integer.toString(region.next()), 2013);
+    }
+
+    private CalendarRules build(int region) {
+        CalendarRules.Builder builder = new CalendarRules.Builder();
+        Date[] dates = Fixtures.randomDates(holidays, region);
+        builder.excludeDates(dates);
+        for (Date date : dates) {
+            builder.addDateStyleName(date, "holiday");
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,138 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.openjdk.jmh.annotations.*;
+import org.vaadin.addons.rangedatefield.client.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the work {@link VRangeDateField} does outside of the DOM by running its {@link ClientDateData} on the
+ * JVM: decoding the attributes painted by the server and computing the state of the calendar cells while paging
+ * through months. The DOM updates themselves need a browser, so instead of timing them the number of CSS class
+ * changes per navigation is reported as the "classChanges" secondary result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClientUpdateBenchmark {
+    private static final int MONTHS = 24;
+    private static final int CELLS = 42;
+
+    @Param({"100", "10000"})
+    public int excludedDates;
+
+    @Param({"0", "1000", "10000"})
+    public int styledDates;
+
+    @Param({"true", "false"})
+    public boolean compactEncoding;
+
+    private ClientDateData.Attributes fullAttributes;
+    private ClientDateData.Attributes deltaAttributes;
+    private int firstMonth;
+
+    private ClientDateData dateData;
+
+    /**
+     * Number of CSS class names added to or removed from the calendar cells
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ClassChanges {
+        public long classChanges;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            classChanges = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        RangeDateField field = Fixtures.createField(excludedDates, styledDates);
+        field.setCompactEncoding(compactEncoding);
+        RecordingPaintTarget target = new RecordingPaintTarget(true);
+        field.paintContent(target);
+        fullAttributes = target.getClientAttributes();
+
+        field.addDateStyleNames(Arrays.asList(Fixtures.randomDates(10, 6)), "toggled");
+        target = new RecordingPaintTarget(false);
+        field.paintContent(target);
+        deltaAttributes = target.getClientAttributes();
+
+        firstMonth = EpochDays.monthIndex(2012, 1);
+        applyFullUpdate();
+    }
+
+    /**
+     * Decodes all of the dates sent on the first paint of a field
+     */
+    @Benchmark
+    public ClientDateData fullUpdate() {
+        applyFullUpdate();
+        return dateData;
+    }
+
+    /**
+     * Decodes a full update followed by a delta update
+     */
+    @Benchmark
+    public ClientDateData deltaUpdate() {
+        applyFullUpdate();
+        dateData.update(deltaAttributes);
+        return dateData;
+    }
+
+    /**
+     * Pages through two years right after an update, when no month is cached
+     */
+    @Benchmark
+    public long navigateMonthsCold(ClassChanges changes) {
+        dateData.getCells().clear();
+        long result = 0;
+        for (int month = firstMonth; month < firstMonth + MONTHS; month++) {
+            result += renderMonth(month, changes);
+        }
+        return result;
+    }
+
+    /**
+     * Pages back and forth within a year, when all the months are cached
+     */
+    @Benchmark
+    public long navigateMonthsWarm(ClassChanges changes) {
+        long result = 0;
+        for (int month = firstMonth; month < firstMonth + DayCellCache.DEFAULT_MAX_MONTHS - 2; month++) {
+            result += renderMonth(month, changes);
+        }
+        return result;
+    }
+
+    /**
+     * @param month     Month index
+     * @param changes
+     * @return  Number of disabled cells, to keep the work from being optimized away
+     */
+    private int renderMonth(int month, ClassChanges changes) {
+        int firstDay = EpochDays.firstDayOfMonth(month);
+        int firstCell = firstDay - (EpochDays.dayOfWeek(firstDay) + 6) % 7;
+        int disabled = 0;
+        for (int day = firstCell; day < firstCell + CELLS; day++) {
+            DayCellCache.Cell cell = dateData.getCells().get(day);
+            if (cell.isDisabled()) disabled++;
+            // the panel builds new cells for every month, so only the classes the day has are written
+            changes.classChanges += (cell.isDisabled() ? 1 : 0) + (cell.isLoading() ? 1 : 0)
+                    + (cell.getStyleNames() != null ? cell.getStyleNames().size() : 0);
+        }
+        return disabled;
+    }
+
+    private void applyFullUpdate() {
+        dateData = new ClientDateData();
+        dateData.update(fullAttributes);
+    }
+}
@@ -0,0 +1,71 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Builds fields with reproducible pseudo random data for the benchmarks
+ */
+class Fixtures {
+    static final String[] STYLE_NAMES = {"busy-day", "free-day", "birthday", "holiday"};
+    private static final int DAYS = 3 * 366;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param count
+     * @param seed
+     * @return  Random dates in the three years starting with 2012, at random times of the day
+     */
+    static Date[] randomDates(int count, long seed) {
+        return randomDates(count, seed, DAYS);
+    }
+
+    /**
+     * @param count
+     * @param seed
+     * @param days  Number of days starting with 2012-01-01 the dates are spread over
+     * @return  Random dates at random times of the day
+     */
+    static Date[] randomDates(int count, long seed, int days) {
+        Random random = new Random(seed);
+        Calendar calendar = Calendar.getInstance();
+        Date[] result = new Date[count];
+        for (int i = 0; i < count; i++) {
+            calendar.clear();
+            calendar.set(2012, Calendar.JANUARY, 1);
+            calendar.add(Calendar.DAY_OF_YEAR, random.nextInt(days));
+            calendar.add(Calendar.MINUTE, random.nextInt(24 * 60));
+            result[i] = calendar.getTime();
+        }
+        return result;
+    }
+
+    /**
+     * @param excludedDates     Number of excluded dates, spread over enough years to keep most of them distinct
+     * @param styledDates   Number of dates with one or two styles
+     * @return  A field valid in 2012 - 2014 that excludes weekends and the random dates
+     */
+    static RangeDateField createField(int excludedDates, int styledDates) {
+        RangeDateField field = new RangeDateField();
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2012, Calendar.JANUARY, 1);
+        field.setValidFromDate(calendar.getTime());
+        calendar.set(2014, Calendar.DECEMBER, 31);
+        field.setValidToDate(calendar.getTime());
+        field.setExcludeWeekends(true);
+        field.setExcludeDates(randomDates(excludedDates, 1, Math.max(DAYS, excludedDates * 3)));
+
+        Random random = new Random(2);
+        for (Date date : randomDates(styledDates, 3)) {
+            field.addDateStyleName(date, STYLE_NAMES[random.nextInt(STYLE_NAMES.length)]);
+            if (random.nextInt(4) == 0) {
+                field.addDateStyleName(date, STYLE_NAMES[random.nextInt(STYLE_NAMES.length)]);
+            }
+        }
+        return field;
+    }
+}
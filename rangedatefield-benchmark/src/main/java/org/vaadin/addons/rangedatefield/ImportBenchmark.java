@@ -0,0 +1,69 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures importing holiday files with {@link CalendarImporter}. The iCalendar and CSV fixtures are written to a
+ * temporary directory before the measurements and deleted afterwards; they hold the same all-day events, spread
+ * over ten years.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+    @Param({"10000", "200000"})
+    public int events;
+
+    private File icsFile;
+    private File csvFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        icsFile = File.createTempFile("holidays", ".ics");
+        csvFile = File.createTempFile("holidays", ".csv");
+        Writer ics = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(icsFile), "UTF-8"));
+        Writer csv = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile), "UTF-8"));
+        ics.write("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+        csv.write("date,end,style\n");
+        Random random = new Random(events);
+        for (int i = 0; i < events; i++) {
+            String start = String.format("%04d%02d%02d", 2010 + random.nextInt(10), 1 + random.nextInt(12),
+                    1 + random.nextInt(28));
+            ics.write("BEGIN:VEVENT\r\nUID:" + i + "@example.com\r\nDTSTART;VALUE=DATE:" + start + "\r\n"
+                    + "SUMMARY:Holiday number " + i + " with a summary long enough to be folded onto a\r\n"
+                    + "  second line\r\nEND:VEVENT\r\n");
+            csv.write(start.substring(0, 4) + "-" + start.substring(4, 6) + "-" + start.substring(6) + ",,region-"
+                    + random.nextInt(20) + "\n");
+        }
+        ics.write("END:VCALENDAR\r\n");
+        ics.close();
+        csv.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        icsFile.delete();
+        csvFile.delete();
+    }
+
+    @Benchmark
+    public CalendarRules importICalendar() throws IOException {
+        CalendarRules.Builder builder = new CalendarRules.Builder();
+        new CalendarImporter(builder).setStyleName("holiday").importICalendar(icsFile);
+        return builder.build();
+    }
+
+    @Benchmark
+    public CalendarRules importCsv() throws IOException {
+        CalendarRules.Builder builder = new CalendarRules.Builder();
+        new CalendarImporter(builder).setCsvColumns(0, 1, 2).importCsv(csvFile);
+        return builder.build();
+    }
+}
@@ -0,0 +1,68 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link RangeDateField#paintContent} into a {@link RecordingPaintTarget}. Painting changes the state
+ * of the field, so every thread paints its own one. Run with {@code -prof gc} to see the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PaintBenchmark {
+    @Param({"100", "10000"})
+    public int excludedDates;
+
+    @Param({"0", "1000", "10000"})
+    public int styledDates;
+
+    @Param({"true", "false"})
+    public boolean compactEncoding;
+
+    private RangeDateField field;
+    private Date toggledDate;
+
+    @Setup
+    public void setUp() throws Exception {
+        field = Fixtures.createField(excludedDates, styledDates);
+        field.setCompactEncoding(compactEncoding);
+        toggledDate = Fixtures.randomDates(1, 5)[0];
+        field.paintContent(new RecordingPaintTarget(true));
+    }
+
+    /**
+     * Paint of a newly attached field or a browser refresh, sending all the dates
+     */
+    @Benchmark
+    public RecordingPaintTarget fullPaint() throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(true);
+        field.paintContent(target);
+        return target;
+    }
+
+    /**
+     * Paints after adding and after removing a single style, sending only the change
+     */
+    @Benchmark
+    public RecordingPaintTarget deltaPaint() throws Exception {
+        field.addDateStyleName(toggledDate, "toggled");
+        RecordingPaintTarget target = new RecordingPaintTarget(false);
+        field.paintContent(target);
+        field.removeDateStyleName(toggledDate, "toggled");
+        target = new RecordingPaintTarget(false);
+        field.paintContent(target);
+        return target;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public RecordingPaintTarget fullPaintConcurrent() throws Exception {
+        return fullPaint();
+    }
+}
@@ -0,0 +1,21 @@
+package org.vaadin.addons.rangedatefield;
+
+/**
+ * Prints the approximate UIDL size of a full paint for the data sizes used by {@link PaintBenchmark}
+ */
+public class PaintSizeReport {
+    public static void main(String[] args) throws Exception {
+        System.out.println("excludedDates\tstyledDates\tcompact\tcharacters");
+        for (int excludedDates : new int[]{100, 10000}) {
+            for (int styledDates : new int[]{0, 1000, 10000}) {
+                for (boolean compact : new boolean[]{true, false}) {
+                    RangeDateField field = Fixtures.createField(excludedDates, styledDates);
+                    field.setCompactEncoding(compact);
+                    RecordingPaintTarget target = new RecordingPaintTarget(true);
+                    field.paintContent(target);
+                    System.out.println(excludedDates + "\t" + styledDates + "\t" + compact + "\t" + target.getEncodedSize());
+                }
+            }
+        }
+    }
+}
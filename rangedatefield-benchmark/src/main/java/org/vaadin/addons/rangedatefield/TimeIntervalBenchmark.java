@@ -0,0 +1,55 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups of {@link TimeIntervalSet} used to validate appointment times, with one booked slot per
+ * half hour of opening time spread over the following years.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeIntervalBenchmark {
+    private static final int PROBES = 1024;
+    private static final long SLOT = 30 * 60000L;
+
+    @Param({"1000", "50000"})
+    public int bookedSlots;
+
+    private TimeIntervalSet intervals;
+    private long[] probes;
+    private int position;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(bookedSlots);
+        long start = System.currentTimeMillis() / SLOT * SLOT;
+        TimeIntervalSet.Builder builder = new TimeIntervalSet.Builder();
+        for (int i = 0; i < bookedSlots; i++) {
+            long slot = start + random.nextInt(bookedSlots * 4) * SLOT;
+            builder.add(slot, slot + SLOT);
+        }
+        intervals = builder.build();
+        probes = new long[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = start + random.nextInt(bookedSlots * 4) * SLOT + random.nextInt(2) * SLOT / 2;
+        }
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return intervals.contains(probes[position++ & (PROBES - 1)]);
+    }
+
+    @Benchmark
+    public boolean overlaps() {
+        long probe = probes[position++ & (PROBES - 1)];
+        return intervals.overlaps(probe, probe + 60000L);
+    }
+}
@@ -0,0 +1,78 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the server side checks run on every value change. All threads share one field, the way a single field
+ * is read by the request thread and by background validation.
+ * <p>
+ * Run with e.g. {@code java -jar target/benchmarks.jar ValidationBenchmark -t 4} to use a different number of threads,
+ * the *Concurrent methods always use all available processors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+    private static final int PROBES = 1024;
+
+    @Param({"0", "100", "10000"})
+    public int excludedDates;
+
+    @Param({"0", "1000"})
+    public int styledDates;
+
+    private RangeDateField field;
+    private Date[] probes;
+
+    /**
+     * Position of a thread in the probe dates
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        Date next(Date[] probes) {
+            return probes[position++ & (PROBES - 1)];
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        field = Fixtures.createField(excludedDates, styledDates);
+        probes = Fixtures.randomDates(PROBES, 4);
+        field.setValue(probes[0]);
+    }
+
+    @Benchmark
+    public boolean isDateExcluded(Cursor cursor) {
+        return field.isDateExcluded(cursor.next(probes));
+    }
+
+    @Benchmark
+    public boolean isDateWeekend(Cursor cursor) {
+        return field.isDateWeekend(cursor.next(probes));
+    }
+
+    @Benchmark
+    public boolean isValidDate() {
+        return field.isValidDate();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isDateExcludedConcurrent(Cursor cursor) {
+        return field.isDateExcluded(cursor.next(probes));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean isValidDateConcurrent() {
+        return field.isValidDate();
+    }
+}
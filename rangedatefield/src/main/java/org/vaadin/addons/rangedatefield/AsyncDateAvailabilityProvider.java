@@ -0,0 +1,33 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.Serializable;
+
+/**
+ * Loads excluded days and day styles one month at a time without blocking the request thread, see
+ * {@link RangeDateField#setAvailabilityProvider(AsyncDateAvailabilityProvider)}. Use
+ * {@link ExecutorAvailabilityProvider} to run a blocking {@link DateAvailabilityProvider} on an executor.
+ */
+public interface AsyncDateAvailabilityProvider extends Serializable {
+    /**
+     * Receives the result of a load, from any thread
+     */
+    interface Callback {
+        /**
+         * @param availability     Excluded days and day styles of the month, null if the month has neither
+         */
+        void loaded(DateAvailability availability);
+
+        /**
+         * @param cause
+         */
+        void failed(Throwable cause);
+    }
+
+    /**
+     * Starts loading a month. The callback must be called exactly once, either from this method or later.
+     * @param year
+     * @param month     Month of the year, 1 - 12
+     * @param callback
+     */
+    void loadAvailability(int year, int month, Callback callback);
+}
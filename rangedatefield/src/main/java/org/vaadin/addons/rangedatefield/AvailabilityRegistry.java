@@ -0,0 +1,196 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current availability of shared resources, e.g. rooms or vehicles, as immutable {@link CalendarRules}
+ * snapshots. A booking publishes a new snapshot of its resource, and every {@link RangeDateField} showing the
+ * resource, see {@link RangeDateField#setAvailabilityResource(AvailabilityRegistry, String)}, picks it up on its
+ * next paint:
+ * <pre>
+ * AvailabilityRegistry rooms = AvailabilityRegistry.get("rooms");
+ * field.setAvailabilityResource(rooms, "room-101");
+ * ...
+ * rooms.update("room-101", new AvailabilityRegistry.Update() {
+ *     public CalendarRules apply(CalendarRules current) {
+ *         return bookings.rulesOf("room-101");
+ *     }
+ * });
+ * </pre>
+ * Publishing replaces the snapshot without locking and never touches the fields or their applications. The fields
+ * are only notified that a snapshot is pending, each requests a repaint on the next request of its own application,
+ * e.g. a poll, and any snapshots published before that are covered by the one repaint. Notifications run on the
+ * publishing thread, or on an executor set with {@link #setNotificationExecutor(Executor)}.
+ * <p>
+ * Registries are process-wide and looked up by name, a deserialized field gets the registry of the same name.
+ */
+public class AvailabilityRegistry implements Serializable {
+    private static final ConcurrentMap<String, AvailabilityRegistry> REGISTRIES =
+            new ConcurrentHashMap<String, AvailabilityRegistry>();
+
+    /**
+     * Computes a new snapshot from the current one. May be called more than once if other threads publish at
+     * the same time, so it should not have side effects.
+     */
+    public interface Update {
+        /**
+         * @param current   Current snapshot, null if nothing has been published for the resource
+         * @return  The new snapshot
+         */
+        CalendarRules apply(CalendarRules current);
+    }
+
+    /**
+     * Notified after a new snapshot has been published. Held weakly, so subscribers must be kept reachable.
+     * Called on the publishing thread, so subscribers must not take locks of their own.
+     */
+    interface Subscriber {
+        void snapshotPublished(String resource);
+    }
+
+    private final String name;
+    private final transient ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<String, Resource>();
+    private transient volatile Executor notificationExecutor = null;
+
+    private static class Resource {
+        private final AtomicReference<CalendarRules> snapshot = new AtomicReference<CalendarRules>();
+        private final CopyOnWriteArrayList<WeakReference<Subscriber>> subscribers =
+                new CopyOnWriteArrayList<WeakReference<Subscriber>>();
+    }
+
+    private AvailabilityRegistry(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param name
+     * @return  The registry with the name, created on first use
+     */
+    public static AvailabilityRegistry get(String name) {
+        AvailabilityRegistry registry = REGISTRIES.get(name);
+        if (registry == null) {
+            AvailabilityRegistry created = new AvailabilityRegistry(name);
+            registry = REGISTRIES.putIfAbsent(name, created);
+            if (registry == null) registry = created;
+        }
+        return registry;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param notificationExecutor  Runs the notifications of the fields, null to notify on the publishing thread
+     */
+    public void setNotificationExecutor(Executor notificationExecutor) {
+        this.notificationExecutor = notificationExecutor;
+    }
+
+    /**
+     * @param resource
+     * @return  The newest snapshot of the resource, null if nothing has been published for it
+     */
+    public CalendarRules getSnapshot(String resource) {
+        Resource entry = resources.get(resource);
+        return entry != null ? entry.snapshot.get() : null;
+    }
+
+    /**
+     * Replaces the snapshot of a resource
+     * @param resource
+     * @param snapshot  Null to remove all restrictions of the resource
+     */
+    public void publish(String resource, CalendarRules snapshot) {
+        Resource entry = getResource(resource);
+        if (entry.snapshot.getAndSet(snapshot) != snapshot) {
+            notifySubscribers(resource, entry);
+        }
+    }
+
+    /**
+     * Replaces the snapshot of a resource with one computed from the current snapshot, retrying if another
+     * thread published in between
+     * @param resource
+     * @param update
+     * @return  The published snapshot
+     */
+    public CalendarRules update(String resource, Update update) {
+        Resource entry = getResource(resource);
+        while (true) {
+            CalendarRules current = entry.snapshot.get();
+            CalendarRules updated = update.apply(current);
+            if (entry.snapshot.compareAndSet(current, updated)) {
+                if (updated != current) {
+                    notifySubscribers(resource, entry);
+                }
+                return updated;
+            }
+        }
+    }
+
+    void subscribe(String resource, Subscriber subscriber) {
+        getResource(resource).subscribers.add(new WeakReference<Subscriber>(subscriber));
+    }
+
+    void unsubscribe(String resource, Subscriber subscriber) {
+        Resource entry = resources.get(resource);
+        if (entry == null) return;
+        for (WeakReference<Subscriber> reference : entry.subscribers) {
+            Subscriber subscribed = reference.get();
+            if (subscribed == null || subscribed == subscriber) {
+                entry.subscribers.remove(reference);
+            }
+        }
+    }
+
+    private Resource getResource(String resource) {
+        Resource entry = resources.get(resource);
+        if (entry == null) {
+            Resource created = new Resource();
+            entry = resources.putIfAbsent(resource, created);
+            if (entry == null) entry = created;
+        }
+        return entry;
+    }
+
+    private void notifySubscribers(final String resource, final Resource entry) {
+        Executor executor = notificationExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        notifySubscribers(resource, entry.subscribers);
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                // notify on this thread instead
+            }
+        }
+        notifySubscribers(resource, entry.subscribers);
+    }
+
+    private static void notifySubscribers(String resource, CopyOnWriteArrayList<WeakReference<Subscriber>> subscribers) {
+        for (WeakReference<Subscriber> reference : subscribers) {
+            Subscriber subscriber = reference.get();
+            if (subscriber == null) {
+                subscribers.remove(reference);
+            } else {
+                subscriber.snapshotPublished(resource);
+            }
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return get(name);
+    }
+}
@@ -0,0 +1,89 @@
+package org.vaadin.addons.rangedatefield;
+
+import com.vaadin.terminal.PaintException;
+import com.vaadin.terminal.PaintTarget;
+import com.vaadin.ui.AbstractComponent;
+import com.vaadin.ui.ClientWidget;
+import org.vaadin.addons.rangedatefield.client.DayBitSet;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VCalendarData;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.*;
+
+/**
+ * An invisible component that sends {@link CalendarRules} to the browser once for any number of
+ * {@link RangeDateField}s, for example the fields in the rows of a table that all show the same holidays.
+ * The fields reference it with {@link RangeDateField#setCalendarData(CalendarData)} and share a single decoded
+ * copy of the rules on the client. It has to be added to the window of the fields, anywhere in its layout:
+ * <pre>
+ * CalendarData holidays = new CalendarData(rules);
+ * window.addComponent(holidays);
+ * field.setCalendarData(holidays);
+ * </pre>
+ * Changing the rules repaints only this component, the fields using it pick up the new rules on the client.
+ */
+@ClientWidget(VCalendarData.class)
+public class CalendarData extends AbstractComponent {
+    private CalendarRules calendarRules;
+
+    public CalendarData() {
+    }
+
+    public CalendarData(CalendarRules calendarRules) {
+        this.calendarRules = calendarRules;
+    }
+
+    public CalendarRules getCalendarRules() {
+        return calendarRules;
+    }
+
+    /**
+     * @param calendarRules
+     */
+    public void setCalendarRules(CalendarRules calendarRules) {
+        this.calendarRules = calendarRules;
+        requestRepaint();
+    }
+
+    @Override
+    public void paintContent(PaintTarget target) throws PaintException {
+        super.paintContent(target);
+        if (calendarRules == null) return;
+        if (calendarRules.getValidFromDay() != null) {
+            target.addAttribute(VRangeDateField.VALID_FROM_DATE_PARAM, EpochDays.format(calendarRules.getValidFromDay()));
+        }
+        if (calendarRules.getValidToDay() != null) {
+            target.addAttribute(VRangeDateField.VALID_TO_DATE_PARAM, EpochDays.format(calendarRules.getValidToDay()));
+        }
+        if (calendarRules.getExcludeWeekends() != null) {
+            target.addAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM, calendarRules.getExcludeWeekends());
+        }
+        if (calendarRules.getExclusionRule() != null) {
+            target.addAttribute(VRangeDateField.EXCLUSION_RULE_PARAM, calendarRules.getExclusionRule().encode());
+        }
+
+        EpochDaySet days = calendarRules.getExcludedDays();
+        if (RangeDateField.isBitSetSmaller(days)) {
+            target.addAttribute(VRangeDateField.EXCLUDE_DAYS_PARAM, DayBitSet.of(days.toArray()).encode());
+        } else if (!days.isEmpty()) {
+            String[] dates = new String[days.size()];
+            for (int i = 0; i < dates.length; i++) {
+                dates[i] = EpochDays.format(days.get(i));
+            }
+            target.addAttribute(VRangeDateField.EXCLUDE_DATES_PARAM, dates);
+        }
+
+        // style ids are assigned again on every paint
+        Map<Integer, List<String>> styles = new HashMap<Integer, List<String>>();
+        for (Integer day : calendarRules.getStyledDays()) {
+            styles.put(day, calendarRules.getDayStyleNames(day));
+        }
+        List<String> styleNames = new ArrayList<String>();
+        String[] dayStyles = RangeDateFieldUtils.encodeDateStyles(styles, new HashMap<String, Integer>(), styleNames);
+        if (dayStyles != null) {
+            target.addAttribute(VRangeDateField.STYLE_NAMES_PARAM, styleNames.toArray(new String[styleNames.size()]));
+            target.addAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM, dayStyles);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.TimeZone;
+
+/**
+ * Reads holidays and blackout days from iCalendar (.ics) or CSV files into a {@link CalendarRules.Builder}.
+ * Files are read through a fixed size buffer and dates are parsed straight into epoch days, so the size of the
+ * file does not matter and no {@link java.util.Date}s are created:
+ * <pre>
+ * CalendarRules.Builder builder = new CalendarRules.Builder(timeZone);
+ * CalendarImporter importer = new CalendarImporter(builder).setStyleName("holiday");
+ * importer.importICalendar(new File("holidays.ics"));
+ * field.setCalendarRules(builder.build());
+ * </pre>
+ * Of iCalendar files, the DTSTART and DTEND of every VEVENT are used. DTEND is exclusive, an event ending at
+ * midnight does not cover the following day. Times in UTC or with a TZID are converted to the time zone of the
+ * builder. Recurrence rules are not expanded.
+ * <p>
+ * Of CSV files, a date column and optionally an end date column (inclusive) and a style column are used. Dates
+ * are written year first, as in 2012-12-24, 2012/12/24 or 20121224, anything after the date is ignored. A first
+ * line without a date is taken for a header.
+ */
+public class CalendarImporter {
+    /**
+     * Longest event that is imported, in days
+     */
+    public static final int MAX_EVENT_DAYS = 10 * 366;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final CalendarRules.Builder builder;
+    private boolean exclude = true;
+    private String styleName;
+    private char separator = ',';
+    private int dateColumn = 0;
+    private int endDateColumn = -1;
+    private int styleColumn = -1;
+
+    /**
+     * @param builder   Builder the imported days are added to
+     */
+    public CalendarImporter(CalendarRules.Builder builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * @param exclude   True to exclude the imported days, which is the default
+     * @return  This importer
+     */
+    public CalendarImporter setExclude(boolean exclude) {
+        this.exclude = exclude;
+        return this;
+    }
+
+    /**
+     * @param styleName     CSS style class added to every imported day, null for none
+     * @return  This importer
+     */
+    public CalendarImporter setStyleName(String styleName) {
+        this.styleName = styleName;
+        return this;
+    }
+
+    /**
+     * @param separator     Column separator of CSV files, a comma by default
+     * @return  This importer
+     */
+    public CalendarImporter setCsvSeparator(char separator) {
+        this.separator = separator;
+        return this;
+    }
+
+    /**
+     * @param dateColumn    Index of the date column, the first column by default
+     * @param endDateColumn Index of the column with the last day of the event, -1 for single days
+     * @param styleColumn   Index of a column with space separated CSS style classes, -1 for none
+     * @return  This importer
+     */
+    public CalendarImporter setCsvColumns(int dateColumn, int endDateColumn, int styleColumn) {
+        if (dateColumn < 0) throw new IllegalArgumentException("Invalid date column: " + dateColumn);
+        this.dateColumn = dateColumn;
+        this.endDateColumn = endDateColumn;
+        this.styleColumn = styleColumn;
+        return this;
+    }
+
+    /**
+     * @param file  UTF-8 encoded iCalendar file
+     * @return  Number of days imported
+     * @throws IOException  If the file can not be read or has an invalid date
+     */
+    public int importICalendar(File file) throws IOException {
+        Reader reader = open(file);
+        try {
+            return importICalendar(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param reader    iCalendar content, not closed
+     * @return  Number of days imported
+     * @throws IOException  If the content can not be read or has an invalid date
+     */
+    public int importICalendar(Reader reader) throws IOException {
+        LineReader lines = new LineReader(reader);
+        // a line is complete only once the next one is known not to continue it
+        StringBuilder line = new StringBuilder();
+        StringBuilder next = new StringBuilder();
+        boolean hasLine = lines.readLine(line);
+        int lineNumber = 1;
+        int count = 0;
+        boolean inEvent = false;
+        long start = 0;
+        long end = 0;
+        while (hasLine) {
+            int number = lineNumber;
+            boolean hasNext;
+            while ((hasNext = lines.readLine(next)) && next.length() > 0
+                    && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+                line.append(next, 1, next.length());
+                lineNumber++;
+            }
+            lineNumber++;
+
+            if (startsWith(line, "BEGIN:VEVENT")) {
+                inEvent = true;
+                start = end = Long.MIN_VALUE;
+            } else if (inEvent && startsWith(line, "END:VEVENT")) {
+                inEvent = false;
+                if (start != Long.MIN_VALUE) {
+                    count += addEvent(start, end, number);
+                }
+            } else if (inEvent && startsWith(line, "DTSTART")) {
+                start = parseDateTime(line, "DTSTART".length(), number);
+            } else if (inEvent && startsWith(line, "DTEND")) {
+                end = parseDateTime(line, "DTEND".length(), number);
+            }
+
+            StringBuilder swap = line;
+            line = next;
+            next = swap;
+            hasLine = hasNext;
+        }
+        return count;
+    }
+
+    /**
+     * @param file  UTF-8 encoded CSV file
+     * @return  Number of days imported
+     * @throws IOException  If the file can not be read or has an invalid date
+     */
+    public int importCsv(File file) throws IOException {
+        Reader reader = open(file);
+        try {
+            return importCsv(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param reader    CSV content, not closed
+     * @return  Number of days imported
+     * @throws IOException  If the content can not be read or has an invalid date
+     */
+    public int importCsv(Reader reader) throws IOException {
+        LineReader lines = new LineReader(reader);
+        StringBuilder line = new StringBuilder();
+        int[] bounds = new int[2];
+        int[] date = new int[3];
+        int lineNumber = 0;
+        int count = 0;
+        while (lines.readLine(line)) {
+            lineNumber++;
+            if (line.length() == 0) continue;
+            if (!findColumn(line, dateColumn, bounds) || !parseDate(line, bounds[0], bounds[1], date)) {
+                if (lineNumber == 1) continue;
+                throw new IOException("Invalid date on line " + lineNumber + ": " + line);
+            }
+            int first = EpochDays.of(date[0], date[1], date[2]);
+            int last = first;
+            if (endDateColumn >= 0 && findColumn(line, endDateColumn, bounds) && bounds[0] < bounds[1]) {
+                if (!parseDate(line, bounds[0], bounds[1], date)) {
+                    throw new IOException("Invalid end date on line " + lineNumber + ": " + line);
+                }
+                last = Math.max(EpochDays.of(date[0], date[1], date[2]), first);
+            }
+            checkLength(first, last, lineNumber);
+            String[] styles = null;
+            if (styleColumn >= 0 && findColumn(line, styleColumn, bounds) && bounds[0] < bounds[1]) {
+                styles = unquote(line, bounds[0], bounds[1]).trim().split("\\s+");
+            }
+            for (int day = first; day <= last; day++) {
+                addDay(day);
+                if (styles != null) {
+                    for (String style : styles) {
+                        if (style.length() > 0) builder.addDayStyleName(day, style);
+                    }
+                }
+            }
+            count += last - first + 1;
+        }
+        return count;
+    }
+
+    private static Reader open(File file) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        return Channels.newReader(channel, UTF_8.newDecoder(), BUFFER_SIZE);
+    }
+
+    /**
+     * @param start     Start of an event, as returned by {@link #parseDateTime}
+     * @param end   End of the event, Long.MIN_VALUE if it has none
+     * @param lineNumber
+     * @return  Number of days added
+     */
+    private int addEvent(long start, long end, int lineNumber) throws IOException {
+        int first = (int) (start >> 32);
+        int last = first;
+        if (end != Long.MIN_VALUE) {
+            // the end is exclusive, a day is covered only if the event ends after its midnight
+            int endDay = (int) (end >> 32);
+            last = Math.max((int) end == 0 ? endDay - 1 : endDay, first);
+        }
+        checkLength(first, last, lineNumber);
+        for (int day = first; day <= last; day++) {
+            addDay(day);
+        }
+        return last - first + 1;
+    }
+
+    private void addDay(int day) {
+        if (exclude) builder.excludeDay(day);
+        if (styleName != null) builder.addDayStyleName(day, styleName);
+    }
+
+    private static void checkLength(int first, int last, int lineNumber) throws IOException {
+        if (last - first >= MAX_EVENT_DAYS) {
+            throw new IOException("Event on line " + lineNumber + " is longer than " + MAX_EVENT_DAYS + " days");
+        }
+    }
+
+    /**
+     * Parses the value of a DTSTART or DTEND property, such as ;VALUE=DATE:20121224, :20121224T120000Z or
+     * ;TZID=Europe/Helsinki:20121224T120000
+     * @param line
+     * @param index     Position after the property name
+     * @param lineNumber
+     * @return  Epoch day in the time zone of the builder in the high 32 bits and the second of the day in the low
+     */
+    private long parseDateTime(CharSequence line, int index, int lineNumber) throws IOException {
+        int colon = indexOf(line, ':', index);
+        int tzid = indexOf(line, "TZID=", index, colon);
+        int value = colon + 1;
+        int[] date = new int[3];
+        if (colon < 0 || value + 8 > line.length() || !parseDate(line, value, value + 8, date)) {
+            throw new IOException("Invalid date on line " + lineNumber + ": " + line);
+        }
+        int day = EpochDays.of(date[0], date[1], date[2]);
+        if (value + 8 == line.length()) {
+            return (long) day << 32;
+        }
+        if (line.charAt(value + 8) != 'T' || value + 15 > line.length()) {
+            throw new IOException("Invalid time on line " + lineNumber + ": " + line);
+        }
+        int hour = parseNumber(line, value + 9, value + 11);
+        int minute = parseNumber(line, value + 11, value + 13);
+        int second = parseNumber(line, value + 13, value + 15);
+        if (hour < 0 || minute < 0 || second < 0) {
+            throw new IOException("Invalid time on line " + lineNumber + ": " + line);
+        }
+        int secondOfDay = hour * 3600 + minute * 60 + second;
+        boolean utc = value + 15 < line.length() && line.charAt(value + 15) == 'Z';
+        if (!utc && tzid < 0) {
+            // a floating time is the same in every time zone
+            return (long) day << 32 | secondOfDay;
+        }
+
+        long millis = (day * 86400L + secondOfDay) * 1000;
+        if (!utc) {
+            int tzidEnd = indexOf(line, ';', tzid);
+            if (tzidEnd < 0 || tzidEnd > colon) tzidEnd = colon;
+            TimeZone zone = TimeZone.getTimeZone(unquote(line, tzid + "TZID=".length(), tzidEnd));
+            millis -= zone.getOffset(millis - zone.getRawOffset());
+        }
+        TimeZone timeZone = builder.getTimeZone();
+        long local = millis + timeZone.getOffset(millis);
+        int localDay = RangeDateFieldUtils.toEpochDay(millis, timeZone);
+        return (long) localDay << 32 | (int) ((local - localDay * 86400000L) / 1000);
+    }
+
+    /**
+     * Parses a date written year first, with or without separators
+     * @param s
+     * @param from
+     * @param to
+     * @param date  Receives the year, month and day of month
+     * @return  False if the text is not a valid date
+     */
+    private static boolean parseDate(CharSequence s, int from, int to, int[] date) {
+        while (from < to && (s.charAt(from) == ' ' || s.charAt(from) == '"')) from++;
+        if (from + 8 <= to && parseNumber(s, from, from + 8) >= 0) {
+            date[0] = parseNumber(s, from, from + 4);
+            date[1] = parseNumber(s, from + 4, from + 6);
+            date[2] = parseNumber(s, from + 6, from + 8);
+        } else {
+            int i = from;
+            for (int field = 0; field < 3; field++) {
+                if (field > 0) {
+                    if (i == to || "-/.".indexOf(s.charAt(i)) < 0) return false;
+                    i++;
+                }
+                int start = i;
+                while (i < to && i - start < 4 && isDigit(s.charAt(i))) i++;
+                if (i == start) return false;
+                date[field] = parseNumber(s, start, i);
+            }
+        }
+        // rejects dates such as February 30th, which would silently move to March
+        return date[1] >= 1 && date[1] <= 12 && date[2] >= 1
+                && EpochDays.dayOfMonth(EpochDays.of(date[0], date[1], date[2])) == date[2];
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return  The number, -1 if there is something else than digits
+     */
+    private static int parseNumber(CharSequence s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) return -1;
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    /**
+     * Finds a column of a CSV line, quoted values may contain the separator
+     * @param line
+     * @param column
+     * @param bounds    Receives the start and end of the column
+     * @return  False if the line has fewer columns
+     */
+    private boolean findColumn(CharSequence line, int column, int[] bounds) {
+        int start = 0;
+        int current = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= line.length(); i++) {
+            char c = i < line.length() ? line.charAt(i) : separator;
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && (!quoted || i == line.length())) {
+                if (current == column) {
+                    bounds[0] = start;
+                    bounds[1] = i;
+                    return true;
+                }
+                current++;
+                start = i + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return  The text, without surrounding quotes and with doubled quotes replaced by one
+     */
+    private static String unquote(CharSequence s, int from, int to) {
+        String value = s.subSequence(from, to).toString().trim();
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            value = value.substring(1, value.length() - 1).replace("\"\"", "\"");
+        }
+        return value;
+    }
+
+    private static boolean startsWith(CharSequence s, String prefix) {
+        if (s.length() < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toUpperCase(s.charAt(i)) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence s, char c, int from) {
+        for (int i = from; i < s.length(); i++) {
+            if (s.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence s, String text, int from, int to) {
+        for (int i = from; i + text.length() <= to; i++) {
+            if (startsWith(s.subSequence(i, i + text.length()), text)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Splits characters into lines, reusing the buffer and the line
+     */
+    private static class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private boolean skipLineFeed;
+
+        LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @param line  Replaced with the next line, without the line terminator
+         * @return  False at the end of the input
+         */
+        boolean readLine(StringBuilder line) throws IOException {
+            line.setLength(0);
+            while (true) {
+                if (position == limit) {
+                    limit = reader.read(buffer, 0, buffer.length);
+                    position = 0;
+                    if (limit <= 0) {
+                        limit = 0;
+                        return line.length() > 0;
+                    }
+                }
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (buffer[position] == '\n') position++;
+                    continue;
+                }
+                int start = position;
+                while (position < limit) {
+                    char c = buffer[position];
+                    if (c == '\n' || c == '\r') {
+                        line.append(buffer, start, position - start);
+                        position++;
+                        skipLineFeed = c == '\r';
+                        return true;
+                    }
+                    position++;
+                }
+                line.append(buffer, start, position - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.vaadin.addons.rangedatefield.client.DayRule;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+/**
+ * An immutable set of calendar restrictions and day styles that can be shared by any number of
+ * {@link RangeDateField}s, for example a national holiday calendar. Fields only keep a reference to the rules,
+ * the values set directly on a field are applied on top of them.
+ * <p>
+ * Deserialized rules are replaced with an equal instance that is already in memory, so replicated sessions
+ * share a single copy as well.
+ */
+public final class CalendarRules implements Serializable {
+    private static final Map<CalendarRules, WeakReference<CalendarRules>> INSTANCES =
+            new WeakHashMap<CalendarRules, WeakReference<CalendarRules>>();
+
+    private final Integer validFromDay;
+    private final Integer validToDay;
+    private final EpochDaySet excludedDays;
+    private final Boolean excludeWeekends;
+    private final DayRule exclusionRule;
+    // not changed after the rules are built
+    private final DayStyleNames dayStyleNames;
+    private transient int hashCode;
+
+    private CalendarRules(Builder builder) {
+        validFromDay = builder.validFromDay;
+        validToDay = builder.validToDay;
+        excludedDays = EpochDaySet.of(RangeDateFieldUtils.trim(builder.excludedDays, builder.excludedDaysSize));
+        excludeWeekends = builder.excludeWeekends;
+        exclusionRule = builder.exclusionRule;
+        dayStyleNames = new DayStyleNames(builder.dayStyleNames);
+    }
+
+    /**
+     * @return  First selectable epoch day, null if there is no lower limit
+     */
+    public Integer getValidFromDay() {
+        return validFromDay;
+    }
+
+    /**
+     * @return  Last selectable epoch day, null if there is no upper limit
+     */
+    public Integer getValidToDay() {
+        return validToDay;
+    }
+
+    public EpochDaySet getExcludedDays() {
+        return excludedDays;
+    }
+
+    /**
+     * @return  True or false if the rules decide whether weekends are selectable, null if they don't
+     */
+    public Boolean getExcludeWeekends() {
+        return excludeWeekends;
+    }
+
+    /**
+     * @return  Rule matching the days that are not selectable, null if there is none
+     */
+    public DayRule getExclusionRule() {
+        return exclusionRule;
+    }
+
+    /**
+     * @param epochDay
+     * @return  True if the day is within the valid range of these rules
+     */
+    public boolean isInValidRange(int epochDay) {
+        return (validFromDay == null || validFromDay <= epochDay) && (validToDay == null || validToDay >= epochDay);
+    }
+
+    /**
+     * @param epochDay
+     * @return  True if the day is one of the excluded days of these rules or matches the exclusion rule
+     */
+    public boolean isDayExcluded(int epochDay) {
+        return excludedDays.contains(epochDay) || exclusionRule != null && exclusionRule.matches(epochDay);
+    }
+
+    /**
+     * @param epochDay
+     * @return  CSS styles of the day, an empty list if there are none
+     */
+    public List<String> getDayStyleNames(int epochDay) {
+        return dayStyleNames.get(epochDay);
+    }
+
+    /**
+     * @return  Epoch days that have at least one CSS style
+     */
+    public Set<Integer> getStyledDays() {
+        Set<Integer> days = new HashSet<Integer>();
+        for (int day : dayStyleNames.getDays()) {
+            days.add(day);
+        }
+        return Collections.unmodifiableSet(days);
+    }
+
+    /**
+     * @return  Number of epoch days that have at least one CSS style
+     */
+    public int getStyledDayCount() {
+        return dayStyleNames.size();
+    }
+
+    /**
+     * @return  An instance equal to this one that is shared by all the users of equal rules
+     */
+    public CalendarRules intern() {
+        synchronized (INSTANCES) {
+            WeakReference<CalendarRules> reference = INSTANCES.get(this);
+            CalendarRules shared = reference != null ? reference.get() : null;
+            if (shared == null) {
+                INSTANCES.put(this, new WeakReference<CalendarRules>(this));
+                shared = this;
+            }
+            return shared;
+        }
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return intern();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CalendarRules)) return false;
+        CalendarRules other = (CalendarRules) o;
+        if (hashCode() != other.hashCode()
+                || !equal(validFromDay, other.validFromDay) || !equal(validToDay, other.validToDay)
+                || !equal(excludeWeekends, other.excludeWeekends) || !equal(exclusionRule, other.exclusionRule)
+                || !excludedDays.equals(other.excludedDays)
+                || dayStyleNames.size() != other.dayStyleNames.size()) {
+            return false;
+        }
+        for (int day : dayStyleNames.getDays()) {
+            if (!dayStyleNames.get(day).equals(other.dayStyleNames.get(day))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        if (hashCode == 0) {
+            int result = excludedDays.hashCode();
+            result = 31 * result + (validFromDay != null ? validFromDay : 0);
+            result = 31 * result + (validToDay != null ? validToDay : 0);
+            result = 31 * result + (excludeWeekends != null ? excludeWeekends.hashCode() : 0);
+            result = 31 * result + (exclusionRule != null ? exclusionRule.hashCode() : 0);
+            for (int day : dayStyleNames.getDays()) {
+                result += day ^ dayStyleNames.get(day).hashCode();
+            }
+            hashCode = result == 0 ? 1 : result;
+        }
+        return hashCode;
+    }
+
+    private static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    /**
+     * Collects the values of new {@link CalendarRules}. Dates are converted to days using the time zone
+     * of the builder, the default time zone unless specified otherwise.
+     */
+    public static class Builder {
+        private final TimeZone timeZone;
+        private Integer validFromDay = null;
+        private Integer validToDay = null;
+        private int[] excludedDays = new int[16];
+        private int excludedDaysSize = 0;
+        private Boolean excludeWeekends = null;
+        private DayRule exclusionRule = null;
+        private final DayStyleNames dayStyleNames = new DayStyleNames();
+
+        public Builder() {
+            this(TimeZone.getDefault());
+        }
+
+        public Builder(TimeZone timeZone) {
+            this.timeZone = timeZone;
+        }
+
+        /**
+         * @return  Time zone used to convert dates to days
+         */
+        public TimeZone getTimeZone() {
+            return timeZone;
+        }
+
+        /**
+         * @param validFromDate     Dates before this date are not selectable
+         * @return  This builder
+         */
+        public Builder validFrom(Date validFromDate) {
+            validFromDay = validFromDate != null ? RangeDateFieldUtils.toEpochDay(validFromDate, timeZone) : null;
+            return this;
+        }
+
+        /**
+         * @param validToDate     Dates after this date are not selectable
+         * @return  This builder
+         */
+        public Builder validTo(Date validToDate) {
+            validToDay = validToDate != null ? RangeDateFieldUtils.toEpochDay(validToDate, timeZone) : null;
+            return this;
+        }
+
+        /**
+         * @param dates     Dates that are not selectable
+         * @return  This builder
+         */
+        public Builder excludeDates(Date... dates) {
+            for (Date date : dates) {
+                if (date != null) {
+                    excludeDay(RangeDateFieldUtils.toEpochDay(date, timeZone));
+                }
+            }
+            return this;
+        }
+
+        /**
+         * @param epochDay     A day that is not selectable
+         * @return  This builder
+         */
+        public Builder excludeDay(int epochDay) {
+            if (excludedDaysSize == excludedDays.length) {
+                int[] grown = new int[excludedDays.length * 2];
+                System.arraycopy(excludedDays, 0, grown, 0, excludedDaysSize);
+                excludedDays = grown;
+            }
+            excludedDays[excludedDaysSize++] = epochDay;
+            return this;
+        }
+
+        /**
+         * @param rule     Rule matching days that are not selectable, combined with the rules added before
+         * @return  This builder
+         */
+        public Builder excludeRule(DayRule rule) {
+            exclusionRule = exclusionRule == null ? rule : DayRule.union(exclusionRule, rule);
+            return this;
+        }
+
+        /**
+         * @param excludeWeekends   True to disable weekends, false to enable them, null to leave it to the field
+         * @return  This builder
+         */
+        public Builder excludeWeekends(Boolean excludeWeekends) {
+            this.excludeWeekends = excludeWeekends;
+            return this;
+        }
+
+        /**
+         * @param date
+         * @param styleName     CSS style class
+         * @return  This builder
+         */
+        public Builder addDateStyleName(Date date, String styleName) {
+            return addDayStyleName(RangeDateFieldUtils.toEpochDay(date, timeZone), styleName);
+        }
+
+        /**
+         * @param epochDay
+         * @param styleName     CSS style class
+         * @return  This builder
+         */
+        public Builder addDayStyleName(int epochDay, String styleName) {
+            dayStyleNames.add(epochDay, styleName.intern());
+            return this;
+        }
+
+        /**
+         * @return  New rules, or an equal instance that is already in use
+         */
+        public CalendarRules build() {
+            return new CalendarRules(this).intern();
+        }
+    }
+}
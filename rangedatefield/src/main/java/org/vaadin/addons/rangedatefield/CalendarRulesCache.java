@@ -0,0 +1,295 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the {@link CalendarRules} of each region and year, e.g. national holidays, so that sessions attach the same
+ * instance to their fields with {@link RangeDateField#setCalendarRules(CalendarRules)} or
+ * {@link CalendarData#setCalendarRules(CalendarRules)} instead of building their own:
+ * <pre>
+ * field.setCalendarRules(holidays.get("FI", 2013));
+ * </pre>
+ * A missing entry is loaded once, threads asking for it at the same time wait for that load. The cache holds
+ * entries up to a total weight, by default the number of excluded and styled days, and evicts the least recently
+ * used entries beyond it. Fields keep the rules they already have when their entry is evicted.
+ * <p>
+ * An instance is meant to be shared by the whole application, e.g. kept in a static field.
+ */
+public class CalendarRulesCache {
+    /**
+     * Builds the rules of a region and year, called once per missing entry
+     */
+    public interface Loader {
+        /**
+         * @param region
+         * @param year
+         * @return  Rules of the region for the year, not null
+         */
+        CalendarRules load(String region, int year);
+    }
+
+    private final Loader loader;
+    private final long maxWeight;
+    // in access order, the first entry is the least recently used one
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long weight = 0;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong loadFailures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static final class Key {
+        private final String region;
+        private final int year;
+
+        Key(String region, int year) {
+            this.region = region;
+            this.year = year;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return year == key.year && region.equals(key.region);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * region.hashCode() + year;
+        }
+
+        @Override
+        public String toString() {
+            return region + "/" + year;
+        }
+    }
+
+    private static final class Entry {
+        private final FutureTask<CalendarRules> task;
+        // -1 until the rules have been loaded, entries that are still loading are never evicted
+        private long weight = -1;
+
+        Entry(FutureTask<CalendarRules> task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * @param loader
+     * @param maxWeight     Total weight of the entries kept, see {@link #weigh(CalendarRules)}
+     */
+    public CalendarRulesCache(Loader loader, long maxWeight) {
+        if (maxWeight < 0) throw new IllegalArgumentException("Invalid weight: " + maxWeight);
+        this.loader = loader;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param region
+     * @param year
+     * @return  Cached rules of the region and year, loaded if they are not cached
+     * @throws RuntimeException     The exception thrown by the loader, to every thread waiting for the load
+     */
+    public CalendarRules get(final String region, final int year) {
+        final Key key = new Key(region, year);
+        Entry entry;
+        boolean load = false;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(new FutureTask<CalendarRules>(new Callable<CalendarRules>() {
+                    public CalendarRules call() {
+                        CalendarRules rules = loader.load(region, year);
+                        if (rules == null) throw new IllegalStateException("No rules loaded for " + key);
+                        return rules;
+                    }
+                }));
+                entries.put(key, entry);
+                load = true;
+            }
+        }
+        if (!load) {
+            hits.incrementAndGet();
+            return getResult(entry);
+        }
+
+        misses.incrementAndGet();
+        entry.task.run();
+        try {
+            CalendarRules rules = getResult(entry);
+            loaded(key, entry, weigh(rules));
+            return rules;
+        } catch (RuntimeException e) {
+            failed(key, entry);
+            throw e;
+        } catch (Error e) {
+            failed(key, entry);
+            throw e;
+        }
+    }
+
+    /**
+     * @param region
+     * @param year
+     * @return  Cached rules of the region and year, null if they are not cached or still loading
+     */
+    public CalendarRules getIfPresent(String region, int year) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(new Key(region, year));
+            if (entry == null || entry.weight < 0) return null;
+        }
+        hits.incrementAndGet();
+        return getResult(entry);
+    }
+
+    /**
+     * Removes an entry, e.g. after the holidays of the region have changed. The next request loads it again.
+     * @param region
+     * @param year
+     */
+    public void invalidate(String region, int year) {
+        synchronized (entries) {
+            remove(new Key(region, year));
+        }
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            for (Iterator<Entry> i = entries.values().iterator(); i.hasNext(); ) {
+                Entry entry = i.next();
+                if (entry.weight >= 0) weight -= entry.weight;
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * The weight of an entry, used to decide how many entries are kept. Override to return 1 to limit the number of
+     * entries instead.
+     * @param rules
+     * @return  The number of excluded and styled days of the rules plus one
+     */
+    protected long weigh(CalendarRules rules) {
+        return 1 + rules.getExcludedDays().size() + rules.getStyledDayCount();
+    }
+
+    /**
+     * @return  Number of requests answered from the cache, including requests that waited for a running load
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return  Number of requests that loaded an entry
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return  Number of loads that threw an exception
+     */
+    public long getLoadFailureCount() {
+        return loadFailures.get();
+    }
+
+    /**
+     * @return  Number of entries removed to stay within the maximum weight
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return  Total weight of the loaded entries
+     */
+    public long getWeight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    /**
+     * @return  Number of entries, including the ones being loaded
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Adds the weight of a loaded entry and evicts the least recently used entries beyond the maximum weight
+     */
+    private void loaded(Key key, Entry entry, long entryWeight) {
+        synchronized (entries) {
+            // the entry may have been invalidated while it was loading
+            if (entries.get(key) != entry) return;
+            entry.weight = entryWeight;
+            weight += entryWeight;
+            for (Iterator<Entry> i = entries.values().iterator(); weight > maxWeight && i.hasNext(); ) {
+                Entry eldest = i.next();
+                if (eldest != entry && eldest.weight >= 0) {
+                    weight -= eldest.weight;
+                    i.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void failed(Key key, Entry entry) {
+        loadFailures.incrementAndGet();
+        synchronized (entries) {
+            if (entries.get(key) == entry) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null && entry.weight >= 0) {
+            weight -= entry.weight;
+        }
+    }
+
+    /**
+     * Waits for the load of an entry, even if the thread is interrupted
+     * @param entry
+     * @return  The loaded rules
+     */
+    private static CalendarRules getResult(Entry entry) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
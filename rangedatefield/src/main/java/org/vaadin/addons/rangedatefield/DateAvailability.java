@@ -0,0 +1,97 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.io.Serializable;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Excluded days and day styles of a single month, see {@link DateAvailabilityProvider}
+ */
+public class DateAvailability implements Serializable {
+    private final int year;
+    private final int month;
+    private int excludedDays = 0;
+    private final Map<Integer, List<String>> dayStyleNames = new TreeMap<Integer, List<String>>();
+
+    /**
+     * @param year
+     * @param month     Month of the year, 1 - 12
+     */
+    public DateAvailability(int year, int month) {
+        if (month < 1 || month > 12) throw new IllegalArgumentException("Invalid month: " + month);
+        this.year = year;
+        this.month = month;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Disables a day of this month in the calendar
+     * @param dayOfMonth    Day of the month, 1 - 31
+     */
+    public void excludeDay(int dayOfMonth) {
+        excludedDays |= 1 << checkDay(dayOfMonth);
+    }
+
+    /**
+     * @param dayOfMonth    Day of the month, 1 - 31
+     * @return  True if the day is disabled in the calendar
+     */
+    public boolean isDayExcluded(int dayOfMonth) {
+        return dayOfMonth >= 1 && dayOfMonth <= 31 && (excludedDays & 1 << dayOfMonth) != 0;
+    }
+
+    /**
+     * Adds a CSS styleName to a day of this month
+     * @param dayOfMonth    Day of the month, 1 - 31
+     * @param styleName     CSS style class
+     */
+    public void addDayStyleName(int dayOfMonth, String styleName) {
+        List<String> styles = dayStyleNames.get(checkDay(dayOfMonth));
+        if (styles == null) {
+            styles = new LinkedList<String>();
+            dayStyleNames.put(dayOfMonth, styles);
+        }
+        if (!styles.contains(styleName)) {
+            styles.add(styleName);
+        }
+    }
+
+    /**
+     * @param dayOfMonth    Day of the month, 1 - 31
+     * @return  CSS styles of the day, null if there are none
+     */
+    public List<String> getDayStyleNames(int dayOfMonth) {
+        return dayStyleNames.get(dayOfMonth);
+    }
+
+    /**
+     * @return  This month in the format read by the client: "monthIndex:excludedDaysMask:day=style1,style2;day=style3"
+     */
+    String encode() {
+        StringBuilder result = new StringBuilder();
+        result.append(EpochDays.monthIndex(year, month)).append(':').append(excludedDays).append(':');
+        boolean first = true;
+        for (Map.Entry<Integer, List<String>> entry : dayStyleNames.entrySet()) {
+            if (!first) result.append(';');
+            result.append(entry.getKey()).append('=').append(RangeDateFieldUtils.join(entry.getValue(), ","));
+            first = false;
+        }
+        return result.toString();
+    }
+
+    private static int checkDay(int dayOfMonth) {
+        if (dayOfMonth < 1 || dayOfMonth > 31) throw new IllegalArgumentException("Invalid day of month: " + dayOfMonth);
+        return dayOfMonth;
+    }
+}
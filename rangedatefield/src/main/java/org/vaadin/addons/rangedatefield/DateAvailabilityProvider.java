@@ -0,0 +1,16 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.Serializable;
+
+/**
+ * Provides excluded days and day styles one month at a time. When a provider is set on a {@link RangeDateField}
+ * only the month displayed in the calendar and its neighbouring months are loaded and sent to the client.
+ */
+public interface DateAvailabilityProvider extends Serializable {
+    /**
+     * @param year
+     * @param month     Month of the year, 1 - 12
+     * @return  Excluded days and day styles of the month, null if the month has neither
+     */
+    DateAvailability getAvailability(int year, int month);
+}
@@ -0,0 +1,18 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Provides descriptions of days, e.g. "Booked by Smith" or a holiday name, shown as a tooltip in the calendar.
+ * Descriptions are not painted with the field: the client asks for a month when one of its days is hovered or
+ * focused, and keeps the descriptions it has received.
+ */
+public interface DateDescriptionProvider extends Serializable {
+    /**
+     * @param year
+     * @param month     Month of the year, 1 - 12
+     * @return  Descriptions by day of month, null if no day of the month has one
+     */
+    Map<Integer, String> getDescriptions(int year, int month);
+}
@@ -0,0 +1,338 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * CSS styles by epoch day. Days are kept in an open addressing table of primitive keys and days with the same styles
+ * share a single style array, so the memory used grows with the number of styled days and distinct style sets only.
+ * Shared style arrays are counted and forgotten once no day uses them.
+ * The serialized form has the same layout: every style name and style set is written once and days refer to them
+ * by index.
+ */
+public class DayStyleNames implements Serializable {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient int[] days = new int[INITIAL_CAPACITY];
+    private transient String[][] styles = new String[INITIAL_CAPACITY][];
+    private transient int size = 0;
+    private transient Map<List<String>, StyleSet> styleSets = new HashMap<List<String>, StyleSet>();
+
+    /**
+     * A style array shared by days with the same styles
+     */
+    private static class StyleSet {
+        final String[] styles;
+        // number of days with these styles
+        int uses = 0;
+
+        StyleSet(String[] styles) {
+            this.styles = styles;
+        }
+    }
+
+    public DayStyleNames() {
+    }
+
+    /**
+     * @param other     Styles to copy, the copy is independent of them
+     */
+    DayStyleNames(DayStyleNames other) {
+        days = other.days.clone();
+        styles = other.styles.clone();
+        size = other.size;
+        // the style arrays themselves are never changed, only the counts are per instance
+        for (StyleSet set : other.styleSets.values()) {
+            StyleSet copy = new StyleSet(set.styles);
+            copy.uses = set.uses;
+            styleSets.put(Arrays.asList(set.styles), copy);
+        }
+    }
+
+    /**
+     * @param day  Epoch day
+     * @return  Styles of the day in the order they were added, an empty list if there are none
+     */
+    public List<String> get(int day) {
+        int slot = find(day);
+        return slot >= 0 ? Collections.unmodifiableList(Arrays.asList(styles[slot])) : Collections.<String>emptyList();
+    }
+
+    /**
+     * @param day  Epoch day
+     * @param style
+     * @return  True if the day has the style
+     */
+    public boolean contains(int day, String style) {
+        int slot = find(day);
+        return slot >= 0 && indexOf(styles[slot], style) >= 0;
+    }
+
+    /**
+     * @param day  Epoch day
+     * @param style
+     * @return  True if the style was added, false if the day already had it
+     */
+    public boolean add(int day, String style) {
+        int slot = find(day);
+        if (slot < 0) {
+            if ((size + 1) * 2 > days.length) {
+                resize(days.length * 2);
+            }
+            place(day, share(new String[]{style}));
+            size++;
+            return true;
+        }
+        String[] current = styles[slot];
+        if (indexOf(current, style) >= 0) return false;
+        String[] result = new String[current.length + 1];
+        System.arraycopy(current, 0, result, 0, current.length);
+        result[current.length] = style;
+        release(current);
+        styles[slot] = share(result);
+        return true;
+    }
+
+    /**
+     * @param day  Epoch day
+     * @param style
+     * @return  True if the style was removed, false if the day did not have it
+     */
+    public boolean remove(int day, String style) {
+        int slot = find(day);
+        if (slot < 0) return false;
+        String[] current = styles[slot];
+        int index = indexOf(current, style);
+        if (index < 0) return false;
+        if (current.length == 1) {
+            delete(slot);
+        } else {
+            String[] result = new String[current.length - 1];
+            System.arraycopy(current, 0, result, 0, index);
+            System.arraycopy(current, index + 1, result, index, result.length - index);
+            release(current);
+            styles[slot] = share(result);
+        }
+        return true;
+    }
+
+    /**
+     * @param day  Epoch day
+     * @return  Styles the day had, an empty list if there were none
+     */
+    public List<String> removeAll(int day) {
+        int slot = find(day);
+        if (slot < 0) return Collections.emptyList();
+        // a copy, the array may still be shared by other days
+        List<String> removed = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(styles[slot])));
+        delete(slot);
+        return removed;
+    }
+
+    /**
+     * @return  Number of days with at least one style
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        days = new int[INITIAL_CAPACITY];
+        styles = new String[INITIAL_CAPACITY][];
+        size = 0;
+        styleSets.clear();
+    }
+
+    /**
+     * @return  Epoch days with at least one style, in no particular order
+     */
+    public int[] getDays() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int slot = 0; slot < days.length; slot++) {
+            if (styles[slot] != null) {
+                result[n++] = days[slot];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param day  Epoch day
+     * @return  Slot of the day in the table, -1 if the day has no styles
+     */
+    private int find(int day) {
+        int slot = index(day);
+        while (styles[slot] != null) {
+            if (days[slot] == day) return slot;
+            slot = (slot + 1) & (days.length - 1);
+        }
+        return -1;
+    }
+
+    private int index(int day) {
+        int hash = day * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (days.length - 1);
+    }
+
+    /**
+     * Empties a slot, moving back the following entries that would not be found otherwise
+     * @param slot
+     */
+    private void delete(int slot) {
+        release(styles[slot]);
+        int mask = days.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; styles[i] != null; i = (i + 1) & mask) {
+            int home = index(days[i]);
+            if (hole <= i ? home <= hole || home > i : home <= hole && home > i) {
+                days[hole] = days[i];
+                styles[hole] = styles[i];
+                hole = i;
+            }
+        }
+        styles[hole] = null;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        int[] oldDays = days;
+        String[][] oldStyles = styles;
+        days = new int[capacity];
+        styles = new String[capacity][];
+        for (int i = 0; i < oldDays.length; i++) {
+            if (oldStyles[i] != null) {
+                place(oldDays[i], oldStyles[i]);
+            }
+        }
+    }
+
+    /**
+     * Stores a day that is not in the table yet in the first free slot
+     * @param day
+     * @param set
+     */
+    private void place(int day, String[] set) {
+        int slot = index(day);
+        while (styles[slot] != null) {
+            slot = (slot + 1) & (days.length - 1);
+        }
+        days[slot] = day;
+        styles[slot] = set;
+    }
+
+    /**
+     * Counts a new use of a style array, to be released with {@link #release(String[])}
+     * @param set
+     * @return  An equal style array already used by another day, or the provided one
+     */
+    private String[] share(String[] set) {
+        List<String> key = Arrays.asList(set);
+        StyleSet shared = styleSets.get(key);
+        if (shared == null) {
+            shared = new StyleSet(set);
+            styleSets.put(key, shared);
+        }
+        shared.uses++;
+        return shared.styles;
+    }
+
+    /**
+     * Counts a day no longer using a style array, forgetting the array when no day uses it
+     * @param set   Style array returned by {@link #share(String[])}
+     */
+    private void release(String[] set) {
+        List<String> key = Arrays.asList(set);
+        StyleSet shared = styleSets.get(key);
+        if (shared != null && --shared.uses == 0) {
+            styleSets.remove(key);
+        }
+    }
+
+    /**
+     * @return  Number of distinct style arrays used by the days
+     */
+    int getStyleSetCount() {
+        return styleSets.size();
+    }
+
+    private static int indexOf(String[] set, String style) {
+        for (int i = 0; i < set.length; i++) {
+            if (set[i].equals(style)) return i;
+        }
+        return -1;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        Map<String, Integer> nameIds = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        Map<String[], Integer> setIds = new IdentityHashMap<String[], Integer>();
+        List<String[]> sets = new ArrayList<String[]>();
+        for (String[] set : styles) {
+            if (set != null && !setIds.containsKey(set)) {
+                setIds.put(set, sets.size());
+                sets.add(set);
+                for (String style : set) {
+                    if (!nameIds.containsKey(style)) {
+                        nameIds.put(style, names.size());
+                        names.add(style);
+                    }
+                }
+            }
+        }
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+        out.writeInt(sets.size());
+        for (String[] set : sets) {
+            out.writeInt(set.length);
+            for (String style : set) {
+                out.writeInt(nameIds.get(style));
+            }
+        }
+        out.writeInt(size);
+        for (int slot = 0; slot < days.length; slot++) {
+            if (styles[slot] != null) {
+                out.writeInt(days[slot]);
+                out.writeInt(setIds.get(styles[slot]));
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        String[] names = new String[in.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readUTF().intern();
+        }
+        styleSets = new HashMap<List<String>, StyleSet>();
+        String[][] sets = new String[in.readInt()][];
+        for (int i = 0; i < sets.length; i++) {
+            String[] set = new String[in.readInt()];
+            for (int j = 0; j < set.length; j++) {
+                set[j] = names[in.readInt()];
+            }
+            sets[i] = set;
+        }
+        size = in.readInt();
+        int capacity = INITIAL_CAPACITY;
+        while (size * 2 > capacity) {
+            capacity *= 2;
+        }
+        days = new int[capacity];
+        styles = new String[capacity][];
+        for (int i = 0; i < size; i++) {
+            int day = in.readInt();
+            place(day, share(sets[in.readInt()]));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * An immutable set of days stored as a sorted array of epoch days (days since 1970-01-01).
+ * Lookups are a binary search over a primitive array and do not allocate.
+ */
+public class EpochDaySet implements Serializable {
+    public static final EpochDaySet EMPTY = new EpochDaySet(new int[0]);
+
+    private final int[] days;
+
+    private EpochDaySet(int[] days) {
+        this.days = days;
+    }
+
+    /**
+     * @param days  Epoch days in any order, duplicates are allowed
+     * @return  A set containing the provided days
+     */
+    public static EpochDaySet of(int[] days) {
+        if (days == null || days.length == 0) return EMPTY;
+        int[] sorted = days.clone();
+        Arrays.sort(sorted);
+        int size = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[size - 1]) {
+                sorted[size++] = sorted[i];
+            }
+        }
+        return new EpochDaySet(RangeDateFieldUtils.trim(sorted, size));
+    }
+
+    /**
+     * @param dates  Dates to index, null entries are ignored
+     * @param zone  Time zone used to decide which day a date belongs to
+     * @return  A set containing the days of the provided dates
+     */
+    public static EpochDaySet of(Date[] dates, TimeZone zone) {
+        if (dates == null || dates.length == 0) return EMPTY;
+        int[] result = new int[dates.length];
+        int size = 0;
+        for (Date date : dates) {
+            if (date != null) {
+                result[size++] = RangeDateFieldUtils.toEpochDay(date, zone);
+            }
+        }
+        return of(RangeDateFieldUtils.trim(result, size));
+    }
+
+    /**
+     * @param day  Epoch day
+     * @return  True if the day is in this set
+     */
+    public boolean contains(int day) {
+        return Arrays.binarySearch(days, day) >= 0;
+    }
+
+    /**
+     * @param day  Epoch day
+     * @return  Position of the first day of this set that is not before the day, the size of the set if there is none
+     */
+    int indexAtOrAfter(int day) {
+        int i = Arrays.binarySearch(days, day);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    public int size() {
+        return days.length;
+    }
+
+    public boolean isEmpty() {
+        return days.length == 0;
+    }
+
+    /**
+     * @param index  Position in ascending order
+     * @return  The epoch day at the specified position
+     */
+    public int get(int index) {
+        return days[index];
+    }
+
+    /**
+     * @param other
+     * @return  A set of days that are in this set but not in the other one
+     */
+    public EpochDaySet minus(EpochDaySet other) {
+        if (other.isEmpty() || isEmpty()) return this;
+        int[] result = new int[days.length];
+        int size = 0;
+        int j = 0;
+        for (int day : days) {
+            while (j < other.days.length && other.days[j] < day) j++;
+            if (j == other.days.length || other.days[j] != day) {
+                result[size++] = day;
+            }
+        }
+        return size == days.length ? this : new EpochDaySet(RangeDateFieldUtils.trim(result, size));
+    }
+
+    /**
+     * @param other
+     * @return  A set of days that are in either of the sets
+     */
+    public EpochDaySet union(EpochDaySet other) {
+        if (other.isEmpty()) return this;
+        if (isEmpty()) return other;
+        int[] result = new int[days.length + other.days.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < days.length || j < other.days.length) {
+            int day;
+            if (j == other.days.length || i < days.length && days[i] < other.days[j]) {
+                day = days[i++];
+            } else if (i == days.length || other.days[j] < days[i]) {
+                day = other.days[j++];
+            } else {
+                day = days[i++];
+                j++;
+            }
+            result[size++] = day;
+        }
+        if (size == days.length) return this;
+        if (size == other.days.length) return other;
+        return new EpochDaySet(RangeDateFieldUtils.trim(result, size));
+    }
+
+    /**
+     * @return  A copy of the days in ascending order
+     */
+    public int[] toArray() {
+        return days.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof EpochDaySet && Arrays.equals(days, ((EpochDaySet) o).days);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(days);
+    }
+}
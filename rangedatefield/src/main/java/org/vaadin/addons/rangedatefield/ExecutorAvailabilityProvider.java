@@ -0,0 +1,129 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs a blocking {@link DateAvailabilityProvider} on an executor. Loads of a month that is already being loaded
+ * are merged into the running one, so fields sharing this provider load each month once.
+ * <p>
+ * The executor is not serialized. A deserialized provider loads on the calling thread until an executor is set
+ * again with {@link #setExecutor(Executor)}.
+ */
+public class ExecutorAvailabilityProvider implements AsyncDateAvailabilityProvider {
+    private final DateAvailabilityProvider provider;
+    private transient volatile Executor executor;
+    private transient ConcurrentMap<Integer, List<Callback>> pending =
+            new ConcurrentHashMap<Integer, List<Callback>>();
+
+    /**
+     * @param provider
+     * @param executor      Runs the loads, e.g. a thread pool
+     */
+    public ExecutorAvailabilityProvider(DateAvailabilityProvider provider, Executor executor) {
+        this.provider = provider;
+        this.executor = executor;
+    }
+
+    public DateAvailabilityProvider getProvider() {
+        return provider;
+    }
+
+    /**
+     * @return  The executor running the loads, null after deserialization until one is set again
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Sets the executor that runs the loads, e.g. again after the provider has been deserialized
+     * @param executor      Runs the loads, null to load on the calling thread
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void loadAvailability(final int year, final int month, Callback callback) {
+        Executor executor = this.executor;
+        if (executor == null) {
+            load(year, month, callback);
+            return;
+        }
+        final Integer monthIndex = EpochDays.monthIndex(year, month);
+        final List<Callback> callbacks = new LinkedList<Callback>();
+        callbacks.add(callback);
+        List<Callback> running = pending.putIfAbsent(monthIndex, callbacks);
+        if (running != null) {
+            synchronized (running) {
+                // a finished load removes its list from pending before calling the callbacks
+                if (pending.get(monthIndex) == running) {
+                    running.add(callback);
+                    return;
+                }
+            }
+            loadAvailability(year, month, callback);
+            return;
+        }
+        Runnable load = new Runnable() {
+            public void run() {
+                DateAvailability availability = null;
+                Throwable failure = null;
+                try {
+                    availability = provider.getAvailability(year, month);
+                } catch (RuntimeException e) {
+                    failure = e;
+                } catch (Error e) {
+                    failure = e;
+                    throw e;
+                } finally {
+                    // also after an error, so the month is not left pending and can be loaded again
+                    synchronized (callbacks) {
+                        pending.remove(monthIndex);
+                    }
+                    for (Callback callback : callbacks) {
+                        if (failure != null) {
+                            callback.failed(failure);
+                        } else {
+                            callback.loaded(availability);
+                        }
+                    }
+                }
+            }
+        };
+        try {
+            executor.execute(load);
+        } catch (RejectedExecutionException e) {
+            synchronized (callbacks) {
+                pending.remove(monthIndex);
+            }
+            for (Callback merged : callbacks) {
+                merged.failed(e);
+            }
+        }
+    }
+
+    private void load(int year, int month, Callback callback) {
+        DateAvailability availability;
+        try {
+            availability = provider.getAvailability(year, month);
+        } catch (RuntimeException e) {
+            callback.failed(e);
+            return;
+        }
+        callback.loaded(availability);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        pending = new ConcurrentHashMap<Integer, List<Callback>>();
+    }
+}
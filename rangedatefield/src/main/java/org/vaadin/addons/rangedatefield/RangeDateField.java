@@ -1,26 +1,120 @@
 package org.vaadin.addons.rangedatefield;
 
+import com.vaadin.Application;
 import com.vaadin.data.Property;
 import com.vaadin.data.Validator;
+import com.vaadin.service.ApplicationContext;
 import com.vaadin.terminal.PaintException;
 import com.vaadin.terminal.PaintTarget;
 import com.vaadin.ui.ClientWidget;
 import com.vaadin.ui.DateField;
-import org.apache.commons.lang.time.DateUtils;
+import org.vaadin.addons.rangedatefield.client.DayBitSet;
+import org.vaadin.addons.rangedatefield.client.DayRule;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
 import org.vaadin.addons.rangedatefield.client.VRangeDateField;
 
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * The serialized form of the field is kept small for replicated sessions: excluded dates are written as
+ * sorted epoch days, one int each, and turned back into dates when read, the time zone is written instead of
+ * a Calendar and date styles as ids of the distinct style names, see {@link DayStyleNames}. What the client
+ * side already has is not written, the field is painted in full after it is deserialized.
+ */
 @ClientWidget(VRangeDateField.class)
 public class RangeDateField extends DateField {
-    private static final SimpleDateFormat DATE_TIME_FORMAT = new SimpleDateFormat(VRangeDateField.DATE_TIME_FORMAT_PATTERN);
     private Date validFromDate = null;
     private Date validToDate = null;
-    private Date[] excludeDates = null;
+    // not written by writeObject, readObject rebuilds it from the excluded days
+    private transient Date[] excludeDates = null;
+    // written as days by writeObject
+    private transient EpochDaySet excludedDays = EpochDaySet.EMPTY;
+    private TimeIntervalSet excludedIntervals = TimeIntervalSet.EMPTY;
+    // days entirely within the excluded intervals, computed on first use
+    private transient EpochDaySet coveredDays = null;
     private Boolean excludeWeekends = null;
-    protected Map<Date, List<String>> dateStyleNames = null;
-    Calendar calendar = Calendar.getInstance();
+    private DayRule exclusionRule = null;
+    private boolean compactEncoding = true;
+    private boolean rangeSelection = false;
+    private Date rangeEnd = null;
+    private final DayStyleNames dayStyleNames = new DayStyleNames();
+    /**
+     * Styles assigned to dates, keyed by the start of each day in the time zone of the field. Changes made through
+     * this view are sent to the client like the ones made with the public methods.
+     * @deprecated  Use {@link #getDateStyleNames(Date)}, {@link #addDateStyleName(Date, String)} and the other
+     * public methods instead
+     */
+    @Deprecated
+    protected final Map<Date, List<String>> dateStyleNames = new DateStyleNamesView();
+    // only the time zone is written by writeObject
+    transient Calendar calendar = Calendar.getInstance();
+    private CalendarRules calendarRules = null;
+    private CalendarData calendarData = null;
+    private AvailabilityRegistry availabilityRegistry = null;
+    private String availabilityResource = null;
+    // subscribed to the registry and the application context while the field is attached, the registry holds it
+    // weakly and the field keeps it, so it is serialized with the field and the context
+    private SnapshotSubscriber snapshotSubscriber = null;
+    // set when a snapshot is published, until the next paint picks it up
+    private transient AtomicBoolean snapshotPending = new AtomicBoolean();
+    private DateAvailabilityProvider availabilityProvider = null;
+    private AsyncDateAvailabilityProvider asyncAvailabilityProvider = null;
+    // months requested from the async provider that have not arrived yet
+    private transient Set<Integer> loadingMonths = null;
+    private int availabilityGeneration = 0;
+    private transient Map<Integer, DateAvailability> loadedMonths = new MonthCache();
+    private int visibleMonth = NO_MONTH;
+    private DateDescriptionProvider descriptionProvider = null;
+    // months of descriptions the client has asked for since the last paint
+    private transient Set<Integer> requestedDescriptionMonths = null;
+    // true if the client should drop the descriptions it has
+    private transient boolean descriptionsReset = false;
+    // built on first use, dropped whenever a restriction changes
+    private transient SelectableDays selectableDays = null;
+    // rules the selectable days were built with, the rules of shared calendar data can change at any time
+    private transient CalendarRules selectableDaysRules = null;
+    // center of the months the selectable days could request from an availability provider
+    private transient int selectableDaysCenter = NO_MONTH;
+
+    // State of the client side, used to send only the changes since the last paint. It is not serialized,
+    // see initClientState()
+    private transient boolean dateDataPainted = false;
+    private transient EpochDaySet paintedExcludedDays = EpochDaySet.EMPTY;
+    private transient CalendarRules paintedRules = null;
+    private transient Map<Integer, Set<String>> addedDateStyleNames = new HashMap<Integer, Set<String>>();
+    private transient Map<Integer, Set<String>> removedDateStyleNames = new HashMap<Integer, Set<String>>();
+    private transient Map<String, Integer> paintedStyleIds = new HashMap<String, Integer>();
+    private transient Set<Integer> paintedMonths = new HashSet<Integer>();
+    private transient boolean paintedMonthsValid = false;
+    // size of the paint in progress, see RangeDateFieldMetrics
+    private transient int paintedDayCount = 0;
+    private transient int paintedStyledDayCount = 0;
+    private transient int paintedChars = 0;
+
+    private static final int NO_MONTH = Integer.MIN_VALUE;
+    private static final int MONTH_CACHE_SIZE = 12;
+    // months before and after the displayed one that searches may request from an availability provider,
+    // so that the months they load fit in the month cache
+    private static final int SEARCH_WINDOW_MONTHS = 5;
+
+    /**
+     * Keeps the most recently used months of a {@link DateAvailabilityProvider}
+     */
+    private static class MonthCache extends LinkedHashMap<Integer, DateAvailability> {
+        MonthCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, DateAvailability> eldest) {
+            return size() > MONTH_CACHE_SIZE;
+        }
+    }
 
     public RangeDateField() {
     }
@@ -51,6 +145,7 @@ public class RangeDateField extends DateField {
      */
     public void setValidFromDate(Date validFromDate) {
         this.validFromDate = validFromDate;
+        selectableDays = null;
         requestRepaint();
     }
 
@@ -64,19 +159,473 @@ public class RangeDateField extends DateField {
      */
     public void setValidToDate(Date validToDate) {
         this.validToDate = validToDate;
+        selectableDays = null;
         requestRepaint();
     }
 
+    /**
+     * @return  The dates set with {@link #setExcludeDates(Date[])}. A deserialized field returns the start of each
+     * excluded day instead, in ascending order and without duplicates.
+     */
     public Date[] getExcludeDates() {
         return excludeDates;
     }
 
     /**
-     * Set this property to specify a list of dates that should be disabled (not selectable) in the calendar
+     * Set this property to specify a list of dates that should be disabled (not selectable) in the calendar.
+     * The dates are indexed by day when set, so later changes to the array are not picked up.
      * @param excludeDates
      */
     public void setExcludeDates(Date[] excludeDates) {
         this.excludeDates = excludeDates;
+        this.excludedDays = EpochDaySet.of(excludeDates, calendar.getTimeZone());
+        selectableDays = null;
+        requestRepaint();
+    }
+
+    /**
+     * @return  Days that are disabled in the calendar, indexed by epoch day
+     */
+    public EpochDaySet getExcludedDays() {
+        return excludedDays;
+    }
+
+    public TimeIntervalSet getExcludedIntervals() {
+        return excludedIntervals;
+    }
+
+    /**
+     * Set this property to disable times within the day, e.g. booked appointment slots or closed hours. When the
+     * resolution of the field is finer than a day, a value is invalid if the time slot it starts, one unit of
+     * the resolution long, overlaps an interval. Days that are entirely within the intervals are disabled in the
+     * calendar like excluded dates.
+     * @param excludedIntervals
+     */
+    public void setExcludedIntervals(TimeIntervalSet excludedIntervals) {
+        this.excludedIntervals = excludedIntervals != null ? excludedIntervals : TimeIntervalSet.EMPTY;
+        coveredDays = null;
+        selectableDays = null;
+        requestRepaint();
+    }
+
+    /**
+     * @return  Days that are entirely within the excluded intervals
+     */
+    private EpochDaySet getCoveredDays() {
+        if (coveredDays == null) {
+            coveredDays = excludedIntervals.getCoveredDays(calendar.getTimeZone());
+        }
+        return coveredDays;
+    }
+
+    /**
+     * @return  The calendar rules of the field, of its shared calendar data or the newest snapshot of its
+     * availability resource
+     */
+    public CalendarRules getCalendarRules() {
+        if (calendarData != null) return calendarData.getCalendarRules();
+        if (availabilityRegistry != null) return availabilityRegistry.getSnapshot(availabilityResource);
+        return calendarRules;
+    }
+
+    /**
+     * Set this property to use shared rules as the base of this field. The valid from and to dates and the
+     * exclude weekends flag set on the field take precedence over the rules, excluded dates and date styles
+     * are combined with the ones of the rules.
+     * @param calendarRules
+     */
+    public void setCalendarRules(CalendarRules calendarRules) {
+        this.calendarRules = calendarRules;
+        calendarData = null;
+        setAvailabilityResource(null, null);
+        dateDataPainted = false;
+        selectableDays = null;
+        requestRepaint();
+    }
+
+    public CalendarData getCalendarData() {
+        return calendarData;
+    }
+
+    /**
+     * Set this property to use the rules of a {@link CalendarData} component, instead of
+     * {@link #setCalendarRules(CalendarRules)}. The excluded days and day styles of the rules are then sent
+     * to the client once with the component instead of with every field, and all the fields referencing it
+     * share a single copy of them in the browser. The component has to be added to the same window.
+     * @param calendarData
+     */
+    public void setCalendarData(CalendarData calendarData) {
+        this.calendarData = calendarData;
+        calendarRules = null;
+        setAvailabilityResource(null, null);
+        dateDataPainted = false;
+        selectableDays = null;
+        requestRepaint();
+    }
+
+    public AvailabilityRegistry getAvailabilityRegistry() {
+        return availabilityRegistry;
+    }
+
+    public String getAvailabilityResource() {
+        return availabilityResource;
+    }
+
+    /**
+     * Set this property to use the snapshots a registry publishes for a resource as the calendar rules of the
+     * field, instead of {@link #setCalendarRules(CalendarRules)}. While the field is attached it repaints itself
+     * on the next request of its application after a new snapshot is published, e.g. a poll, and only the days that
+     * changed are sent to the client.
+     * @param registry
+     * @param resource
+     */
+    public void setAvailabilityResource(AvailabilityRegistry registry, String resource) {
+        if (registry == availabilityRegistry && (resource == null ? availabilityResource == null
+                : resource.equals(availabilityResource))) {
+            return;
+        }
+        unsubscribe();
+        availabilityRegistry = registry;
+        availabilityResource = registry != null ? resource : null;
+        if (registry != null) {
+            calendarRules = null;
+            calendarData = null;
+            if (getApplication() != null) {
+                subscribe();
+            }
+        }
+        selectableDays = null;
+        requestRepaint();
+    }
+
+    private void subscribe() {
+        if (availabilityRegistry == null || snapshotSubscriber != null) return;
+        snapshotSubscriber = new SnapshotSubscriber();
+        availabilityRegistry.subscribe(availabilityResource, snapshotSubscriber);
+        ApplicationContext context = getApplication() != null ? getApplication().getContext() : null;
+        if (context != null) {
+            context.addTransactionListener(snapshotSubscriber);
+        }
+    }
+
+    private void unsubscribe() {
+        if (snapshotSubscriber == null) return;
+        availabilityRegistry.unsubscribe(availabilityResource, snapshotSubscriber);
+        ApplicationContext context = getApplication() != null ? getApplication().getContext() : null;
+        if (context != null) {
+            context.removeTransactionListener(snapshotSubscriber);
+        }
+        snapshotSubscriber = null;
+    }
+
+    /**
+     * Marks a snapshot as pending when one is published. The publishing thread never touches the field or its
+     * application, the repaint is requested by the next request of the field's own application, e.g. a poll, and
+     * any number of snapshots published before it are covered by a single repaint.
+     */
+    private class SnapshotSubscriber implements AvailabilityRegistry.Subscriber, ApplicationContext.TransactionListener {
+        public void snapshotPublished(String resource) {
+            snapshotPending.set(true);
+        }
+
+        public void transactionStart(Application application, Object transactionData) {
+            if (application != getApplication() || !snapshotPending.get()) return;
+            synchronized (application) {
+                requestRepaint();
+            }
+        }
+
+        public void transactionEnd(Application application, Object transactionData) {
+        }
+    }
+
+    public DateAvailabilityProvider getAvailabilityProvider() {
+        return availabilityProvider;
+    }
+
+    /**
+     * Set this property to load excluded days and day styles one month at a time. Only the month displayed
+     * in the calendar and its neighbouring months are sent to the client, the rest are requested when
+     * the user navigates to them. The provider is used in addition to the other restrictions and styles.
+     * @param availabilityProvider
+     */
+    public void setAvailabilityProvider(DateAvailabilityProvider availabilityProvider) {
+        this.availabilityProvider = availabilityProvider;
+        asyncAvailabilityProvider = null;
+        refreshAvailability();
+    }
+
+    public AsyncDateAvailabilityProvider getAsyncAvailabilityProvider() {
+        return asyncAvailabilityProvider;
+    }
+
+    /**
+     * Set this property to load excluded days and day styles one month at a time without blocking the request.
+     * The calendar is shown at once, days of the months that are still loading get the "loading-day" style.
+     * Loaded months are sent to the client on the next repaint, so the application should poll or push for
+     * them to appear while the calendar is open. Days of a month that is loading or that failed to load are
+     * not valid, a failed month is requested again the next time the field is painted or validated.
+     * <p>
+     * Loads are started from the request threads, the results are applied while holding the application lock.
+     * @param availabilityProvider
+     */
+    public void setAvailabilityProvider(AsyncDateAvailabilityProvider availabilityProvider) {
+        asyncAvailabilityProvider = availabilityProvider;
+        this.availabilityProvider = null;
+        refreshAvailability();
+    }
+
+    /**
+     * @return  True if either a synchronous or an asynchronous availability provider is set
+     */
+    private boolean hasAvailabilityProvider() {
+        return availabilityProvider != null || asyncAvailabilityProvider != null;
+    }
+
+    /**
+     * Drops the months loaded from the availability provider so that they are loaded again
+     */
+    public void refreshAvailability() {
+        loadedMonths.clear();
+        // loads still running belong to the previous provider or data
+        availabilityGeneration++;
+        getLoadingMonths().clear();
+        paintedMonthsValid = false;
+        selectableDays = null;
+        requestRepaint();
+    }
+
+    public DateDescriptionProvider getDescriptionProvider() {
+        return descriptionProvider;
+    }
+
+    /**
+     * Set this property to show descriptions of days as tooltips in the calendar. The descriptions of a month are
+     * sent only when the client asks for them, after the user has rested on one of its days, and the client keeps
+     * them until {@link #refreshDescriptions()} is called.
+     * @param descriptionProvider
+     */
+    public void setDescriptionProvider(DateDescriptionProvider descriptionProvider) {
+        this.descriptionProvider = descriptionProvider;
+        refreshDescriptions();
+    }
+
+    /**
+     * Makes the client drop the descriptions it has received, so that they are requested again
+     */
+    public void refreshDescriptions() {
+        descriptionsReset = true;
+        getRequestedDescriptionMonths().clear();
+        requestRepaint();
+    }
+
+    private Set<Integer> getRequestedDescriptionMonths() {
+        if (requestedDescriptionMonths == null) {
+            requestedDescriptionMonths = new HashSet<Integer>();
+        }
+        return requestedDescriptionMonths;
+    }
+
+    /**
+     * @param monthIndex    See {@link EpochDays#monthIndex(int, int)}
+     * @return  Availability of the month from the provider, null if there is none or if it is still loading
+     */
+    protected DateAvailability getAvailability(int monthIndex) {
+        if (!hasAvailabilityProvider()) return null;
+        if (loadedMonths.containsKey(monthIndex)) {
+            return loadedMonths.get(monthIndex);
+        }
+        if (asyncAvailabilityProvider != null) {
+            loadAvailability(monthIndex);
+            return loadedMonths.get(monthIndex);
+        }
+        int firstDay = EpochDays.firstDayOfMonth(monthIndex);
+        DateAvailability availability = availabilityProvider.getAvailability(EpochDays.year(firstDay),
+                EpochDays.month(firstDay));
+        loadedMonths.put(monthIndex, availability);
+        return availability;
+    }
+
+    private Set<Integer> getLoadingMonths() {
+        if (loadingMonths == null) {
+            loadingMonths = new HashSet<Integer>();
+        }
+        return loadingMonths;
+    }
+
+    /**
+     * @param monthIndex
+     * @return  True if the month has been requested from the async provider and has not arrived yet
+     */
+    protected boolean isAvailabilityLoading(int monthIndex) {
+        return loadingMonths != null && loadingMonths.contains(monthIndex);
+    }
+
+    /**
+     * @param monthIndex
+     * @return  True if there is an availability provider and the month has not been loaded from it,
+     * either because it is still loading or because loading it failed
+     */
+    private boolean isAvailabilityUnknown(int monthIndex) {
+        return hasAvailabilityProvider() && !loadedMonths.containsKey(monthIndex);
+    }
+
+    /**
+     * Starts loading a month from the async provider unless it is already loading
+     * @param monthIndex
+     */
+    private void loadAvailability(int monthIndex) {
+        if (!getLoadingMonths().add(monthIndex)) return;
+        int firstDay = EpochDays.firstDayOfMonth(monthIndex);
+        LoadCallback callback = new LoadCallback(monthIndex, availabilityGeneration);
+        asyncAvailabilityProvider.loadAvailability(EpochDays.year(firstDay), EpochDays.month(firstDay), callback);
+        synchronized (getLock()) {
+            callback.returned = true;
+        }
+    }
+
+    /**
+     * @return  The month displayed in the calendar, or the month of the value or of today if the client has not
+     * told it yet
+     */
+    private int getCenterMonth() {
+        if (visibleMonth != NO_MONTH) return visibleMonth;
+        Date date = getValue() instanceof Date ? (Date) getValue() : new Date();
+        return EpochDays.monthIndex(toEpochDay(date));
+    }
+
+    /**
+     * @param monthIndex
+     * @return  True if searches for selectable days may request the month from the availability provider
+     */
+    private boolean isInSearchWindow(int monthIndex) {
+        return Math.abs((long) monthIndex - getCenterMonth()) <= SEARCH_WINDOW_MONTHS;
+    }
+
+    /**
+     * @return  The lock held while the field is painted and its variables are changed
+     */
+    private Object getLock() {
+        return getApplication() != null ? getApplication() : this;
+    }
+
+    /**
+     * Stores a month loaded by the async provider
+     */
+    private class LoadCallback implements AsyncDateAvailabilityProvider.Callback {
+        private final int monthIndex;
+        private final int generation;
+        // set once the provider's load method has returned, results that arrive before that are used at once
+        private boolean returned = false;
+
+        LoadCallback(int monthIndex, int generation) {
+            this.monthIndex = monthIndex;
+            this.generation = generation;
+        }
+
+        public void loaded(DateAvailability availability) {
+            synchronized (getLock()) {
+                if (generation != availabilityGeneration) return;
+                getLoadingMonths().remove(monthIndex);
+                loadedMonths.put(monthIndex, availability);
+                selectableDays = null;
+                if (returned) {
+                    requestRepaint();
+                }
+            }
+        }
+
+        public void failed(Throwable cause) {
+            synchronized (getLock()) {
+                if (generation != availabilityGeneration) return;
+                // not stored, so the month is requested again when it is needed next
+                getLoadingMonths().remove(monthIndex);
+                selectableDays = null;
+            }
+        }
+    }
+
+    public boolean isCompactEncoding() {
+        return compactEncoding;
+    }
+
+    /**
+     * If this property is set (default) then excluded dates are sent to the client as a bitset of days instead of
+     * a list of formatted dates. The list format is still used when the excluded dates are so far apart that
+     * the bitset would be larger.
+     * @param compactEncoding
+     */
+    public void setCompactEncoding(boolean compactEncoding) {
+        this.compactEncoding = compactEncoding;
+        requestRepaint();
+    }
+
+    public boolean isRangeSelection() {
+        return rangeSelection;
+    }
+
+    /**
+     * If this property is set then the user selects a span of days by clicking its first and its last day.
+     * The value of the field is the first day of the span and {@link #getRangeEnd()} is the last one. Spans
+     * that contain a disabled day are rejected by the calendar and fail validation.
+     * @param rangeSelection
+     */
+    public void setRangeSelection(boolean rangeSelection) {
+        this.rangeSelection = rangeSelection;
+        requestRepaint();
+    }
+
+    /**
+     * @return  The first day of the selected span, the same as the value of the field
+     */
+    public Date getRangeStart() {
+        return (Date) getValue();
+    }
+
+    /**
+     * @return  The last day of the selected span, null if no span is selected
+     */
+    public Date getRangeEnd() {
+        return rangeEnd;
+    }
+
+    /**
+     * Selects a span of days, used with {@link #setRangeSelection(boolean)}
+     * @param start     First day of the span, set as the value of the field
+     * @param end       Last day of the span
+     */
+    public void setRange(Date start, Date end) {
+        rangeEnd = end;
+        setValue(start);
+        requestRepaint();
+    }
+
+    /**
+     * Checks that every day of a span can be selected, with a lookup of the prefix counts of
+     * {@link #getSelectableDays()} instead of a check per day
+     * @param start
+     * @param end
+     * @return  True if the span is not empty and none of its days is disabled
+     */
+    public boolean isValidRange(Date start, Date end) {
+        int first = toEpochDay(start);
+        int last = toEpochDay(end);
+        return first <= last && getSelectableDays().count(first, last) == last - first + 1;
+    }
+
+    public DayRule getExclusionRule() {
+        return exclusionRule;
+    }
+
+    /**
+     * Set this property to disable the days matching a recurring rule, for example
+     * {@code DayRule.nthWeekdayOfMonth(-1, 5)} for the last Friday of every month. The rule is evaluated per day
+     * on both the server and the client, so the matching days are never listed.
+     * @param exclusionRule
+     */
+    public void setExclusionRule(DayRule exclusionRule) {
+        this.exclusionRule = exclusionRule;
+        selectableDays = null;
         requestRepaint();
     }
 
@@ -90,6 +639,7 @@ public class RangeDateField extends DateField {
      */
     public void setExcludeWeekends(Boolean excludeWeekends) {
         this.excludeWeekends = excludeWeekends;
+        selectableDays = null;
         requestRepaint();
     }
 
@@ -100,23 +650,54 @@ public class RangeDateField extends DateField {
      * @return  True if there's already a style with provided styleName for a specified date
      */
     protected boolean containsStyle(Date date, String styleName) {
-        List<String> styles = dateStyleNames.get(date);
-        if (styles != null) {
-            return styles.contains(styleName);
-        }
-        return false;
+        return dayStyleNames.contains(toEpochDay(date), styleName);
     }
 
     /**
      * A method used to safely add a style to dateStyleNames map
      * @param date
      * @param style
+     * @deprecated  Use {@link #addDateStyleName(Date, String)} instead, which also repaints the field
      */
+    @Deprecated
     protected void addStyle(Date date, String style) {
-        List<String> styles = dateStyleNames.get(date);
+        addDayStyle(date, style);
+    }
+
+    /**
+     * @param date
+     * @param style
+     * @return  True if the date did not have the style yet
+     */
+    private boolean addDayStyle(Date date, String style) {
+        int day = toEpochDay(date);
+        // the same few styles are usually assigned to lots of dates
+        style = style.intern();
+        if (!dayStyleNames.add(day, style)) return false;
+        trackStyleChange(day, style, true);
+        return true;
+    }
+
+    /**
+     * Records a style change that has to be sent to the client on the next paint. An addition cancels out
+     * a pending removal of the same style and vice versa.
+     * @param day   Epoch day
+     * @param style
+     * @param added     True if the style was added, false if it was removed
+     */
+    private void trackStyleChange(int day, String style, boolean added) {
+        if (!dateDataPainted) return;
+        Map<Integer, Set<String>> pending = added ? removedDateStyleNames : addedDateStyleNames;
+        Set<String> styles = pending.get(day);
+        if (styles != null && styles.remove(style)) {
+            if (styles.isEmpty()) pending.remove(day);
+            return;
+        }
+        pending = added ? addedDateStyleNames : removedDateStyleNames;
+        styles = pending.get(day);
         if (styles == null) {
-            styles = new LinkedList<String>();
-            dateStyleNames.put(date, styles);
+            styles = new LinkedHashSet<String>();
+            pending.put(day, styles);
         }
         styles.add(style);
     }
@@ -128,18 +709,71 @@ public class RangeDateField extends DateField {
      */
     public void addDateStyleName(Date date, String styleName) {
         if (date == null || styleName == null) return;
-        if (dateStyleNames == null) dateStyleNames = new HashMap<Date, List<String>>();
-        if (!containsStyle(date, styleName)) {
-            addStyle(date, styleName);
+        if (addDayStyle(date, styleName)) {
+            requestRepaint();
+        }
+    }
+
+    /**
+     * Adds a CSS styleName to a number of date cells with a single repaint
+     * @param dates     Dates for which the specified CSS style class should be added
+     * @param styleName     CSS style class
+     */
+    public void addDateStyleNames(Collection<Date> dates, String styleName) {
+        if (dates == null || styleName == null) return;
+        boolean changed = false;
+        for (Date date : dates) {
+            if (date != null) {
+                changed |= addDayStyle(date, styleName);
+            }
+        }
+        if (changed) {
             requestRepaint();
         }
     }
 
+    /**
+     * Replaces all date specific CSS style assignments with a single repaint
+     * @param styleNames    CSS style classes by date
+     */
+    public void setDateStyleNames(Map<Date, ? extends Collection<String>> styleNames) {
+        boolean changed = false;
+        for (int day : dayStyleNames.getDays()) {
+            for (String style : dayStyleNames.removeAll(day)) {
+                trackStyleChange(day, style, false);
+                changed = true;
+            }
+        }
+        if (styleNames != null) {
+            for (Map.Entry<Date, ? extends Collection<String>> entry : styleNames.entrySet()) {
+                if (entry.getKey() == null || entry.getValue() == null) continue;
+                for (String style : entry.getValue()) {
+                    if (style != null) {
+                        changed |= addDayStyle(entry.getKey(), style);
+                    }
+                }
+            }
+        }
+        if (changed) {
+            requestRepaint();
+        }
+    }
+
+    /**
+     * @param date
+     * @return  CSS styles assigned to the date, an empty list if there are none
+     */
+    public List<String> getDateStyleNames(Date date) {
+        return date != null ? dayStyleNames.get(toEpochDay(date)) : Collections.<String>emptyList();
+    }
+
     /**
      * A method to clear all date specific CSS style assignments
      */
     public void clearDateStyleNames() {
-        dateStyleNames.clear();
+        dayStyleNames.clear();
+        dateDataPainted = false;
+        requestRepaint();
     }
 
     /**
@@ -147,11 +781,15 @@ public class RangeDateField extends DateField {
      * @param date
      */
     public void removeDateStyleNames(Date date) {
-        List<String> styles = dateStyleNames.get(date);
-        if (styles != null) {
-            styles.clear();
+        if (date == null) return;
+        int day = toEpochDay(date);
+        List<String> styles = dayStyleNames.removeAll(day);
+        for (String style : styles) {
+            trackStyleChange(day, style, false);
+        }
+        if (!styles.isEmpty()) {
+            requestRepaint();
         }
-        requestRepaint();
     }
 
     /**
@@ -160,11 +798,30 @@ public class RangeDateField extends DateField {
      * @param style     CSS style to remove
      */
     public void removeDateStyleName(Date date, String style) {
-        List<String> styles = dateStyleNames.get(date);
-        if (styles != null) {
-            styles.remove(style);
+        if (date == null || style == null) return;
+        int day = toEpochDay(date);
+        if (dayStyleNames.remove(day, style)) {
+            trackStyleChange(day, style, false);
+            requestRepaint();
+        }
+    }
+
+    /**
+     * Removes a CSS style from all the dates that have it with a single repaint
+     * @param style     CSS style to remove
+     */
+    public void removeStyleEverywhere(String style) {
+        if (style == null) return;
+        boolean changed = false;
+        for (int day : dayStyleNames.getDays()) {
+            if (dayStyleNames.remove(day, style)) {
+                trackStyleChange(day, style, false);
+                changed = true;
+            }
+        }
+        if (changed) {
+            requestRepaint();
         }
-        requestRepaint();
     }
 
     public boolean isValid() {
@@ -178,7 +835,7 @@ public class RangeDateField extends DateField {
      * @return
      */
     protected boolean isDateBefore(Date date1, Date date2) {
-        return DateUtils.isSameDay(date1, date2) || date1.before(date2);
+        return toEpochDay(date1) <= toEpochDay(date2);
     }
 
     /**
@@ -188,7 +845,7 @@ public class RangeDateField extends DateField {
      * @return
      */
     protected boolean isDateAfter(Date date1, Date date2) {
-        return DateUtils.isSameDay(date1, date2) || date1.after(date2);
+        return toEpochDay(date1) >= toEpochDay(date2);
     }
 
     /**
@@ -197,14 +854,38 @@ public class RangeDateField extends DateField {
      * @return
      */
     protected boolean isDateExcluded(Date date) {
-        if (excludeDates != null) {
-            for (Date excludeDate : excludeDates) {
-                if (DateUtils.isSameDay(date, excludeDate)) {
-                    return true;
-                }
-            }
+        return isDayExcluded(toEpochDay(date));
+    }
+
+    /**
+     * Checks if a day is excluded from the calendar
+     * @param day   Epoch day
+     * @return
+     */
+    protected boolean isDayExcluded(int day) {
+        CalendarRules rules = getCalendarRules();
+        if (excludedDays.contains(day) || getCoveredDays().contains(day)
+                || exclusionRule != null && exclusionRule.matches(day)
+                || rules != null && rules.isDayExcluded(day)) {
+            return true;
         }
-        return false;
+        int month = EpochDays.monthIndex(day);
+        DateAvailability availability = getAvailability(month);
+        if (availability == null) return isAvailabilityUnknown(month);
+        return availability.isDayExcluded(EpochDays.dayOfMonth(day));
+    }
+
+    /**
+     * Checks if the time slot starting at the date, one unit of the resolution of the field long, overlaps an
+     * excluded interval. Always false at day resolution or coarser, where covered days are excluded instead.
+     * @param date
+     * @return
+     */
+    protected boolean isTimeExcluded(Date date) {
+        if (excludedIntervals.isEmpty() || getResolution() >= RESOLUTION_DAY) return false;
+        long slot = getResolution() == RESOLUTION_HOUR ? 3600000L : getResolution() == RESOLUTION_MIN ? 60000L
+                : getResolution() == RESOLUTION_SEC ? 1000L : 1L;
+        return excludedIntervals.overlaps(date.getTime(), date.getTime() + slot);
     }
 
     /**
@@ -213,9 +894,48 @@ public class RangeDateField extends DateField {
      * @return
      */
     protected boolean isDateWeekend(Date date) {
-        calendar.setTime(date);
-        int day = calendar.get(Calendar.DAY_OF_WEEK);
-        return Calendar.SATURDAY == day || Calendar.SUNDAY == day;
+        int day = EpochDays.dayOfWeek(toEpochDay(date));
+        return EpochDays.SATURDAY == day || EpochDays.SUNDAY == day;
+    }
+
+    /**
+     * @param date
+     * @return  Epoch day of the date in the time zone of the field
+     */
+    protected int toEpochDay(Date date) {
+        return RangeDateFieldUtils.toEpochDay(date, calendar.getTimeZone());
+    }
+
+    /**
+     * @param date
+     * @return  The day of the date formatted for the client, see {@link VRangeDateField#DATE_TIME_FORMAT_PATTERN}
+     */
+    protected String formatDate(Date date) {
+        return EpochDays.format(toEpochDay(date));
+    }
+
+    /**
+     * @return  The exclude weekends flag of the field, or of the calendar rules if the field does not have one
+     */
+    private Boolean getEffectiveExcludeWeekends() {
+        return getEffectiveExcludeWeekends(getCalendarRules());
+    }
+
+    /**
+     * @param rules     May be null
+     * @return  The exclude weekends flag of the field, or of the rules if the field does not have one
+     */
+    private Boolean getEffectiveExcludeWeekends(CalendarRules rules) {
+        return excludeWeekends != null || rules == null ? excludeWeekends : rules.getExcludeWeekends();
+    }
+
+    /**
+     * @param rules     May be null
+     * @return  Excluded and covered days of the field combined with the ones of the rules
+     */
+    private EpochDaySet getEffectiveExcludedDays(CalendarRules rules) {
+        EpochDaySet days = excludedDays.union(getCoveredDays());
+        return rules != null ? days.union(rules.getExcludedDays()) : days;
     }
 
     /**
@@ -225,58 +945,658 @@ public class RangeDateField extends DateField {
     protected boolean isValidDate() {
         Date date = (Date) getValue();
         if (date != null) {
+            if (rangeSelection && rangeEnd != null) {
+                return isValidRange(date, rangeEnd);
+            }
             if (validFromDate != null && !isDateAfter(date, validFromDate)) {
                 return false;
             }
             if (validToDate != null && !isDateBefore(date, validToDate)) {
                 return false;
             }
-            if (isDateExcluded(date)) {
+            CalendarRules rules = getCalendarRules();
+            if (rules != null && (validFromDate == null || validToDate == null)) {
+                int day = toEpochDay(date);
+                Integer from = validFromDate == null ? rules.getValidFromDay() : null;
+                Integer to = validToDate == null ? rules.getValidToDay() : null;
+                if (from != null && day < from || to != null && day > to) {
+                    return false;
+                }
+            }
+            if (isDateExcluded(date) || isTimeExcluded(date)) {
                 return false;
             }
-            if (Boolean.TRUE.equals(excludeWeekends)) {
+            if (Boolean.TRUE.equals(getEffectiveExcludeWeekends())) {
                 return !isDateWeekend(date);
             }
         }
         return true;
     }
 
+    /**
+     * Counts the days that can be selected in the calendar
+     * @param from
+     * @param to
+     * @return  Number of selectable days from one date to the other, both included
+     */
+    public int countSelectableDays(Date from, Date to) {
+        return getSelectableDays().count(toEpochDay(from), toEpochDay(to));
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return  The first day from one date to the other, both included, that can not be selected, null if all of
+     * them can be selected
+     */
+    public Date firstInvalidDay(Date from, Date to) {
+        return toDate(getSelectableDays().firstUnselectable(toEpochDay(from), toEpochDay(to)));
+    }
+
+    /**
+     * @param date
+     * @return  The first day after the date that can be selected, null if there is none within
+     * {@link SelectableDays#MAX_SEARCH_DAYS} days
+     */
+    public Date nextSelectableDay(Date date) {
+        return toDate(getSelectableDays().next(toEpochDay(date)));
+    }
+
+    /**
+     * @param date
+     * @return  The last day before the date that can be selected, null if there is none within
+     * {@link SelectableDays#MAX_SEARCH_DAYS} days
+     */
+    public Date previousSelectableDay(Date date) {
+        return toDate(getSelectableDays().previous(toEpochDay(date)));
+    }
+
+    /**
+     * Days are evaluated in blocks the first time a query reaches them, along with the blocks between them and
+     * the blocks evaluated before, so months of an availability provider are requested only for the spans that
+     * are actually queried. Only the months within a few months of the one displayed are requested, days of other
+     * months are selectable only if the months are already loaded. Days of months still loading from an async
+     * provider, or that failed to load, are not selectable either, and the days are evaluated again once
+     * the months arrive or the calendar moves to another month.
+     * @return  The selectable days for the current restrictions of the field, indexed by epoch day
+     */
+    public SelectableDays getSelectableDays() {
+        final CalendarRules rules = getCalendarRules();
+        int center = hasAvailabilityProvider() ? getCenterMonth() : NO_MONTH;
+        if (selectableDays == null || selectableDaysRules != rules || selectableDaysCenter != center) {
+            selectableDaysRules = rules;
+            selectableDaysCenter = center;
+            Integer from = validFromDate != null ? Integer.valueOf(toEpochDay(validFromDate))
+                    : rules != null ? rules.getValidFromDay() : null;
+            Integer to = validToDate != null ? Integer.valueOf(toEpochDay(validToDate))
+                    : rules != null ? rules.getValidToDay() : null;
+            final boolean weekends = Boolean.TRUE.equals(getEffectiveExcludeWeekends());
+            final EpochDaySet days = excludedDays;
+            final EpochDaySet coveredDays = getCoveredDays();
+            final DayRule rule = exclusionRule;
+            selectableDays = new SelectableDays(new SelectableDays.Filter() {
+                public void removeUnselectable(int base, int[] words) {
+                    if (weekends) SelectableDays.removeWeekends(base, words);
+                    SelectableDays.removeDays(days, base, words);
+                    SelectableDays.removeDays(coveredDays, base, words);
+                    if (rules != null) SelectableDays.removeDays(rules.getExcludedDays(), base, words);
+                    if (rule != null) SelectableDays.removeMatching(rule, base, words);
+                    if (rules != null && rules.getExclusionRule() != null) {
+                        SelectableDays.removeMatching(rules.getExclusionRule(), base, words);
+                    }
+                    if (hasAvailabilityProvider()) removeUnavailable(base, words);
+                }
+            }, from != null ? from : Integer.MIN_VALUE, to != null ? to : Integer.MAX_VALUE);
+        }
+        return selectableDays;
+    }
+
+    /**
+     * Removes the days the availability provider excludes from a block of selectable days, along with the days
+     * of months that are not loaded yet. Months are requested only if they are in the search window and some
+     * of their days in the block are still selectable.
+     * @param base  First day of the block
+     * @param words     One bit per day of the block
+     */
+    private void removeUnavailable(int base, int[] words) {
+        int days = words.length * 32;
+        int lastMonth = EpochDays.monthIndex(base + days - 1);
+        for (int month = EpochDays.monthIndex(base); month <= lastMonth; month++) {
+            // position of the first day of the month in the block, negative if the month began before it
+            int first = EpochDays.firstDayOfMonth(month) - base;
+            int end = Math.min(EpochDays.firstDayOfMonth(month + 1) - base, days);
+            DateAvailability availability = null;
+            boolean requested = false;
+            for (int position = Math.max(first, 0); position < end; position++) {
+                if ((words[position >>> 5] & (1 << (position & 31))) == 0) continue;
+                if (!requested) {
+                    availability = loadedMonths.containsKey(month) || isInSearchWindow(month)
+                            ? getAvailability(month) : null;
+                    requested = true;
+                    if (availability == null && !isAvailabilityUnknown(month)) break;
+                }
+                if (availability == null || availability.isDayExcluded(position - first + 1)) {
+                    words[position >>> 5] &= ~(1 << (position & 31));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param day   Epoch day, may be null
+     * @return  Start of the day in the time zone of the field
+     */
+    private Date toDate(Integer day) {
+        return day != null ? RangeDateFieldUtils.toDate(day, calendar.getTimeZone()) : null;
+    }
+
     @Override
     public void validate() throws Validator.InvalidValueException {
+        if (!RangeDateFieldMetrics.isEnabled()) {
+            validateValue();
+            return;
+        }
+        long start = System.nanoTime();
+        boolean valid = false;
+        try {
+            validateValue();
+            valid = true;
+        } finally {
+            RangeDateFieldMetrics.fireValidateCompleted(this, System.nanoTime() - start, valid);
+        }
+    }
+
+    private void validateValue() throws Validator.InvalidValueException {
         if (!isValidDate()) {
             throw new Validator.InvalidValueException("Invalid value!");
         }
         super.validate();
     }
 
+    @Override
+    public void requestRepaint() {
+        super.requestRepaint();
+        if (RangeDateFieldMetrics.isEnabled()) {
+            RangeDateFieldMetrics.fireRepaintRequested(this);
+        }
+    }
+
+    /**
+     * Compares the size of a bitset (six days per character) with the size of a list of formatted dates
+     * @param days
+     * @return  True if the days take less space when encoded as a bitset
+     */
+    static boolean isBitSetSmaller(EpochDaySet days) {
+        if (days.isEmpty()) return false;
+        long span = (long) days.get(days.size() - 1) - days.get(0) + 1;
+        return span / 6 < (long) days.size() * (VRangeDateField.DATE_TIME_FORMAT_PATTERN.length() + 3);
+    }
+
+    /**
+     * The styles of the field as a map of dates, see {@link #dateStyleNames}
+     */
+    private class DateStyleNamesView extends AbstractMap<Date, List<String>> implements Serializable {
+
+        @Override
+        public int size() {
+            return dayStyleNames.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Date && !dayStyleNames.get(toEpochDay((Date) key)).isEmpty();
+        }
+
+        @Override
+        public List<String> get(Object key) {
+            if (!(key instanceof Date)) return null;
+            List<String> styles = dayStyleNames.get(toEpochDay((Date) key));
+            return styles.isEmpty() ? null : styles;
+        }
+
+        @Override
+        public List<String> put(Date key, List<String> value) {
+            List<String> previous = remove(key);
+            if (value != null) {
+                for (String style : value) {
+                    addDateStyleName(key, style);
+                }
+            }
+            return previous;
+        }
+
+        @Override
+        public List<String> remove(Object key) {
+            List<String> previous = get(key);
+            if (previous != null) {
+                removeDateStyleNames((Date) key);
+            }
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            clearDateStyleNames();
+        }
+
+        @Override
+        public Set<Entry<Date, List<String>>> entrySet() {
+            return new AbstractSet<Entry<Date, List<String>>>() {
+                @Override
+                public int size() {
+                    return dayStyleNames.size();
+                }
+
+                @Override
+                public Iterator<Entry<Date, List<String>>> iterator() {
+                    final int[] days = dayStyleNames.getDays();
+                    return new Iterator<Entry<Date, List<String>>>() {
+                        private int next = 0;
+
+                        public boolean hasNext() {
+                            return next < days.length;
+                        }
+
+                        public Entry<Date, List<String>> next() {
+                            if (next == days.length) throw new NoSuchElementException();
+                            final int day = days[next++];
+                            return new Entry<Date, List<String>>() {
+                                public Date getKey() {
+                                    return toDate(day);
+                                }
+
+                                public List<String> getValue() {
+                                    return dayStyleNames.get(day);
+                                }
+
+                                public List<String> setValue(List<String> value) {
+                                    return put(getKey(), value);
+                                }
+
+                                @Override
+                                public boolean equals(Object o) {
+                                    if (!(o instanceof Entry)) return false;
+                                    Entry<?, ?> entry = (Entry<?, ?>) o;
+                                    return getKey().equals(entry.getKey()) && getValue().equals(entry.getValue());
+                                }
+
+                                @Override
+                                public int hashCode() {
+                                    return getKey().hashCode() ^ getValue().hashCode();
+                                }
+                            };
+                        }
+
+                        public void remove() {
+                            if (next == 0) throw new IllegalStateException();
+                            removeDateStyleNames(toDate(days[next - 1]));
+                        }
+                    };
+                }
+            };
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        TimeZone zone = calendar.getTimeZone();
+        // zones known by id are written as their id, custom ones in full
+        boolean knownZone = TimeZone.getTimeZone(zone.getID()).hasSameRules(zone);
+        out.writeBoolean(knownZone);
+        if (knownZone) {
+            out.writeUTF(zone.getID());
+        } else {
+            out.writeObject(zone);
+        }
+        out.writeBoolean(excludeDates != null);
+        out.writeInt(excludedDays.size());
+        for (int i = 0; i < excludedDays.size(); i++) {
+            out.writeInt(excludedDays.get(i));
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        TimeZone zone = in.readBoolean() ? TimeZone.getTimeZone(in.readUTF()) : (TimeZone) in.readObject();
+        calendar = Calendar.getInstance(zone);
+        boolean hasExcludeDates = in.readBoolean();
+        int[] days = new int[in.readInt()];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = in.readInt();
+        }
+        excludedDays = EpochDaySet.of(days);
+        if (hasExcludeDates) {
+            excludeDates = new Date[days.length];
+            for (int i = 0; i < days.length; i++) {
+                excludeDates[i] = RangeDateFieldUtils.toDate(excludedDays.get(i), zone);
+            }
+        }
+        loadedMonths = new MonthCache();
+        // a snapshot may have been published while the field was serialized
+        snapshotPending = new AtomicBoolean(true);
+        if (snapshotSubscriber != null) {
+            availabilityRegistry.subscribe(availabilityResource, snapshotSubscriber);
+        }
+        initClientState();
+    }
+
+    /**
+     * Forgets what was sent to the client, so that the next paint sends everything again
+     */
+    private void initClientState() {
+        dateDataPainted = false;
+        paintedExcludedDays = EpochDaySet.EMPTY;
+        paintedRules = null;
+        addedDateStyleNames = new HashMap<Integer, Set<String>>();
+        removedDateStyleNames = new HashMap<Integer, Set<String>>();
+        paintedStyleIds = new HashMap<String, Integer>();
+        paintedMonths = new HashSet<Integer>();
+        paintedMonthsValid = false;
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        // a new client side widget is created for the field, so it has to get all the data again
+        dateDataPainted = false;
+        paintedMonthsValid = false;
+        subscribe();
+    }
+
+    @Override
+    public void detach() {
+        unsubscribe();
+        super.detach();
+    }
+
+    @Override
+    public void changeVariables(Object source, Map<String, Object> variables) {
+        super.changeVariables(source, variables);
+        if (variables.containsKey(VRangeDateField.VISIBLE_MONTH_VAR)) {
+            visibleMonth = (Integer) variables.get(VRangeDateField.VISIBLE_MONTH_VAR);
+            if (hasAvailabilityProvider()) {
+                requestRepaint();
+            }
+        }
+        if (variables.containsKey(VRangeDateField.DESCRIPTION_MONTH_VAR) && descriptionProvider != null) {
+            getRequestedDescriptionMonths().add((Integer) variables.get(VRangeDateField.DESCRIPTION_MONTH_VAR));
+            requestRepaint();
+        }
+        Object rangeStart = variables.get(VRangeDateField.RANGE_START_VAR);
+        Object rangeEnd = variables.get(VRangeDateField.RANGE_END_VAR);
+        if (rangeSelection && rangeStart instanceof String && rangeEnd instanceof String && isEnabled()
+                && !isReadOnly()) {
+            int start;
+            int end;
+            try {
+                start = EpochDays.parse((String) rangeStart);
+                end = EpochDays.parse((String) rangeEnd);
+            } catch (IllegalArgumentException e) {
+                // not sent by the widget, ignored
+                return;
+            }
+            setRange(toDate(start), toDate(end));
+        }
+    }
+
     public void paintContent(PaintTarget target) throws PaintException {
+        boolean measured = RangeDateFieldMetrics.isEnabled();
+        long start = measured ? System.nanoTime() : 0;
+        boolean fullPaint = !dateDataPainted || target.isFullRepaint();
+        paintedDayCount = 0;
+        paintedStyledDayCount = 0;
+        paintedChars = 0;
         super.paintContent(target);
+        // the newest snapshot is read below, snapshots published after this are painted on the next repaint
+        snapshotPending.set(false);
+        // the rules of shared calendar data are painted by the CalendarData component
+        CalendarRules rules = calendarData == null ? getCalendarRules() : null;
+        if (calendarData != null) {
+            target.addAttribute(VRangeDateField.CALENDAR_DATA_PARAM, calendarData);
+        }
         if (getValidFromDate() != null) {
-            target.addAttribute(VRangeDateField.VALID_FROM_DATE_PARAM, DATE_TIME_FORMAT.format(getValidFromDate()));
+            target.addAttribute(VRangeDateField.VALID_FROM_DATE_PARAM, formatDate(getValidFromDate()));
+        } else if (rules != null && rules.getValidFromDay() != null) {
+            target.addAttribute(VRangeDateField.VALID_FROM_DATE_PARAM, EpochDays.format(rules.getValidFromDay()));
         }
         if (getValidToDate() != null) {
-            target.addAttribute(VRangeDateField.VALID_TO_DATE_PARAM, DATE_TIME_FORMAT.format(getValidToDate()));
+            target.addAttribute(VRangeDateField.VALID_TO_DATE_PARAM, formatDate(getValidToDate()));
+        } else if (rules != null && rules.getValidToDay() != null) {
+            target.addAttribute(VRangeDateField.VALID_TO_DATE_PARAM, EpochDays.format(rules.getValidToDay()));
+        }
+        Boolean paintedExcludeWeekends = getEffectiveExcludeWeekends(rules);
+        if (paintedExcludeWeekends != null) {
+            target.addAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM, paintedExcludeWeekends);
+        }
+        if (rangeSelection) {
+            target.addAttribute(VRangeDateField.RANGE_SELECTION_PARAM, true);
+            if (rangeEnd != null) {
+                target.addAttribute(VRangeDateField.RANGE_END_PARAM, formatDate(rangeEnd));
+            }
+        }
+
+        DayRule rule = rules == null || rules.getExclusionRule() == null ? exclusionRule
+                : exclusionRule == null ? rules.getExclusionRule()
+                : DayRule.union(exclusionRule, rules.getExclusionRule());
+        if (rule != null) {
+            String encoded = rule.encode();
+            target.addAttribute(VRangeDateField.EXCLUSION_RULE_PARAM, encoded);
+            paintedChars += encoded.length();
         }
-        if (getExcludeDates() != null) {
-            List<String> result = new LinkedList<String>();
-            for (Date date : getExcludeDates()) {
-                result.add(DATE_TIME_FORMAT.format(date));
+
+        EpochDaySet effectiveExcludedDays = getEffectiveExcludedDays(rules);
+        List<String> newStyleNames = new ArrayList<String>();
+        if (fullPaint) {
+            paintedStyleIds.clear();
+            paintDays(target, VRangeDateField.EXCLUDE_DAYS_PARAM, VRangeDateField.EXCLUDE_DATES_PARAM, effectiveExcludedDays);
+            Map<Integer, Set<String>> styles = new HashMap<Integer, Set<String>>();
+            for (int day : dayStyleNames.getDays()) {
+                styles.put(day, new LinkedHashSet<String>(dayStyleNames.get(day)));
+            }
+            if (rules != null) {
+                for (Integer day : rules.getStyledDays()) {
+                    Set<String> dayStyles = styles.get(day);
+                    if (dayStyles == null) {
+                        dayStyles = new LinkedHashSet<String>();
+                        styles.put(day, dayStyles);
+                    }
+                    dayStyles.addAll(rules.getDayStyleNames(day));
+                }
+            }
+            paintDateStyles(target, VRangeDateField.DATE_STYLE_NAMES_PARAM, styles, newStyleNames);
+        } else {
+            target.addAttribute(VRangeDateField.DATE_DATA_DELTA_PARAM, true);
+            paintDays(target, VRangeDateField.EXCLUDE_DAYS_ADDED_PARAM, VRangeDateField.EXCLUDE_DATES_ADDED_PARAM,
+                    effectiveExcludedDays.minus(paintedExcludedDays));
+            paintDays(target, VRangeDateField.EXCLUDE_DAYS_REMOVED_PARAM, VRangeDateField.EXCLUDE_DATES_REMOVED_PARAM,
+                    paintedExcludedDays.minus(effectiveExcludedDays));
+            if (rules != paintedRules) {
+                trackRulesStyleChanges(paintedRules, rules);
             }
-            target.addAttribute(VRangeDateField.EXCLUDE_DATES_PARAM, result.toArray(new String[result.size()]));
+            paintDateStyles(target, VRangeDateField.DATE_STYLE_NAMES_ADDED_PARAM, addedDateStyleNames, newStyleNames);
+            Map<Integer, Set<String>> removed = removedDateStyleNames;
+            if (rules != null) {
+                // styles that the rules still assign to the day stay on the client
+                for (Map.Entry<Integer, Set<String>> entry : removed.entrySet()) {
+                    entry.getValue().removeAll(rules.getDayStyleNames(entry.getKey()));
+                }
+            }
+            paintDateStyles(target, VRangeDateField.DATE_STYLE_NAMES_REMOVED_PARAM, removed, newStyleNames);
+        }
+        if (newStyleNames.size() > 0) {
+            String[] styleNames = newStyleNames.toArray(new String[newStyleNames.size()]);
+            target.addAttribute(VRangeDateField.STYLE_NAMES_PARAM, styleNames);
+            countChars(styleNames);
         }
-        if (excludeWeekends != null) {
-            target.addAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM, excludeWeekends);
+        if (hasAvailabilityProvider()) {
+            paintAvailability(target, target.isFullRepaint() || !paintedMonthsValid);
         }
+        if (descriptionProvider != null) {
+            paintDescriptions(target);
+        }
+        descriptionsReset = false;
+        dateDataPainted = true;
+        paintedExcludedDays = effectiveExcludedDays;
+        paintedRules = rules;
+        addedDateStyleNames.clear();
+        removedDateStyleNames.clear();
+        if (measured) {
+            RangeDateFieldMetrics.firePaintCompleted(this, fullPaint, System.nanoTime() - start, paintedDayCount,
+                    paintedStyledDayCount, paintedChars);
+        }
+    }
 
-        List<String> dateStyles = new LinkedList<String>();
-        if (dateStyleNames != null && dateStyleNames.size() > 0) {
-            for (Date date : dateStyleNames.keySet()) {
-                Collection<String> styles = dateStyleNames.get(date);
-                dateStyles.add(DATE_TIME_FORMAT.format(date) + ":" + RangeDateFieldUtils.join(styles, ","));
+    /**
+     * Records the style changes between two snapshots of the calendar rules as changes to send to the client.
+     * Styles that the field itself assigns to a day stay on the client.
+     * @param from  Rules the client has, may be null
+     * @param to    Rules being painted, may be null
+     */
+    private void trackRulesStyleChanges(CalendarRules from, CalendarRules to) {
+        Set<Integer> days = new HashSet<Integer>();
+        if (from != null) days.addAll(from.getStyledDays());
+        if (to != null) days.addAll(to.getStyledDays());
+        for (Integer day : days) {
+            List<String> before = from != null ? from.getDayStyleNames(day) : Collections.<String>emptyList();
+            List<String> after = to != null ? to.getDayStyleNames(day) : Collections.<String>emptyList();
+            if (before.equals(after)) continue;
+            for (String style : after) {
+                if (!before.contains(style)) trackStyleChange(day, style, true);
+            }
+            for (String style : before) {
+                if (!after.contains(style) && !dayStyleNames.contains(day, style)) trackStyleChange(day, style, false);
             }
         }
-        if (dateStyles != null && dateStyles.size() > 0) {
-            target.addAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM, dateStyles.toArray(new String[dateStyles.size()]));
+    }
+
+    /**
+     * Adds the approximate size of a painted string array to the size of the current paint
+     * @param values
+     */
+    private void countChars(String[] values) {
+        for (String value : values) {
+            paintedChars += value.length() + 3;
+        }
+    }
+
+    /**
+     * Paints the descriptions of the months the client has asked for, as "epochDay:description" values
+     * @param target
+     * @throws PaintException
+     */
+    private void paintDescriptions(PaintTarget target) throws PaintException {
+        target.addAttribute(VRangeDateField.DESCRIPTION_PROVIDER_PARAM, true);
+        if (descriptionsReset) {
+            target.addAttribute(VRangeDateField.DESCRIPTIONS_RESET_PARAM, true);
+        }
+        if (requestedDescriptionMonths == null || requestedDescriptionMonths.isEmpty()) return;
+        List<String> months = new ArrayList<String>();
+        List<String> descriptions = new ArrayList<String>();
+        for (int month : requestedDescriptionMonths) {
+            int firstDay = EpochDays.firstDayOfMonth(month);
+            Map<Integer, String> monthDescriptions = descriptionProvider.getDescriptions(EpochDays.year(firstDay),
+                    EpochDays.month(firstDay));
+            months.add(String.valueOf(month));
+            if (monthDescriptions == null) continue;
+            for (Map.Entry<Integer, String> entry : monthDescriptions.entrySet()) {
+                if (entry.getValue() != null) {
+                    descriptions.add((firstDay + entry.getKey() - 1) + ":" + entry.getValue());
+                }
+            }
+        }
+        requestedDescriptionMonths.clear();
+        target.addAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM, months.toArray(new String[months.size()]));
+        if (descriptions.size() > 0) {
+            String[] encoded = descriptions.toArray(new String[descriptions.size()]);
+            target.addAttribute(VRangeDateField.DESCRIPTIONS_PARAM, encoded);
+            countChars(encoded);
+        }
+    }
+
+    /**
+     * Paints the months around the one displayed in the calendar that the client does not have yet
+     * @param target
+     * @param reset     True if the client should drop all the months it has
+     * @throws PaintException
+     */
+    private void paintAvailability(PaintTarget target, boolean reset) throws PaintException {
+        target.addAttribute(VRangeDateField.AVAILABILITY_PROVIDER_PARAM, true);
+        if (reset) {
+            target.addAttribute(VRangeDateField.AVAILABILITY_RESET_PARAM, true);
+            paintedMonths.clear();
+            paintedMonthsValid = true;
+        }
+        int center = getCenterMonth();
+        List<String> months = new LinkedList<String>();
+        List<String> loading = new LinkedList<String>();
+        for (int month = center - 1; month <= center + 1; month++) {
+            if (paintedMonths.contains(month)) continue;
+            DateAvailability availability = getAvailability(month);
+            if (availability == null && isAvailabilityUnknown(month)) {
+                loading.add(String.valueOf(month));
+                continue;
+            }
+            if (availability == null) {
+                int firstDay = EpochDays.firstDayOfMonth(month);
+                availability = new DateAvailability(EpochDays.year(firstDay), EpochDays.month(firstDay));
+            }
+            months.add(availability.encode());
+            paintedMonths.add(month);
+        }
+        if (months.size() > 0) {
+            String[] encoded = months.toArray(new String[months.size()]);
+            target.addAttribute(VRangeDateField.AVAILABILITY_PARAM, encoded);
+            countChars(encoded);
+        }
+        if (loading.size() > 0) {
+            target.addAttribute(VRangeDateField.AVAILABILITY_LOADING_PARAM, loading.toArray(new String[loading.size()]));
+        }
+    }
+
+    /**
+     * Paints a set of days either as a bitset or as a list of formatted dates, see {@link #setCompactEncoding(boolean)}
+     * @param target
+     * @param bitSetParam   Attribute name used for the bitset form
+     * @param listParam     Attribute name used for the list form
+     * @param days
+     * @throws PaintException
+     */
+    private void paintDays(PaintTarget target, String bitSetParam, String listParam, EpochDaySet days)
+            throws PaintException {
+        if (days.isEmpty()) return;
+        paintedDayCount += days.size();
+        if (compactEncoding && isBitSetSmaller(days)) {
+            String encoded = DayBitSet.of(days.toArray()).encode();
+            target.addAttribute(bitSetParam, encoded);
+            paintedChars += encoded.length();
+        } else {
+            String[] result = new String[days.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = EpochDays.format(days.get(i));
+            }
+            target.addAttribute(listParam, result);
+            countChars(result);
+        }
+    }
+
+    /**
+     * Paints date styles as a list of "styleId1,styleId2:day1,day2" values, days with the same styles are grouped
+     * together. Styles are sent only once, the ones the client does not know yet get the next free id.
+     * @param target
+     * @param param
+     * @param styleNames    Styles by epoch day
+     * @param newStyleNames     Styles that got an id in this paint, in the order of their ids
+     * @throws PaintException
+     */
+    private void paintDateStyles(PaintTarget target, String param, Map<Integer, ? extends Collection<String>> styleNames,
+                                 List<String> newStyleNames) throws PaintException {
+        for (Collection<String> styles : styleNames.values()) {
+            if (!styles.isEmpty()) paintedStyledDayCount++;
+        }
+        String[] result = RangeDateFieldUtils.encodeDateStyles(styleNames, paintedStyleIds, newStyleNames);
+        if (result != null) {
+            target.addAttribute(param, result);
+            countChars(result);
         }
     }
 }
\ No newline at end of file
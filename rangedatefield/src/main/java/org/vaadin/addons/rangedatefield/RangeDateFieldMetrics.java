@@ -0,0 +1,52 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the {@link RangeDateFieldMetricsListener}s shared by all fields. Fields are not measured at all
+ * while no listener is registered.
+ */
+public final class RangeDateFieldMetrics {
+    private static final CopyOnWriteArrayList<RangeDateFieldMetricsListener> LISTENERS =
+            new CopyOnWriteArrayList<RangeDateFieldMetricsListener>();
+    private static volatile boolean enabled = false;
+
+    private RangeDateFieldMetrics() {
+    }
+
+    public static void addListener(RangeDateFieldMetricsListener listener) {
+        LISTENERS.addIfAbsent(listener);
+        enabled = true;
+    }
+
+    public static void removeListener(RangeDateFieldMetricsListener listener) {
+        LISTENERS.remove(listener);
+        enabled = !LISTENERS.isEmpty();
+    }
+
+    /**
+     * @return  True if there is at least one listener
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void firePaintCompleted(RangeDateField field, boolean fullPaint, long durationNanos, int excludedDays,
+                                   int styledDays, int attributeChars) {
+        for (RangeDateFieldMetricsListener listener : LISTENERS) {
+            listener.paintCompleted(field, fullPaint, durationNanos, excludedDays, styledDays, attributeChars);
+        }
+    }
+
+    static void fireValidateCompleted(RangeDateField field, long durationNanos, boolean valid) {
+        for (RangeDateFieldMetricsListener listener : LISTENERS) {
+            listener.validateCompleted(field, durationNanos, valid);
+        }
+    }
+
+    static void fireRepaintRequested(RangeDateField field) {
+        for (RangeDateFieldMetricsListener listener : LISTENERS) {
+            listener.repaintRequested(field);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.util.EventListener;
+
+/**
+ * Receives measurements of all {@link RangeDateField}s once registered with
+ * {@link RangeDateFieldMetrics#addListener(RangeDateFieldMetricsListener)}. Methods are called from the threads
+ * that paint and validate the fields, so implementations have to be thread safe and fast.
+ */
+public interface RangeDateFieldMetricsListener extends EventListener {
+    /**
+     * @param field
+     * @param fullPaint     True if all the dates were sent, false if only the changes since the last paint were
+     * @param durationNanos     Time spent in {@link RangeDateField#paintContent}
+     * @param excludedDays  Number of excluded days painted
+     * @param styledDays    Number of days with styles painted
+     * @param attributeChars    Approximate number of characters of the date attributes painted
+     */
+    void paintCompleted(RangeDateField field, boolean fullPaint, long durationNanos, int excludedDays, int styledDays,
+                        int attributeChars);
+
+    /**
+     * @param field
+     * @param durationNanos     Time spent in {@link RangeDateField#validate()}
+     * @param valid     False if the value was rejected
+     */
+    void validateCompleted(RangeDateField field, long durationNanos, boolean valid);
+
+    /**
+     * @param field     A field that asked to be painted again
+     */
+    void repaintRequested(RangeDateField field);
+}
@@ -0,0 +1,280 @@
+package org.vaadin.addons.rangedatefield;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the measurements of all {@link RangeDateField}s of the JVM. Call {@link #register()} once, e.g. from
+ * a servlet context listener, to start collecting and to publish the statistics as a JMX MBean.
+ */
+public class RangeDateFieldStatistics implements RangeDateFieldStatisticsMBean, RangeDateFieldMetricsListener {
+    /**
+     * Domain and type of the MBean. The name also has a loader key that is unique to the class loader of the
+     * add-on, so that each application deploying it publishes its own statistics.
+     */
+    public static final String OBJECT_NAME = "org.vaadin.addons.rangedatefield:type=RangeDateFieldStatistics";
+
+    private static RangeDateFieldStatistics registered = null;
+    private static ObjectName registeredName = null;
+
+    private final Histogram paintTimes = new Histogram();
+    private final AtomicLong fullPaints = new AtomicLong();
+    private final AtomicLong excludedDaysPainted = new AtomicLong();
+    private final AtomicLong styledDaysPainted = new AtomicLong();
+    private final AtomicLong attributeCharsPainted = new AtomicLong();
+    private long maxAttributeChars = 0;
+    private String largestPaintField = null;
+    private final Histogram validateTimes = new Histogram();
+    private final AtomicLong invalidValues = new AtomicLong();
+    private final AtomicLong repaintRequests = new AtomicLong();
+
+    /**
+     * Counts measurements in power of two buckets of microseconds
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void add(long nanos) {
+            long micros = nanos / 1000;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(micros));
+            count.incrementAndGet();
+            totalMicros.addAndGet(micros);
+            long max = maxMicros.get();
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        double getAverageMicros() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) totalMicros.get() / n;
+        }
+
+        long getMaxMicros() {
+            return maxMicros.get();
+        }
+
+        /**
+         * @param fraction  0 - 1
+         * @return  Upper bound of the bucket the percentile falls in
+         */
+        long getPercentileMicros(double fraction) {
+            long[] counts = toArray();
+            long total = 0;
+            for (long n : counts) {
+                total += n;
+            }
+            long remaining = (long) Math.ceil(total * fraction);
+            for (int i = 0; i < counts.length; i++) {
+                remaining -= counts[i];
+                if (remaining <= 0 && total > 0) {
+                    return Math.min(1L << i, maxMicros.get());
+                }
+            }
+            return 0;
+        }
+
+        long[] toArray() {
+            int length = buckets.length();
+            while (length > 0 && buckets.get(length - 1) == 0) {
+                length--;
+            }
+            long[] result = new long[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = buckets.get(i);
+            }
+            return result;
+        }
+
+        void reset() {
+            for (int i = 0; i < buckets.length(); i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            totalMicros.set(0);
+            maxMicros.set(0);
+        }
+    }
+
+    /**
+     * Starts collecting the measurements of all fields and publishes them as an MBean named after
+     * {@link #OBJECT_NAME} and the class loader of the add-on, see {@link #getObjectName()}
+     * @return  The registered statistics, the same instance on every call
+     */
+    public static synchronized RangeDateFieldStatistics register() {
+        if (registered == null) {
+            RangeDateFieldStatistics statistics = new RangeDateFieldStatistics();
+            ClassLoader loader = RangeDateFieldStatistics.class.getClassLoader();
+            try {
+                ObjectName name = new ObjectName(OBJECT_NAME + ",loader="
+                        + Integer.toHexString(System.identityHashCode(loader)));
+                // an MBean of another class loader with the same key is left alone and makes this fail
+                ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, name);
+                registeredName = name;
+            } catch (JMException e) {
+                throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+            }
+            RangeDateFieldMetrics.addListener(statistics);
+            registered = statistics;
+        }
+        return registered;
+    }
+
+    /**
+     * @return  Name of the MBean registered by {@link #register()}, null if it is not registered
+     */
+    public static synchronized ObjectName getObjectName() {
+        return registeredName;
+    }
+
+    /**
+     * Stops collecting and removes the MBean, e.g. when the application is undeployed
+     */
+    public static synchronized void unregister() {
+        if (registered != null) {
+            RangeDateFieldMetrics.removeListener(registered);
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException e) {
+                // already gone
+            }
+            registered = null;
+            registeredName = null;
+        }
+    }
+
+    public void paintCompleted(RangeDateField field, boolean fullPaint, long durationNanos, int excludedDays,
+                               int styledDays, int attributeChars) {
+        paintTimes.add(durationNanos);
+        if (fullPaint) {
+            fullPaints.incrementAndGet();
+        }
+        excludedDaysPainted.addAndGet(excludedDays);
+        styledDaysPainted.addAndGet(styledDays);
+        attributeCharsPainted.addAndGet(attributeChars);
+        synchronized (this) {
+            if (attributeChars > maxAttributeChars) {
+                maxAttributeChars = attributeChars;
+                largestPaintField = describe(field);
+            }
+        }
+    }
+
+    public void validateCompleted(RangeDateField field, long durationNanos, boolean valid) {
+        validateTimes.add(durationNanos);
+        if (!valid) {
+            invalidValues.incrementAndGet();
+        }
+    }
+
+    public void repaintRequested(RangeDateField field) {
+        repaintRequests.incrementAndGet();
+    }
+
+    /**
+     * @param field
+     * @return  Debug id or caption of the field, so it can be found in the application
+     */
+    private static String describe(RangeDateField field) {
+        if (field.getDebugId() != null) return field.getDebugId();
+        if (field.getCaption() != null) return field.getCaption();
+        return field.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(field));
+    }
+
+    public long getPaintCount() {
+        return paintTimes.getCount();
+    }
+
+    public long getFullPaintCount() {
+        return fullPaints.get();
+    }
+
+    public double getPaintTimeAverageMicros() {
+        return paintTimes.getAverageMicros();
+    }
+
+    public long getPaintTimeMaxMicros() {
+        return paintTimes.getMaxMicros();
+    }
+
+    public long getPaintTime99thPercentileMicros() {
+        return paintTimes.getPercentileMicros(0.99);
+    }
+
+    public long[] getPaintTimeHistogram() {
+        return paintTimes.toArray();
+    }
+
+    public long getExcludedDaysPainted() {
+        return excludedDaysPainted.get();
+    }
+
+    public long getStyledDaysPainted() {
+        return styledDaysPainted.get();
+    }
+
+    public long getAttributeCharsPainted() {
+        return attributeCharsPainted.get();
+    }
+
+    public synchronized long getMaxAttributeChars() {
+        return maxAttributeChars;
+    }
+
+    public synchronized String getLargestPaintField() {
+        return largestPaintField;
+    }
+
+    public long getValidateCount() {
+        return validateTimes.getCount();
+    }
+
+    public long getInvalidCount() {
+        return invalidValues.get();
+    }
+
+    public double getValidateTimeAverageMicros() {
+        return validateTimes.getAverageMicros();
+    }
+
+    public long getValidateTimeMaxMicros() {
+        return validateTimes.getMaxMicros();
+    }
+
+    public long getValidateTime99thPercentileMicros() {
+        return validateTimes.getPercentileMicros(0.99);
+    }
+
+    public long[] getValidateTimeHistogram() {
+        return validateTimes.toArray();
+    }
+
+    public long getRepaintRequests() {
+        return repaintRequests.get();
+    }
+
+    public void reset() {
+        paintTimes.reset();
+        fullPaints.set(0);
+        excludedDaysPainted.set(0);
+        styledDaysPainted.set(0);
+        attributeCharsPainted.set(0);
+        synchronized (this) {
+            maxAttributeChars = 0;
+            largestPaintField = null;
+        }
+        validateTimes.reset();
+        invalidValues.set(0);
+        repaintRequests.set(0);
+    }
+}
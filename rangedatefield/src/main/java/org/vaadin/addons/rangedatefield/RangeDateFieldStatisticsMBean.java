@@ -0,0 +1,48 @@
+package org.vaadin.addons.rangedatefield;
+
+/**
+ * JMX view of {@link RangeDateFieldStatistics}. Times are in microseconds, histograms count the measurements
+ * in power of two buckets: bucket i holds the ones from 2^(i-1) up to 2^i microseconds.
+ */
+public interface RangeDateFieldStatisticsMBean {
+    long getPaintCount();
+
+    long getFullPaintCount();
+
+    double getPaintTimeAverageMicros();
+
+    long getPaintTimeMaxMicros();
+
+    long getPaintTime99thPercentileMicros();
+
+    long[] getPaintTimeHistogram();
+
+    long getExcludedDaysPainted();
+
+    long getStyledDaysPainted();
+
+    long getAttributeCharsPainted();
+
+    long getMaxAttributeChars();
+
+    /**
+     * @return  Debug id or caption of the field that sent the largest paint
+     */
+    String getLargestPaintField();
+
+    long getValidateCount();
+
+    long getInvalidCount();
+
+    double getValidateTimeAverageMicros();
+
+    long getValidateTimeMaxMicros();
+
+    long getValidateTime99thPercentileMicros();
+
+    long[] getValidateTimeHistogram();
+
+    long getRepaintRequests();
+
+    void reset();
+}
@@ -1,8 +1,18 @@
 package org.vaadin.addons.rangedatefield;
 
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.util.Calendar;
 import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
 
 public class RangeDateFieldUtils {
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
     /**
      * Joins a list of Strings using a specified delimeter
      * @param list  A list of strings to join
@@ -20,4 +30,102 @@ public class RangeDateFieldUtils {
         }
         return result.toString();
     }
+
+    /**
+     * Converts a date to a number of days since 1970-01-01 without creating a Calendar
+     * @param date
+     * @param zone  Time zone used to decide which day the date belongs to
+     * @return  Epoch day of the date in the specified time zone
+     */
+    public static int toEpochDay(Date date, TimeZone zone) {
+        return toEpochDay(date.getTime(), zone);
+    }
+
+    /**
+     * @param millis    Milliseconds since 1970-01-01 00:00 UTC
+     * @param zone  Time zone used to decide which day the time belongs to
+     * @return  Epoch day of the time in the specified time zone
+     */
+    public static int toEpochDay(long millis, TimeZone zone) {
+        long local = millis + zone.getOffset(millis);
+        long day = local / MILLIS_PER_DAY;
+        if (local % MILLIS_PER_DAY < 0) day--;
+        return (int) day;
+    }
+
+    /**
+     * Converts a number of days since 1970-01-01 to a date
+     * @param epochDay
+     * @param zone
+     * @return  Start of the day in the specified time zone
+     */
+    public static Date toDate(int epochDay, TimeZone zone) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.clear();
+        calendar.set(EpochDays.year(epochDay), EpochDays.month(epochDay) - 1, EpochDays.dayOfMonth(epochDay));
+        return calendar.getTime();
+    }
+
+    /**
+     * Encodes date styles as a list of "styleId1,styleId2:day1,day2" values, days with the same styles are grouped
+     * together. Styles that do not have an id yet get the next free one.
+     * @param styleNames    Styles by epoch day
+     * @param styleIds      Ids of the styles the client already knows, new ones are added to it
+     * @param newStyleNames     Styles that got an id, in the order of their ids
+     * @return  The encoded styles, null if no day has styles
+     */
+    static String[] encodeDateStyles(Map<Integer, ? extends Collection<String>> styleNames,
+                                     Map<String, Integer> styleIds, List<String> newStyleNames) {
+        Map<String, StringBuilder> daysByStyles = new LinkedHashMap<String, StringBuilder>();
+        StringBuilder ids = new StringBuilder();
+        for (Map.Entry<Integer, ? extends Collection<String>> entry : styleNames.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+            ids.setLength(0);
+            for (String style : entry.getValue()) {
+                Integer id = styleIds.get(style);
+                if (id == null) {
+                    id = styleIds.size();
+                    styleIds.put(style, id);
+                    newStyleNames.add(style);
+                }
+                if (ids.length() > 0) ids.append(',');
+                ids.append(id);
+            }
+            String key = ids.toString();
+            StringBuilder days = daysByStyles.get(key);
+            if (days == null) {
+                days = new StringBuilder(key).append(':');
+                daysByStyles.put(key, days);
+            } else {
+                days.append(',');
+            }
+            days.append(entry.getKey());
+        }
+        if (daysByStyles.isEmpty()) return null;
+        String[] result = new String[daysByStyles.size()];
+        int i = 0;
+        for (StringBuilder days : daysByStyles.values()) {
+            result[i++] = days.toString();
+        }
+        return result;
+    }
+
+    /**
+     * @param array
+     * @param length
+     * @return  The array itself if it already has the specified length, otherwise a copy of its first elements
+     */
+    static int[] trim(int[] array, int length) {
+        if (array.length == length) return array;
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    static long[] trim(long[] array, int length) {
+        if (array.length == length) return array;
+        long[] result = new long[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
 }
@@ -0,0 +1,298 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.vaadin.addons.rangedatefield.client.DayRule;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+/**
+ * Answers range questions about the selectable days of a {@link RangeDateField}. Days are evaluated in blocks of
+ * 512 days and kept as one bitset over a contiguous span of blocks, with the number of selectable days before every
+ * word of it. Counting is the difference of two such ranks, and searching costs a few word operations per block
+ * instead of a rule evaluation per day.
+ * <p>
+ * An instance reflects the restrictions of the field at the time it was created, see
+ * {@link RangeDateField#getSelectableDays()}. All days are epoch days.
+ */
+public class SelectableDays {
+    /**
+     * Searches for the next or previous selectable day give up after this many days
+     */
+    public static final int MAX_SEARCH_DAYS = 100 * 366;
+
+    private static final int BLOCK_SHIFT = 9;
+    private static final int BLOCK_DAYS = 1 << BLOCK_SHIFT;
+    private static final int WORDS = BLOCK_DAYS / 32;
+    // evaluated blocks kept around queries of single blocks, enough for a search both ways
+    private static final int MAX_BLOCKS = 2 * (MAX_SEARCH_DAYS / BLOCK_DAYS + 2);
+
+    /**
+     * Removes the days that are not selectable from a block of days
+     */
+    interface Filter {
+        /**
+         * @param base  First day of the block
+         * @param words     One bit per day of the block, set for the days that have not been removed yet
+         */
+        void removeUnselectable(int base, int[] words);
+    }
+
+    private final Filter filter;
+    private final int firstDay;
+    private final int lastDay;
+    // the evaluated blocks, from firstBlock on
+    private int firstBlock = 0;
+    private int blockCount = 0;
+    private int[] words = new int[0];
+    // number of selectable days before each word, and in all of the blocks as the last element
+    private int[] ranks = new int[1];
+
+    /**
+     * @param filter
+     * @param firstDay  No day before this one is selectable
+     * @param lastDay   No day after this one is selectable
+     */
+    SelectableDays(Filter filter, int firstDay, int lastDay) {
+        this.filter = filter;
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * @param day
+     * @return  True if the day is selectable
+     */
+    public synchronized boolean isSelectable(int day) {
+        if (day < firstDay || day > lastDay) return false;
+        evaluate(day >> BLOCK_SHIFT, day >> BLOCK_SHIFT);
+        int position = position(day);
+        return (words[position >>> 5] & (1 << (position & 31))) != 0;
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return  Number of selectable days from one day to the other, both included
+     */
+    public synchronized int count(int from, int to) {
+        from = Math.max(from, firstDay);
+        to = Math.min(to, lastDay);
+        if (from > to) return 0;
+        evaluate(from >> BLOCK_SHIFT, to >> BLOCK_SHIFT);
+        return rank(position(to) + 1) - rank(position(from));
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return  The first day from one day to the other, both included, that is not selectable, null if all are
+     */
+    public synchronized Integer firstUnselectable(int from, int to) {
+        if (from > to) return null;
+        if (from < firstDay || from > lastDay) return from;
+        int end = Math.min(to, lastDay);
+        for (int b = from >> BLOCK_SHIFT; b <= end >> BLOCK_SHIFT; b++) {
+            evaluate(b, b);
+            int index = nextPosition(Math.max(position(from), position(b << BLOCK_SHIFT)), false);
+            if (index >= 0) {
+                int day = day(index);
+                return day <= to ? day : null;
+            }
+        }
+        return end < to ? end + 1 : null;
+    }
+
+    /**
+     * @param day
+     * @return  The first selectable day after the day, null if there is none within {@link #MAX_SEARCH_DAYS}
+     */
+    public synchronized Integer next(int day) {
+        if (day == Integer.MAX_VALUE) return null;
+        int from = Math.max(day + 1, firstDay);
+        int end = (int) Math.min((long) day + MAX_SEARCH_DAYS, lastDay);
+        for (int b = from >> BLOCK_SHIFT; b <= end >> BLOCK_SHIFT && from <= end; b++) {
+            evaluate(b, b);
+            int index = nextPosition(Math.max(position(from), position(b << BLOCK_SHIFT)), true);
+            if (index >= 0) {
+                int result = day(index);
+                return result <= end ? result : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param day
+     * @return  The last selectable day before the day, null if there is none within {@link #MAX_SEARCH_DAYS}
+     */
+    public synchronized Integer previous(int day) {
+        if (day == Integer.MIN_VALUE) return null;
+        int from = Math.min(day - 1, lastDay);
+        int end = (int) Math.max((long) day - MAX_SEARCH_DAYS, firstDay);
+        for (int b = from >> BLOCK_SHIFT; b >= end >> BLOCK_SHIFT && from >= end; b--) {
+            evaluate(b, b);
+            int index = previousPosition(Math.min(position(from), position(b << BLOCK_SHIFT) + BLOCK_DAYS - 1));
+            if (index >= 0) {
+                int result = day(index);
+                return result >= end ? result : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param day   A day of the evaluated blocks
+     * @return  Position of the day in the bitset
+     */
+    private int position(int day) {
+        return (int) ((long) day - ((long) firstBlock << BLOCK_SHIFT));
+    }
+
+    /**
+     * @param position  Position in the bitset
+     * @return  The day at the position
+     */
+    private int day(int position) {
+        return (int) (((long) firstBlock << BLOCK_SHIFT) + position);
+    }
+
+    /**
+     * @param position  Position in the bitset, up to the number of days in the evaluated blocks
+     * @return  Number of selectable days before the position
+     */
+    private int rank(int position) {
+        int w = position >>> 5;
+        if (w == words.length) return ranks[w];
+        return ranks[w] + Integer.bitCount(words[w] & ((1 << (position & 31)) - 1));
+    }
+
+    /**
+     * @param from  Position to start from
+     * @param selectable    True to look for a selectable day, false for a day that is not
+     * @return  Position of the first matching day at or after from within the block of from, -1 if there is none
+     */
+    private int nextPosition(int from, boolean selectable) {
+        int w = from >>> 5;
+        int blockEnd = (w / WORDS + 1) * WORDS;
+        int word = (selectable ? words[w] : ~words[w]) & (-1 << (from & 31));
+        while (true) {
+            if (word != 0) return w * 32 + Integer.numberOfTrailingZeros(word);
+            if (++w == blockEnd) return -1;
+            word = selectable ? words[w] : ~words[w];
+        }
+    }
+
+    /**
+     * @param from  Position to start from
+     * @return  Position of the last selectable day at or before from within the block of from, -1 if there is none
+     */
+    private int previousPosition(int from) {
+        int w = from >>> 5;
+        int blockStart = w / WORDS * WORDS;
+        int word = words[w] & (-1 >>> (31 - (from & 31)));
+        while (true) {
+            if (word != 0) return w * 32 + 31 - Integer.numberOfLeadingZeros(word);
+            if (--w < blockStart) return -1;
+            word = words[w];
+        }
+    }
+
+    /**
+     * Makes sure that the blocks from one to the other are evaluated. The evaluated blocks stay contiguous, so
+     * blocks between them and the blocks evaluated before are evaluated as well, unless that would keep more than
+     * {@link #MAX_BLOCKS} blocks that were not asked for. Then the blocks evaluated before are dropped.
+     * @param from  Block number, the block starts with day from * 512
+     * @param to    Block number
+     */
+    private void evaluate(int from, int to) {
+        int lastBlock = firstBlock + blockCount - 1;
+        if (blockCount > 0) {
+            if (from >= firstBlock && to <= lastBlock) return;
+            long span = (long) Math.max(to, lastBlock) - Math.min(from, firstBlock) + 1;
+            if (span - (to - from + 1) > MAX_BLOCKS) {
+                blockCount = 0;
+            } else {
+                from = Math.min(from, firstBlock);
+                to = Math.max(to, lastBlock);
+            }
+        }
+        int[] grown = new int[(to - from + 1) * WORDS];
+        int[] block = new int[WORDS];
+        for (int b = from; b <= to; b++) {
+            if (blockCount > 0 && b >= firstBlock && b <= lastBlock) {
+                System.arraycopy(words, (b - firstBlock) * WORDS, grown, (b - from) * WORDS, WORDS);
+            } else {
+                evaluateBlock(b, block);
+                System.arraycopy(block, 0, grown, (b - from) * WORDS, WORDS);
+            }
+        }
+        words = grown;
+        ranks = new int[grown.length + 1];
+        for (int w = 0; w < grown.length; w++) {
+            ranks[w + 1] = ranks[w] + Integer.bitCount(grown[w]);
+        }
+        firstBlock = from;
+        blockCount = to - from + 1;
+    }
+
+    /**
+     * @param index     Block number
+     * @param block     Filled with the selectable days of the block
+     */
+    private void evaluateBlock(int index, int[] block) {
+        long base = (long) index << BLOCK_SHIFT;
+        int start = (int) Math.max(firstDay - base, 0);
+        int end = (int) Math.min(lastDay - base, BLOCK_DAYS - 1);
+        for (int w = 0; w < WORDS; w++) {
+            int first = Math.max(start - w * 32, 0);
+            int last = Math.min(end - w * 32, 31);
+            block[w] = first > last ? 0 : (-1 >>> (31 - last)) & (-1 << first);
+        }
+        if (start <= end) {
+            filter.removeUnselectable((int) base, block);
+        }
+    }
+
+    /**
+     * Removes the days of a set from a block
+     * @param days
+     * @param base  First day of the block
+     * @param words
+     */
+    static void removeDays(EpochDaySet days, int base, int[] words) {
+        for (int i = days.indexAtOrAfter(base); i < days.size() && (long) days.get(i) - base < BLOCK_DAYS; i++) {
+            int position = days.get(i) - base;
+            words[position >>> 5] &= ~(1 << (position & 31));
+        }
+    }
+
+    /**
+     * Removes Saturdays and Sundays from a block
+     * @param base  First day of the block
+     * @param words
+     */
+    static void removeWeekends(int base, int[] words) {
+        int saturday = (EpochDays.SATURDAY - EpochDays.dayOfWeek(base) + 7) % 7;
+        for (int position = saturday - 7; position < BLOCK_DAYS; position += 7) {
+            // the Sunday after a Saturday, and the Sunday before the first Saturday
+            if (position >= 0) words[position >>> 5] &= ~(1 << (position & 31));
+            int sunday = position + 1;
+            if (sunday >= 0 && sunday < BLOCK_DAYS) words[sunday >>> 5] &= ~(1 << (sunday & 31));
+        }
+    }
+
+    /**
+     * Removes the days a rule matches from a block, evaluating the rule only for days that have not been removed
+     * @param rule
+     * @param base  First day of the block
+     * @param words
+     */
+    static void removeMatching(DayRule rule, int base, int[] words) {
+        for (int w = 0; w < WORDS; w++) {
+            for (int word = words[w]; word != 0; word &= word - 1) {
+                int bit = Integer.numberOfTrailingZeros(word);
+                if (rule.matches(base + w * 32 + bit)) {
+                    words[w] &= ~(1 << bit);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.vaadin.addons.rangedatefield;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * An immutable set of time intervals, e.g. booked appointment slots or the hours a place is closed. Intervals are
+ * merged when built and stored as sorted arrays of start and end times, so a lookup is a binary search over
+ * primitive arrays regardless of how many intervals there are. Intervals include their start and exclude their
+ * end, an interval from 10:00 to 11:00 does not contain 11:00.
+ */
+public class TimeIntervalSet implements Serializable {
+    public static final TimeIntervalSet EMPTY = new TimeIntervalSet(new long[0], new long[0]);
+
+    // milliseconds since 1970-01-01 00:00 UTC, starts[i] < ends[i] <= starts[i + 1]
+    private final long[] starts;
+    private final long[] ends;
+
+    private TimeIntervalSet(long[] starts, long[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * Collects intervals in any order, overlapping and adjacent intervals are merged by {@link #build()}
+     */
+    public static class Builder {
+        private long[] starts = new long[16];
+        private long[] ends = new long[16];
+        private int size = 0;
+
+        /**
+         * @param from  Start of the interval, included
+         * @param to    End of the interval, excluded
+         * @return  This builder
+         */
+        public Builder add(Date from, Date to) {
+            return add(from.getTime(), to.getTime());
+        }
+
+        /**
+         * @param from  Start of the interval in milliseconds, included
+         * @param to    End of the interval in milliseconds, excluded
+         * @return  This builder
+         */
+        public Builder add(long from, long to) {
+            if (from >= to) return this;
+            if (size == starts.length) {
+                starts = grow(starts);
+                ends = grow(ends);
+            }
+            starts[size] = from;
+            ends[size++] = to;
+            return this;
+        }
+
+        /**
+         * @param intervals
+         * @return  This builder
+         */
+        public Builder addAll(TimeIntervalSet intervals) {
+            for (int i = 0; i < intervals.size(); i++) {
+                add(intervals.starts[i], intervals.ends[i]);
+            }
+            return this;
+        }
+
+        public TimeIntervalSet build() {
+            if (size == 0) return EMPTY;
+            // sorted through an index, so that the starts and ends stay paired
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    return starts[a] < starts[b] ? -1 : starts[a] > starts[b] ? 1 : 0;
+                }
+            });
+            long[] mergedStarts = new long[size];
+            long[] mergedEnds = new long[size];
+            int merged = 0;
+            for (Integer i : order) {
+                if (merged > 0 && starts[i] <= mergedEnds[merged - 1]) {
+                    mergedEnds[merged - 1] = Math.max(mergedEnds[merged - 1], ends[i]);
+                } else {
+                    mergedStarts[merged] = starts[i];
+                    mergedEnds[merged++] = ends[i];
+                }
+            }
+            return new TimeIntervalSet(RangeDateFieldUtils.trim(mergedStarts, merged),
+                    RangeDateFieldUtils.trim(mergedEnds, merged));
+        }
+
+        private static long[] grow(long[] array) {
+            long[] grown = new long[array.length * 2];
+            System.arraycopy(array, 0, grown, 0, array.length);
+            return grown;
+        }
+    }
+
+    /**
+     * @param time  Milliseconds since 1970-01-01 00:00 UTC
+     * @return  True if one of the intervals contains the time
+     */
+    public boolean contains(long time) {
+        int i = indexAtOrBefore(time);
+        return i >= 0 && time < ends[i];
+    }
+
+    /**
+     * @param from  Start of a span, included
+     * @param to    End of the span, excluded
+     * @return  True if any part of the span is in one of the intervals
+     */
+    public boolean overlaps(long from, long to) {
+        if (from >= to) return false;
+        int i = indexAtOrBefore(from);
+        if (i >= 0 && from < ends[i]) return true;
+        // the next interval starts after from, it overlaps if it starts before to
+        return i + 1 < starts.length && starts[i + 1] < to;
+    }
+
+    /**
+     * @param zone  Time zone that decides where days start
+     * @return  The days that are entirely within the intervals
+     */
+    public EpochDaySet getCoveredDays(TimeZone zone) {
+        int[] days = new int[16];
+        int size = 0;
+        for (int i = 0; i < starts.length; i++) {
+            int day = RangeDateFieldUtils.toEpochDay(starts[i], zone);
+            if (dayStart(day, zone) < starts[i]) day++;
+            while (dayStart(day + 1, zone) <= ends[i]) {
+                if (size == days.length) {
+                    int[] grown = new int[days.length * 2];
+                    System.arraycopy(days, 0, grown, 0, size);
+                    days = grown;
+                }
+                days[size++] = day++;
+            }
+        }
+        return EpochDaySet.of(RangeDateFieldUtils.trim(days, size));
+    }
+
+    private static long dayStart(int day, TimeZone zone) {
+        return RangeDateFieldUtils.toDate(day, zone).getTime();
+    }
+
+    /**
+     * @param time
+     * @return  Index of the last interval starting at or before the time, -1 if there is none
+     */
+    private int indexAtOrBefore(long time) {
+        int i = Arrays.binarySearch(starts, time);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * @return  Number of intervals after merging
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * @param index     Position in ascending order
+     * @return  Start of the interval in milliseconds
+     */
+    public long getStart(int index) {
+        return starts[index];
+    }
+
+    /**
+     * @param index     Position in ascending order
+     * @return  End of the interval in milliseconds, excluded from the interval
+     */
+    public long getEnd(int index) {
+        return ends[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeIntervalSet)) return false;
+        TimeIntervalSet other = (TimeIntervalSet) o;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(ends, other.ends);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(ends);
+    }
+}
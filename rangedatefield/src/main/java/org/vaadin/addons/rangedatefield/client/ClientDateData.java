@@ -0,0 +1,356 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The restrictions and date styles of a {@link VRangeDateField}: decodes the attributes painted by the server and
+ * evaluates them into the cached state of the calendar cells. It does not use any widgets, so the same code runs
+ * in the browser and on the JVM.
+ */
+public class ClientDateData {
+    /**
+     * Attributes of an update from the server, e.g. those of a UIDL
+     */
+    public interface Attributes {
+        boolean hasAttribute(String name);
+
+        String getStringAttribute(String name);
+
+        String[] getStringArrayAttribute(String name);
+
+        boolean getBooleanAttribute(String name);
+    }
+
+    private Integer validFromDay = null;
+    private Integer validToDay = null;
+    private DayBitSet excludedDays = null;
+    private DayRule exclusionRule = null;
+    private Map<Integer, List<String>> dateStyleNames = null;
+    private final DateStyleDictionary styleDictionary = new DateStyleDictionary();
+    private boolean excludeWeekends = false;
+    // false if the field leaves weekends to its shared calendar data
+    private boolean hasExcludeWeekends = false;
+    private SharedCalendarData sharedData = null;
+    private boolean availabilityProvider = false;
+    private Map<Integer, MonthAvailability> months = new HashMap<Integer, MonthAvailability>();
+    private Set<Integer> loadingMonths = new HashSet<Integer>();
+    private final DayCellCache cells = new DayCellCache(new DayCellCache.CellFactory() {
+        public DayCellCache.Cell createCell(int epochDay) {
+            return new DayCellCache.Cell(!isValidDay(epochDay),
+                    loadingMonths.contains(EpochDays.monthIndex(epochDay)), getDayStyles(epochDay));
+        }
+    });
+
+    /**
+     * Applies an update from the server. The server sends either all of the excluded dates and date styles or,
+     * if {@link VRangeDateField#DATE_DATA_DELTA_PARAM} is set, only the ones added and removed since its last paint.
+     * @param attributes
+     */
+    public void update(Attributes attributes) {
+        Integer previousValidFromDay = validFromDay;
+        Integer previousValidToDay = validToDay;
+        DayRule previousExclusionRule = exclusionRule;
+        boolean previousExcludeWeekends = isExcludingWeekends();
+        if (attributes.hasAttribute(VRangeDateField.VALID_FROM_DATE_PARAM)) {
+            validFromDay = EpochDays.parse(attributes.getStringAttribute(VRangeDateField.VALID_FROM_DATE_PARAM));
+        } else {
+            validFromDay = null;
+        }
+        if (attributes.hasAttribute(VRangeDateField.VALID_TO_DATE_PARAM)) {
+            validToDay = EpochDays.parse(attributes.getStringAttribute(VRangeDateField.VALID_TO_DATE_PARAM));
+        } else {
+            validToDay = null;
+        }
+        if (attributes.hasAttribute(VRangeDateField.EXCLUSION_RULE_PARAM)) {
+            String encoded = attributes.getStringAttribute(VRangeDateField.EXCLUSION_RULE_PARAM);
+            if (exclusionRule == null || !encoded.equals(exclusionRule.encode())) {
+                exclusionRule = DayRule.parse(encoded);
+            }
+        } else {
+            exclusionRule = null;
+        }
+        if (!attributes.hasAttribute(VRangeDateField.DATE_DATA_DELTA_PARAM)) {
+            // style ids are assigned again on every full update
+            styleDictionary.clear();
+        }
+        if (attributes.hasAttribute(VRangeDateField.STYLE_NAMES_PARAM)) {
+            styleDictionary.addStyleNames(attributes.getStringArrayAttribute(VRangeDateField.STYLE_NAMES_PARAM));
+        }
+        if (attributes.hasAttribute(VRangeDateField.DATE_DATA_DELTA_PARAM)) {
+            DayBitSet added = decodeDays(attributes, VRangeDateField.EXCLUDE_DAYS_ADDED_PARAM,
+                    VRangeDateField.EXCLUDE_DATES_ADDED_PARAM);
+            DayBitSet removed = decodeDays(attributes, VRangeDateField.EXCLUDE_DAYS_REMOVED_PARAM,
+                    VRangeDateField.EXCLUDE_DATES_REMOVED_PARAM);
+            if (excludedDays == null) {
+                excludedDays = DayBitSet.of(null);
+            }
+            if (removed != null) {
+                excludedDays.removeAll(removed);
+                invalidateDays(removed);
+            }
+            if (added != null) {
+                excludedDays.addAll(added);
+                invalidateDays(added);
+            }
+            updateDateStyleNames(attributes);
+        } else {
+            excludedDays = decodeDays(attributes, VRangeDateField.EXCLUDE_DAYS_PARAM,
+                    VRangeDateField.EXCLUDE_DATES_PARAM);
+            dateStyleNames = decodeDateStyleNames(attributes, VRangeDateField.DATE_STYLE_NAMES_PARAM);
+            cells.clear();
+        }
+        hasExcludeWeekends = attributes.hasAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM);
+        if (hasExcludeWeekends) {
+            excludeWeekends = attributes.getBooleanAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM);
+        } else {
+            excludeWeekends = false;
+        }
+        if (isExcludingWeekends() != previousExcludeWeekends || exclusionRule != previousExclusionRule
+                || !equal(validFromDay, previousValidFromDay) || !equal(validToDay, previousValidToDay)) {
+            cells.clear();
+        }
+        updateAvailability(attributes);
+    }
+
+    /**
+     * Stores the months sent by the server's availability provider and the months it is still loading
+     * @param attributes
+     */
+    private void updateAvailability(Attributes attributes) {
+        availabilityProvider = attributes.hasAttribute(VRangeDateField.AVAILABILITY_PROVIDER_PARAM);
+        if ((!availabilityProvider || attributes.hasAttribute(VRangeDateField.AVAILABILITY_RESET_PARAM))
+                && !months.isEmpty()) {
+            months = new HashMap<Integer, MonthAvailability>();
+            cells.clear();
+        }
+        if (attributes.hasAttribute(VRangeDateField.AVAILABILITY_PARAM)) {
+            for (String encoded : attributes.getStringArrayAttribute(VRangeDateField.AVAILABILITY_PARAM)) {
+                MonthAvailability month = MonthAvailability.decode(encoded);
+                months.put(month.getMonthIndex(), month);
+                cells.invalidateMonth(month.getMonthIndex());
+            }
+        }
+        Set<Integer> loading = new HashSet<Integer>();
+        if (attributes.hasAttribute(VRangeDateField.AVAILABILITY_LOADING_PARAM)) {
+            for (String month : attributes.getStringArrayAttribute(VRangeDateField.AVAILABILITY_LOADING_PARAM)) {
+                loading.add(Integer.parseInt(month));
+            }
+        }
+        if (!loading.equals(loadingMonths)) {
+            for (Integer month : loading) {
+                cells.invalidateMonth(month);
+            }
+            for (Integer month : loadingMonths) {
+                cells.invalidateMonth(month);
+            }
+            loadingMonths = loading;
+        }
+    }
+
+    /**
+     * Applies added and removed date styles to the current styles. Style lists are shared between days,
+     * so a changed list is replaced instead of being modified.
+     * @param attributes
+     */
+    private void updateDateStyleNames(Attributes attributes) {
+        Map<Integer, List<String>> added = decodeDateStyleNames(attributes,
+                VRangeDateField.DATE_STYLE_NAMES_ADDED_PARAM);
+        Map<Integer, List<String>> removed = decodeDateStyleNames(attributes,
+                VRangeDateField.DATE_STYLE_NAMES_REMOVED_PARAM);
+        if (dateStyleNames == null) {
+            dateStyleNames = new HashMap<Integer, List<String>>();
+        }
+        if (removed != null) {
+            for (Map.Entry<Integer, List<String>> entry : removed.entrySet()) {
+                cells.invalidateDay(entry.getKey());
+                List<String> styles = dateStyleNames.get(entry.getKey());
+                if (styles != null) {
+                    List<String> remaining = new ArrayList<String>(styles);
+                    remaining.removeAll(entry.getValue());
+                    if (remaining.isEmpty()) {
+                        dateStyleNames.remove(entry.getKey());
+                    } else {
+                        dateStyleNames.put(entry.getKey(), remaining);
+                    }
+                }
+            }
+        }
+        if (added != null) {
+            for (Map.Entry<Integer, List<String>> entry : added.entrySet()) {
+                cells.invalidateDay(entry.getKey());
+                List<String> styles = dateStyleNames.get(entry.getKey());
+                if (styles == null) {
+                    dateStyleNames.put(entry.getKey(), entry.getValue());
+                } else {
+                    List<String> merged = null;
+                    for (String style : entry.getValue()) {
+                        if (!styles.contains(style)) {
+                            if (merged == null) merged = new ArrayList<String>(styles);
+                            merged.add(style);
+                        }
+                    }
+                    if (merged != null) dateStyleNames.put(entry.getKey(), merged);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a set of days sent either as a bitset or as a list of formatted dates
+     * @param attributes
+     * @param bitSetParam   Attribute name of the bitset form
+     * @param listParam     Attribute name of the list form
+     * @return  The days or null if neither attribute is present
+     */
+    public static DayBitSet decodeDays(Attributes attributes, String bitSetParam, String listParam) {
+        if (attributes.hasAttribute(bitSetParam)) {
+            return DayBitSet.decode(attributes.getStringAttribute(bitSetParam));
+        } else if (attributes.hasAttribute(listParam)) {
+            String[] dates = attributes.getStringArrayAttribute(listParam);
+            int[] days = new int[dates.length];
+            for (int i = 0; i < dates.length; i++) {
+                days[i] = EpochDays.parse(dates[i]);
+            }
+            return DayBitSet.of(days);
+        }
+        return null;
+    }
+
+    /**
+     * Reads date styles sent as a list of "styleId1,styleId2:day1,day2" values
+     * @param attributes
+     * @param param
+     * @return  Styles by epoch day or null if the attribute is not present
+     */
+    public Map<Integer, List<String>> decodeDateStyleNames(Attributes attributes, String param) {
+        if (!attributes.hasAttribute(param)) return null;
+        return styleDictionary.decode(attributes.getStringArrayAttribute(param));
+    }
+
+    /**
+     * Drops the cached cells of the months the days belong to
+     * @param changed
+     */
+    private void invalidateDays(DayBitSet changed) {
+        for (int day : changed.toArray()) {
+            cells.invalidateDay(day);
+        }
+    }
+
+    private static boolean equal(Integer day1, Integer day2) {
+        return day1 == null ? day2 == null : day1.equals(day2);
+    }
+
+    /**
+     * @param sharedData    Calendar data the field refers to, null if it has none
+     */
+    public void setSharedData(SharedCalendarData sharedData) {
+        if (sharedData != this.sharedData) {
+            this.sharedData = sharedData;
+            cells.clear();
+        }
+    }
+
+    public SharedCalendarData getSharedData() {
+        return sharedData;
+    }
+
+    /**
+     * @return  Cached state of the calendar cells
+     */
+    public DayCellCache getCells() {
+        return cells;
+    }
+
+    /**
+     * @return  True if the server loads the availability of the field one month at a time
+     */
+    public boolean isAvailabilityProvider() {
+        return availabilityProvider;
+    }
+
+    /**
+     * @param monthIndex
+     * @return  True if the availability provider's data for the month has been received
+     */
+    public boolean hasMonth(int monthIndex) {
+        return months.containsKey(monthIndex);
+    }
+
+    /**
+     * @param day   Epoch day
+     * @return  True if the day is excluded by the server or by the exclusion rule
+     */
+    public boolean isExcluded(int day) {
+        if (excludedDays != null && excludedDays.contains(day) || exclusionRule != null && exclusionRule.matches(day)
+                || sharedData != null && sharedData.isDayExcluded(day)) {
+            return true;
+        }
+        MonthAvailability month = months.get(EpochDays.monthIndex(day));
+        return month != null && month.isDayExcluded(EpochDays.dayOfMonth(day));
+    }
+
+    /**
+     * Evaluates the rules for a day whose cell is not cached yet
+     * @param epochDay
+     * @return  True if the day is not disabled in the calendar
+     */
+    public boolean isValidDay(int epochDay) {
+        int dayOfWeek = EpochDays.dayOfWeek(epochDay);
+        Integer from = validFromDay != null || sharedData == null ? validFromDay : sharedData.getValidFromDay();
+        Integer to = validToDay != null || sharedData == null ? validToDay : sharedData.getValidToDay();
+        return (!isExcludingWeekends() || dayOfWeek != EpochDays.SUNDAY && dayOfWeek != EpochDays.SATURDAY) &&
+                (from == null || from <= epochDay) &&
+                (to == null || to >= epochDay) &&
+                !isExcluded(epochDay);
+    }
+
+    /**
+     * @return  The exclude weekends flag of the field, or of its shared calendar data if the field does not have one
+     */
+    public boolean isExcludingWeekends() {
+        if (hasExcludeWeekends || sharedData == null || sharedData.getExcludeWeekends() == null) {
+            return excludeWeekends;
+        }
+        return sharedData.getExcludeWeekends();
+    }
+
+    /**
+     * @param epochDay
+     * @return  A list of custom CSS styles assigned to a day whose cell is not cached yet
+     */
+    public List<String> getDayStyles(int epochDay) {
+        List<String> styles = concat(dateStyleNames != null ? dateStyleNames.get(epochDay) : null,
+                getMonthStyles(epochDay));
+        return sharedData != null ? concat(styles, sharedData.getDayStyleNames(epochDay)) : styles;
+    }
+
+    /**
+     * @param day
+     * @return  Styles of the day sent by the availability provider, null if there are none
+     */
+    private List<String> getMonthStyles(int day) {
+        if (months.isEmpty()) return null;
+        MonthAvailability month = months.get(EpochDays.monthIndex(day));
+        return month != null ? month.getDayStyleNames(EpochDays.dayOfMonth(day)) : null;
+    }
+
+    /**
+     * @param first
+     * @param second
+     * @return  Both lists joined, or either of them if the other one is empty
+     */
+    private static List<String> concat(List<String> first, List<String> second) {
+        if (first == null || first.isEmpty()) return second;
+        if (second == null || second.isEmpty()) return first;
+        List<String> result = new LinkedList<String>(first);
+        result.addAll(second);
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side copy of the style names sent by the server, see {@link VRangeDateField#STYLE_NAMES_PARAM}.
+ * Decodes date styles sent as "styleId1,styleId2:day1,day2" values.
+ */
+public class DateStyleDictionary {
+    private final List<String> styleNames = new ArrayList<String>();
+    private final Map<String, List<String>> styleLists = new HashMap<String, List<String>>();
+
+    /**
+     * Forgets all style names, the server assigns the ids again on every full update
+     */
+    public void clear() {
+        styleNames.clear();
+        styleLists.clear();
+    }
+
+    /**
+     * @param names     Style names that got the next free ids, in the order of their ids
+     */
+    public void addStyleNames(String[] names) {
+        Collections.addAll(styleNames, names);
+    }
+
+    /**
+     * @param dayStyles     "styleId1,styleId2:day1,day2" values
+     * @return  Styles by epoch day
+     */
+    public Map<Integer, List<String>> decode(String[] dayStyles) {
+        Map<Integer, List<String>> result = new HashMap<Integer, List<String>>();
+        for (String group : dayStyles) {
+            int separator = group.indexOf(':');
+            List<String> styles = getStyleList(group.substring(0, separator));
+            for (String day : group.substring(separator + 1).split(",")) {
+                result.put(Integer.parseInt(day), styles);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param ids   Comma separated style ids
+     * @return  An unmodifiable list of the styles, shared by all days with the same styles
+     */
+    private List<String> getStyleList(String ids) {
+        List<String> styles = styleLists.get(ids);
+        if (styles == null) {
+            styles = new ArrayList<String>();
+            for (String id : ids.split(",")) {
+                styles.add(styleNames.get(Integer.parseInt(id)));
+            }
+            styles = Collections.unmodifiableList(styles);
+            styleLists.put(ids, styles);
+        }
+        return styles;
+    }
+}
@@ -0,0 +1,212 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.io.Serializable;
+
+/**
+ * A set of epoch days stored as a bitset starting at the first day of the set.
+ * It is used both to send excluded days to the client in a compact form and as the client side lookup structure.
+ * <p>
+ * The encoded form is "firstDay:bits" where the bits are written six per character using the URL safe
+ * base64 alphabet, least significant bit first.
+ */
+public class DayBitSet implements Serializable {
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+
+    private int firstDay;
+    private int[] words;
+
+    private DayBitSet(int firstDay, int[] words) {
+        this.firstDay = firstDay;
+        this.words = words;
+    }
+
+    /**
+     * @param days  Epoch days in any order
+     * @return  A bitset containing the provided days
+     */
+    public static DayBitSet of(int[] days) {
+        if (days == null || days.length == 0) return new DayBitSet(0, new int[0]);
+        int min = days[0];
+        int max = days[0];
+        for (int day : days) {
+            if (day < min) min = day;
+            if (day > max) max = day;
+        }
+        DayBitSet result = new DayBitSet(min, new int[(max - min) / 32 + 1]);
+        for (int day : days) {
+            result.set(day - min);
+        }
+        return result;
+    }
+
+    /**
+     * @param encoded  A value produced by {@link #encode()}
+     * @return  The decoded bitset
+     */
+    public static DayBitSet decode(String encoded) {
+        int separator = encoded.indexOf(':');
+        String bits = encoded.substring(separator + 1);
+        DayBitSet result = new DayBitSet(Integer.parseInt(encoded.substring(0, separator)),
+                new int[(bits.length() * 6 + 31) / 32]);
+        for (int i = 0; i < bits.length(); i++) {
+            int value = decodeChar(bits.charAt(i));
+            for (int b = 0; value != 0; b++, value >>>= 1) {
+                if ((value & 1) != 0) {
+                    result.set(i * 6 + b);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return  The encoded form of this set, see {@link #decode(String)}
+     */
+    public String encode() {
+        int start = Math.max(nextSetBit(0), 0);
+        int length = length();
+        StringBuilder result = new StringBuilder((length - start) / 6 + 12);
+        result.append(firstDay + start).append(':');
+        for (int i = start; i < length; i += 6) {
+            int value = 0;
+            for (int b = 0; b < 6 && i + b < length; b++) {
+                if (get(i + b)) {
+                    value |= 1 << b;
+                }
+            }
+            result.append(ALPHABET.charAt(value));
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param day  Epoch day
+     * @return  True if the day is in this set
+     */
+    public boolean contains(int day) {
+        int index = day - firstDay;
+        return index >= 0 && index < words.length * 32 && get(index);
+    }
+
+    public boolean isEmpty() {
+        return length() == 0;
+    }
+
+    /**
+     * Adds a day to this set, growing it if needed
+     * @param day  Epoch day
+     */
+    public void add(int day) {
+        if (words.length == 0) {
+            firstDay = day;
+            words = new int[1];
+        }
+        int index = day - firstDay;
+        if (index < 0) {
+            int shift = (31 - index) / 32;
+            int[] grown = new int[words.length + shift];
+            System.arraycopy(words, 0, grown, shift, words.length);
+            words = grown;
+            firstDay -= shift * 32;
+            index += shift * 32;
+        } else if (index >= words.length * 32) {
+            int[] grown = new int[Math.max(index / 32 + 1, words.length * 2)];
+            System.arraycopy(words, 0, grown, 0, words.length);
+            words = grown;
+        }
+        set(index);
+    }
+
+    /**
+     * Removes a day from this set
+     * @param day  Epoch day
+     */
+    public void remove(int day) {
+        int index = day - firstDay;
+        if (index >= 0 && index < words.length * 32) {
+            words[index >>> 5] &= ~(1 << (index & 31));
+        }
+    }
+
+    /**
+     * Adds all days of another set to this one
+     * @param other
+     */
+    public void addAll(DayBitSet other) {
+        for (int i = other.nextSetBit(0); i >= 0; i = other.nextSetBit(i + 1)) {
+            add(other.firstDay + i);
+        }
+    }
+
+    /**
+     * Removes all days of another set from this one
+     * @param other
+     */
+    public void removeAll(DayBitSet other) {
+        for (int i = other.nextSetBit(0); i >= 0; i = other.nextSetBit(i + 1)) {
+            remove(other.firstDay + i);
+        }
+    }
+
+    /**
+     * @return  The days of this set in ascending order
+     */
+    public int[] toArray() {
+        int size = 0;
+        for (int word : words) {
+            size += Integer.bitCount(word);
+        }
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            result[n++] = firstDay + i;
+        }
+        return result;
+    }
+
+    /**
+     * @return  Number of bits up to and including the last day in the set
+     */
+    private int length() {
+        for (int w = words.length - 1; w >= 0; w--) {
+            if (words[w] != 0) {
+                return w * 32 + 32 - Integer.numberOfLeadingZeros(words[w]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param from  Bit index to start searching from
+     * @return  Index of the first set bit at or after from, -1 if there is none
+     */
+    private int nextSetBit(int from) {
+        int w = from >>> 5;
+        if (w >= words.length) return -1;
+        int word = words[w] & (-1 << (from & 31));
+        while (true) {
+            if (word != 0) {
+                return w * 32 + Integer.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) return -1;
+            word = words[w];
+        }
+    }
+
+    private boolean get(int index) {
+        return (words[index >>> 5] & (1 << (index & 31))) != 0;
+    }
+
+    private void set(int index) {
+        words[index >>> 5] |= 1 << (index & 31);
+    }
+
+    private static int decodeChar(char c) {
+        if (c >= 'A' && c <= 'Z') return c - 'A';
+        if (c >= 'a' && c <= 'z') return c - 'a' + 26;
+        if (c >= '0' && c <= '9') return c - '0' + 52;
+        if (c == '-') return 62;
+        if (c == '_') return 63;
+        throw new IllegalArgumentException("Illegal character in encoded day set: " + c);
+    }
+}
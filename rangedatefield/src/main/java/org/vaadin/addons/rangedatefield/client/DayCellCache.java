@@ -0,0 +1,184 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computed state of the calendar cells, kept per month so that paging back and forth between months does not
+ * evaluate the exclusion rules and style maps again. The least recently used months are dropped first, along with
+ * the number of disabled days before each of their days. Months outside the cache are counted without being
+ * cached, so that checking long spans does not evict the months on screen.
+ */
+public class DayCellCache {
+    public static final int DEFAULT_MAX_MONTHS = 12;
+
+    /**
+     * State of a single day cell
+     */
+    public static class Cell {
+        private final boolean disabled;
+        private final boolean loading;
+        private final List<String> styleNames;
+
+        public Cell(boolean disabled, List<String> styleNames) {
+            this(disabled, false, styleNames);
+        }
+
+        public Cell(boolean disabled, boolean loading, List<String> styleNames) {
+            this.disabled = disabled;
+            this.loading = loading;
+            this.styleNames = styleNames;
+        }
+
+        public boolean isDisabled() {
+            return disabled;
+        }
+
+        /**
+         * @return  True if the day's month is still being loaded by the server
+         */
+        public boolean isLoading() {
+            return loading;
+        }
+
+        /**
+         * @return  Custom CSS styles of the day, null if there are none
+         */
+        public List<String> getStyleNames() {
+            return styleNames;
+        }
+    }
+
+    /**
+     * Computes the cells of months missing from the cache
+     */
+    public interface CellFactory {
+        /**
+         * @param epochDay
+         * @return  State of the day's cell
+         */
+        Cell createCell(int epochDay);
+    }
+
+    /**
+     * Cells of a cached month
+     */
+    private static class Month {
+        final Cell[] cells;
+        // number of disabled days before each day of the month and after its last day
+        final int[] disabledBefore;
+
+        Month(Cell[] cells, int[] disabledBefore) {
+            this.cells = cells;
+            this.disabledBefore = disabledBefore;
+        }
+    }
+
+    private final CellFactory factory;
+    // by month index, in access order
+    private final Map<Integer, Month> months;
+
+    public DayCellCache(CellFactory factory) {
+        this(factory, DEFAULT_MAX_MONTHS);
+    }
+
+    public DayCellCache(CellFactory factory, final int maxMonths) {
+        this.factory = factory;
+        months = new LinkedHashMap<Integer, Month>(maxMonths + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Month> eldest) {
+                return size() > maxMonths;
+            }
+        };
+    }
+
+    /**
+     * @param epochDay
+     * @return  State of the day's cell, computing the whole month if it is not cached
+     */
+    public Cell get(int epochDay) {
+        int monthIndex = EpochDays.monthIndex(epochDay);
+        return getMonth(monthIndex).cells[epochDay - EpochDays.firstDayOfMonth(monthIndex)];
+    }
+
+    /**
+     * Counts disabled days with the prefix counts of the months, so the cost depends on the number of months
+     * in the span instead of the number of days once the months are cached. Months that are not cached are
+     * evaluated day by day and are not added to the cache.
+     * @param from
+     * @param to
+     * @return  Number of disabled days from one day to the other, both included
+     */
+    public int countDisabled(int from, int to) {
+        int result = 0;
+        for (int monthIndex = EpochDays.monthIndex(from); from <= to; monthIndex++) {
+            int firstDay = EpochDays.firstDayOfMonth(monthIndex);
+            int[] disabledBefore = getDisabledCounts(monthIndex);
+            int length = disabledBefore.length - 1;
+            int last = Math.min(to - firstDay, length - 1);
+            result += disabledBefore[last + 1] - disabledBefore[from - firstDay];
+            from = firstDay + length;
+        }
+        return result;
+    }
+
+    /**
+     * @param monthIndex
+     * @return  The month, computed if it is not cached
+     */
+    private Month getMonth(int monthIndex) {
+        Month month = months.get(monthIndex);
+        if (month == null) {
+            int firstDay = EpochDays.firstDayOfMonth(monthIndex);
+            Cell[] cells = new Cell[EpochDays.firstDayOfMonth(monthIndex + 1) - firstDay];
+            int[] disabledBefore = new int[cells.length + 1];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = factory.createCell(firstDay + i);
+                disabledBefore[i + 1] = disabledBefore[i] + (cells[i].isDisabled() ? 1 : 0);
+            }
+            month = new Month(cells, disabledBefore);
+            months.put(monthIndex, month);
+        }
+        return month;
+    }
+
+    /**
+     * @param monthIndex
+     * @return  Number of disabled days before each day of the month and after its last day, computed without
+     * caching the month if it is not cached
+     */
+    private int[] getDisabledCounts(int monthIndex) {
+        Month month = months.get(monthIndex);
+        if (month != null) return month.disabledBefore;
+        int firstDay = EpochDays.firstDayOfMonth(monthIndex);
+        int[] disabledBefore = new int[EpochDays.firstDayOfMonth(monthIndex + 1) - firstDay + 1];
+        for (int i = 1; i < disabledBefore.length; i++) {
+            disabledBefore[i] = disabledBefore[i - 1] + (factory.createCell(firstDay + i - 1).isDisabled() ? 1 : 0);
+        }
+        return disabledBefore;
+    }
+
+    /**
+     * Drops the month of a day whose state has changed
+     * @param epochDay
+     */
+    public void invalidateDay(int epochDay) {
+        invalidateMonth(EpochDays.monthIndex(epochDay));
+    }
+
+    /**
+     * Drops a month whose state has changed
+     * @param monthIndex    See {@link EpochDays#monthIndex(int, int)}
+     */
+    public void invalidateMonth(int monthIndex) {
+        months.remove(monthIndex);
+    }
+
+    /**
+     * Drops all months, used when a change affects every day
+     */
+    public void clear() {
+        months.clear();
+    }
+}
@@ -0,0 +1,403 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rule that decides whether a day matches without listing the matching days, for example "every second Tuesday"
+ * or "last business day of the month". Rules are evaluated the same way on the server and in the browser and
+ * are sent to the client in a short text form, see {@link #encode()} and {@link #parse(String)}.
+ * <p>
+ * Days of the week are numbered like {@link java.util.Date#getDay()}: 0 is Sunday and 6 is Saturday.
+ */
+public abstract class DayRule implements Serializable {
+
+    /**
+     * @param epochDay
+     * @return  True if the day matches this rule
+     */
+    public abstract boolean matches(int epochDay);
+
+    protected abstract void encode(StringBuilder target);
+
+    /**
+     * @return  The text form of this rule, see {@link #parse(String)}
+     */
+    public String encode() {
+        StringBuilder result = new StringBuilder();
+        encode(result);
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof DayRule && encode().equals(((DayRule) o).encode());
+    }
+
+    @Override
+    public int hashCode() {
+        return encode().hashCode();
+    }
+
+    /**
+     * @param daysOfWeek    Days of the week, 0 (Sunday) - 6 (Saturday)
+     * @return  A rule matching every week on the specified days
+     */
+    public static DayRule weekdays(int... daysOfWeek) {
+        int mask = 0;
+        for (int day : daysOfWeek) {
+            mask |= 1 << checkDayOfWeek(day);
+        }
+        return new Weekdays(mask);
+    }
+
+    /**
+     * @param dayOfWeek     Day of the week, 0 (Sunday) - 6 (Saturday)
+     * @param interval      Number of weeks between matching days, 2 for every second week
+     * @param anchorDay     An epoch day in the first matching week
+     * @return  A rule matching the day of the week every interval weeks
+     */
+    public static DayRule everyNthWeek(int dayOfWeek, int interval, int anchorDay) {
+        if (interval < 1) throw new IllegalArgumentException("Invalid interval: " + interval);
+        return new EveryNthWeek(checkDayOfWeek(dayOfWeek), interval, anchorDay);
+    }
+
+    /**
+     * @param n     1 for the first, 2 for the second, ... 5 for the fifth, -1 for the last, -2 for the second to last
+     * @param dayOfWeek     Day of the week, 0 (Sunday) - 6 (Saturday)
+     * @return  A rule matching the nth occurrence of a day of the week in every month
+     */
+    public static DayRule nthWeekdayOfMonth(int n, int dayOfWeek) {
+        if (n == 0 || n < -5 || n > 5) throw new IllegalArgumentException("Invalid occurrence: " + n);
+        return new NthWeekdayOfMonth(n, checkDayOfWeek(dayOfWeek));
+    }
+
+    /**
+     * @param dayOfMonth    1 - 31, or -1 for the last day of the month, -2 for the day before it, ...
+     * @return  A rule matching a day of every month
+     */
+    public static DayRule dayOfMonth(int dayOfMonth) {
+        if (dayOfMonth == 0 || dayOfMonth < -31 || dayOfMonth > 31) {
+            throw new IllegalArgumentException("Invalid day of month: " + dayOfMonth);
+        }
+        return new DayOfMonth(dayOfMonth);
+    }
+
+    /**
+     * @return  A rule matching the last Monday - Friday of every month
+     */
+    public static DayRule lastBusinessDayOfMonth() {
+        return new LastBusinessDayOfMonth();
+    }
+
+    /**
+     * @param month     1 - 12
+     * @param dayOfMonth    1 - 31
+     * @return  A rule matching the same date every year
+     */
+    public static DayRule yearly(int month, int dayOfMonth) {
+        if (month < 1 || month > 12 || dayOfMonth < 1 || dayOfMonth > 31) {
+            throw new IllegalArgumentException("Invalid date: " + month + "/" + dayOfMonth);
+        }
+        return new Yearly(month, dayOfMonth);
+    }
+
+    /**
+     * @param fromDay   First matching epoch day
+     * @param toDay     Last matching epoch day
+     * @return  A rule matching the days between the specified days
+     */
+    public static DayRule interval(int fromDay, int toDay) {
+        if (fromDay > toDay) throw new IllegalArgumentException("Invalid interval: " + fromDay + " - " + toDay);
+        return new Interval(fromDay, toDay);
+    }
+
+    /**
+     * @param rules
+     * @return  A rule matching the days that match any of the rules
+     */
+    public static DayRule union(DayRule... rules) {
+        return new Composite('U', rules);
+    }
+
+    /**
+     * @param rules
+     * @return  A rule matching the days that match all of the rules
+     */
+    public static DayRule intersection(DayRule... rules) {
+        return new Composite('A', rules);
+    }
+
+    /**
+     * @param include
+     * @param exclude
+     * @return  A rule matching the days that match the first rule but not the second one
+     */
+    public static DayRule difference(DayRule include, DayRule exclude) {
+        return new Composite('X', new DayRule[]{include, exclude});
+    }
+
+    /**
+     * Parses the text form of a rule. The forms are:
+     * <ul>
+     *     <li>W{mask} - weekdays, bit 0 is Sunday</li>
+     *     <li>E{dayOfWeek},{interval},{anchorDay} - every nth week</li>
+     *     <li>N{n},{dayOfWeek} - nth weekday of the month</li>
+     *     <li>D{dayOfMonth} - day of the month</li>
+     *     <li>B - last business day of the month</li>
+     *     <li>Y{month},{dayOfMonth} - yearly</li>
+     *     <li>I{fromDay},{toDay} - interval</li>
+     *     <li>U(rule;rule;...), A(rule;rule;...), X(include;exclude) - union, intersection, difference</li>
+     * </ul>
+     * @param encoded
+     * @return  The parsed rule
+     */
+    public static DayRule parse(String encoded) {
+        int[] position = new int[1];
+        DayRule result = parse(encoded, position);
+        if (position[0] != encoded.length()) {
+            throw new IllegalArgumentException("Unexpected input at " + position[0] + ": " + encoded);
+        }
+        return result;
+    }
+
+    private static DayRule parse(String encoded, int[] position) {
+        char type = encoded.charAt(position[0]++);
+        if (type == 'U' || type == 'A' || type == 'X') {
+            List<DayRule> rules = new ArrayList<DayRule>();
+            expect(encoded, position, '(');
+            while (true) {
+                rules.add(parse(encoded, position));
+                char c = encoded.charAt(position[0]++);
+                if (c == ')') break;
+                if (c != ';') throw new IllegalArgumentException("Unexpected input at " + (position[0] - 1) + ": " + encoded);
+            }
+            if (type == 'X' && rules.size() != 2) {
+                throw new IllegalArgumentException("Difference needs two rules: " + encoded);
+            }
+            return new Composite(type, rules.toArray(new DayRule[rules.size()]));
+        }
+        int end = position[0];
+        while (end < encoded.length() && "();".indexOf(encoded.charAt(end)) < 0) end++;
+        String body = encoded.substring(position[0], end);
+        position[0] = end;
+        String[] args = body.length() > 0 ? body.split(",") : new String[0];
+        int expected = type == 'B' ? 0 : type == 'W' || type == 'D' ? 1 : type == 'E' ? 3 : 2;
+        if (args.length != expected && "WENDBYI".indexOf(type) >= 0) {
+            throw new IllegalArgumentException("Expected " + expected + " arguments for " + type + ": " + encoded);
+        }
+        switch (type) {
+            case 'W':
+                return new Weekdays(Integer.parseInt(args[0]));
+            case 'E':
+                return everyNthWeek(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            case 'N':
+                return nthWeekdayOfMonth(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+            case 'D':
+                return dayOfMonth(Integer.parseInt(args[0]));
+            case 'B':
+                return lastBusinessDayOfMonth();
+            case 'Y':
+                return yearly(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+            case 'I':
+                return interval(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+            default:
+                throw new IllegalArgumentException("Unknown rule type " + type + ": " + encoded);
+        }
+    }
+
+    private static void expect(String encoded, int[] position, char c) {
+        if (encoded.charAt(position[0]++) != c) {
+            throw new IllegalArgumentException("Expected " + c + " at " + (position[0] - 1) + ": " + encoded);
+        }
+    }
+
+    private static int checkDayOfWeek(int dayOfWeek) {
+        if (dayOfWeek < 0 || dayOfWeek > 6) throw new IllegalArgumentException("Invalid day of week: " + dayOfWeek);
+        return dayOfWeek;
+    }
+
+    /**
+     * @param epochDay
+     * @return  Number of days in the month of the day
+     */
+    private static int lengthOfMonth(int epochDay) {
+        int month = EpochDays.monthIndex(epochDay);
+        return EpochDays.firstDayOfMonth(month + 1) - EpochDays.firstDayOfMonth(month);
+    }
+
+    private static class Weekdays extends DayRule {
+        private final int mask;
+
+        Weekdays(int mask) {
+            this.mask = mask;
+        }
+
+        public boolean matches(int epochDay) {
+            return (mask & 1 << EpochDays.dayOfWeek(epochDay)) != 0;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('W').append(mask);
+        }
+    }
+
+    private static class EveryNthWeek extends DayRule {
+        private final int dayOfWeek;
+        private final int interval;
+        private final int anchorDay;
+
+        EveryNthWeek(int dayOfWeek, int interval, int anchorDay) {
+            this.dayOfWeek = dayOfWeek;
+            this.interval = interval;
+            this.anchorDay = anchorDay;
+        }
+
+        public boolean matches(int epochDay) {
+            if (EpochDays.dayOfWeek(epochDay) != dayOfWeek) return false;
+            // the difference of the Sundays starting the two weeks is an exact multiple of seven
+            int weeks = (epochDay - dayOfWeek - anchorDay + EpochDays.dayOfWeek(anchorDay)) / 7;
+            return weeks % interval == 0;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('E').append(dayOfWeek).append(',').append(interval).append(',').append(anchorDay);
+        }
+    }
+
+    private static class NthWeekdayOfMonth extends DayRule {
+        private final int n;
+        private final int dayOfWeek;
+
+        NthWeekdayOfMonth(int n, int dayOfWeek) {
+            this.n = n;
+            this.dayOfWeek = dayOfWeek;
+        }
+
+        public boolean matches(int epochDay) {
+            if (EpochDays.dayOfWeek(epochDay) != dayOfWeek) return false;
+            int dayOfMonth = EpochDays.dayOfMonth(epochDay);
+            if (n > 0) {
+                return (dayOfMonth - 1) / 7 + 1 == n;
+            }
+            return (lengthOfMonth(epochDay) - dayOfMonth) / 7 + 1 == -n;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('N').append(n).append(',').append(dayOfWeek);
+        }
+    }
+
+    private static class DayOfMonth extends DayRule {
+        private final int dayOfMonth;
+
+        DayOfMonth(int dayOfMonth) {
+            this.dayOfMonth = dayOfMonth;
+        }
+
+        public boolean matches(int epochDay) {
+            if (dayOfMonth > 0) {
+                return EpochDays.dayOfMonth(epochDay) == dayOfMonth;
+            }
+            return EpochDays.dayOfMonth(epochDay) - lengthOfMonth(epochDay) - 1 == dayOfMonth;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('D').append(dayOfMonth);
+        }
+    }
+
+    private static class LastBusinessDayOfMonth extends DayRule {
+        public boolean matches(int epochDay) {
+            int dayOfWeek = EpochDays.dayOfWeek(epochDay);
+            if (dayOfWeek == EpochDays.SUNDAY || dayOfWeek == EpochDays.SATURDAY) return false;
+            int daysLeft = lengthOfMonth(epochDay) - EpochDays.dayOfMonth(epochDay);
+            // a Friday is the last business day if only the weekend is left, other days only at the end of the month
+            return daysLeft == 0 || dayOfWeek == 5 && daysLeft <= 2;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('B');
+        }
+    }
+
+    private static class Yearly extends DayRule {
+        private final int month;
+        private final int dayOfMonth;
+
+        Yearly(int month, int dayOfMonth) {
+            this.month = month;
+            this.dayOfMonth = dayOfMonth;
+        }
+
+        public boolean matches(int epochDay) {
+            return EpochDays.dayOfMonth(epochDay) == dayOfMonth && EpochDays.month(epochDay) == month;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('Y').append(month).append(',').append(dayOfMonth);
+        }
+    }
+
+    private static class Interval extends DayRule {
+        private final int fromDay;
+        private final int toDay;
+
+        Interval(int fromDay, int toDay) {
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+        }
+
+        public boolean matches(int epochDay) {
+            return epochDay >= fromDay && epochDay <= toDay;
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append('I').append(fromDay).append(',').append(toDay);
+        }
+    }
+
+    private static class Composite extends DayRule {
+        private final char type;
+        private final DayRule[] rules;
+
+        Composite(char type, DayRule[] rules) {
+            if (rules.length == 0) throw new IllegalArgumentException("No rules");
+            this.type = type;
+            this.rules = new DayRule[rules.length];
+            System.arraycopy(rules, 0, this.rules, 0, rules.length);
+        }
+
+        public boolean matches(int epochDay) {
+            switch (type) {
+                case 'U':
+                    for (DayRule rule : rules) {
+                        if (rule.matches(epochDay)) return true;
+                    }
+                    return false;
+                case 'A':
+                    for (DayRule rule : rules) {
+                        if (!rule.matches(epochDay)) return false;
+                    }
+                    return true;
+                default:
+                    return rules[0].matches(epochDay) && !rules[1].matches(epochDay);
+            }
+        }
+
+        protected void encode(StringBuilder target) {
+            target.append(type).append('(');
+            for (int i = 0; i < rules.length; i++) {
+                if (i > 0) target.append(';');
+                rules[i].encode(target);
+            }
+            target.append(')');
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.util.Date;
+
+/**
+ * Calendar arithmetic on epoch days (days since 1970-01-01) that works both on the server and in the browser.
+ */
+public class EpochDays {
+    public static final int SUNDAY = 0;
+    public static final int SATURDAY = 6;
+
+    private EpochDays() {
+    }
+
+    /**
+     * @param year
+     * @param month  Month of the year, 1 - 12
+     * @param day  Day of the month, 1 - 31
+     * @return  Epoch day of the specified date
+     */
+    public static int of(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Formats a day using {@link VRangeDateField#DATE_TIME_FORMAT_PATTERN} without a date format instance,
+     * so it can be used from any number of threads.
+     * @param epochDay
+     * @return  The formatted day
+     */
+    public static String format(int epochDay) {
+        int civil = toCivil(epochDay);
+        int year = civil >> 9;
+        int month = (civil >> 5) & 15;
+        int day = civil & 31;
+
+        StringBuilder result = new StringBuilder(10);
+        if (year < 1000) result.append(year < 10 ? "000" : year < 100 ? "00" : "0");
+        result.append(year).append(month < 10 ? ".0" : ".").append(month).append(day < 10 ? ".0" : ".").append(day);
+        return result.toString();
+    }
+
+    /**
+     * Parses a day formatted using {@link VRangeDateField#DATE_TIME_FORMAT_PATTERN}. Unlike a date format it keeps
+     * no state, so it can be used from any number of threads.
+     * @param formatted
+     * @return  Epoch day of the formatted day
+     */
+    public static int parse(String formatted) {
+        int first = formatted.indexOf('.');
+        int second = formatted.indexOf('.', first + 1);
+        if (first <= 0 || second < 0) {
+            throw new IllegalArgumentException("Invalid date: " + formatted);
+        }
+        int year = Integer.parseInt(formatted.substring(0, first));
+        int month = Integer.parseInt(formatted.substring(first + 1, second));
+        int day = Integer.parseInt(formatted.substring(second + 1));
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            throw new IllegalArgumentException("Invalid date: " + formatted);
+        }
+        return of(year, month, day);
+    }
+
+    /**
+     * @param epochDay
+     * @return  Day of the week, 0 ({@link #SUNDAY}) - 6 ({@link #SATURDAY}), the same as {@link Date#getDay()}
+     */
+    public static int dayOfWeek(int epochDay) {
+        int day = (epochDay + 4) % 7;
+        return day < 0 ? day + 7 : day;
+    }
+
+    /**
+     * @param epochDay
+     * @return  Year of the day
+     */
+    public static int year(int epochDay) {
+        return toCivil(epochDay) >> 9;
+    }
+
+    /**
+     * @param epochDay
+     * @return  Month of the year of the day, 1 - 12
+     */
+    public static int month(int epochDay) {
+        return (toCivil(epochDay) >> 5) & 15;
+    }
+
+    /**
+     * @param epochDay
+     * @return  Day of the month, 1 - 31
+     */
+    public static int dayOfMonth(int epochDay) {
+        return toCivil(epochDay) & 31;
+    }
+
+    /**
+     * Months are numbered consecutively so that neighbouring months differ by one
+     * @param year
+     * @param month     Month of the year, 1 - 12
+     * @return  Index of the month
+     */
+    public static int monthIndex(int year, int month) {
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * @param epochDay
+     * @return  Index of the month the day belongs to, see {@link #monthIndex(int, int)}
+     */
+    public static int monthIndex(int epochDay) {
+        int civil = toCivil(epochDay);
+        return monthIndex(civil >> 9, (civil >> 5) & 15);
+    }
+
+    /**
+     * @param monthIndex    See {@link #monthIndex(int, int)}
+     * @return  Epoch day of the first day of the month
+     */
+    public static int firstDayOfMonth(int monthIndex) {
+        int year = monthIndex >= 0 ? monthIndex / 12 : (monthIndex - 11) / 12;
+        return of(year, monthIndex - year * 12 + 1, 1);
+    }
+
+    /**
+     * @param epochDay
+     * @return  The date packed as year * 512 + month * 32 + day
+     */
+    private static int toCivil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 512 + month * 32 + day;
+    }
+
+    /**
+     * @param date
+     * @return  Epoch day of the date in the browser's time zone
+     */
+    @SuppressWarnings("deprecation")
+    public static int of(Date date) {
+        return of(date.getYear() + 1900, date.getMonth() + 1, date.getDate());
+    }
+}
@@ -0,0 +1,63 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side copy of the excluded days and day styles of a single month loaded from the server
+ */
+public class MonthAvailability {
+    private final int monthIndex;
+    private final int excludedDays;
+    private final Map<Integer, List<String>> dayStyleNames = new HashMap<Integer, List<String>>();
+
+    private MonthAvailability(int monthIndex, int excludedDays) {
+        this.monthIndex = monthIndex;
+        this.excludedDays = excludedDays;
+    }
+
+    /**
+     * @param encoded   "monthIndex:excludedDaysMask:day=style1,style2;day=style3"
+     * @return  The decoded month
+     */
+    public static MonthAvailability decode(String encoded) {
+        String[] parts = encoded.split(":", 3);
+        MonthAvailability result = new MonthAvailability(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        if (parts.length == 3 && parts[2].length() > 0) {
+            for (String dayStyles : parts[2].split(";")) {
+                int separator = dayStyles.indexOf('=');
+                List<String> styles = new LinkedList<String>();
+                for (String style : dayStyles.substring(separator + 1).split(",")) {
+                    styles.add(style);
+                }
+                result.dayStyleNames.put(Integer.parseInt(dayStyles.substring(0, separator)), styles);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return  Index of the month, see {@link EpochDays#monthIndex(int, int)}
+     */
+    public int getMonthIndex() {
+        return monthIndex;
+    }
+
+    /**
+     * @param dayOfMonth    Day of the month, 1 - 31
+     * @return  True if the day is disabled in the calendar
+     */
+    public boolean isDayExcluded(int dayOfMonth) {
+        return (excludedDays & 1 << dayOfMonth) != 0;
+    }
+
+    /**
+     * @param dayOfMonth    Day of the month, 1 - 31
+     * @return  CSS styles of the day, null if there are none
+     */
+    public List<String> getDayStyleNames(int dayOfMonth) {
+        return dayStyleNames.get(dayOfMonth);
+    }
+}
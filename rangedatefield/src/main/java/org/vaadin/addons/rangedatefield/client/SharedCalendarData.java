@@ -0,0 +1,169 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import com.vaadin.terminal.gwt.client.ApplicationConnection;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calendar rules decoded once by {@link VCalendarData} and used by every {@link VRangeDateField} that references
+ * the component. Instances are looked up by the id of the component, so a field can subscribe before the
+ * component's first update has arrived. An instance is forgotten once the component is detached and no field
+ * listens to it, and a connection once it has no instances left.
+ */
+public class SharedCalendarData {
+    private static final Map<ApplicationConnection, Map<String, SharedCalendarData>> INSTANCES =
+            new HashMap<ApplicationConnection, Map<String, SharedCalendarData>>();
+
+    /**
+     * Notified when the rules have been updated by the server
+     */
+    public interface Listener {
+        void calendarDataChanged(SharedCalendarData data);
+    }
+
+    private Integer validFromDay;
+    private Integer validToDay;
+    private Boolean excludeWeekends;
+    private DayRule exclusionRule;
+    private DayBitSet excludedDays;
+    private Map<Integer, List<String>> dateStyleNames;
+    private final List<Listener> listeners = new ArrayList<Listener>();
+    private final ApplicationConnection client;
+    private final String id;
+    // true from the first update of the component until it is detached
+    private boolean componentAttached = false;
+
+    private SharedCalendarData(ApplicationConnection client, String id) {
+        this.client = client;
+        this.id = id;
+    }
+
+    /**
+     * @param client
+     * @param id    Id of the {@link VCalendarData} component
+     * @return  The data of the component, empty until its first update has arrived
+     */
+    public static SharedCalendarData get(ApplicationConnection client, String id) {
+        Map<String, SharedCalendarData> instances = getInstances(client);
+        SharedCalendarData data = instances.get(id);
+        if (data == null) {
+            data = new SharedCalendarData(client, id);
+            instances.put(id, data);
+        }
+        return data;
+    }
+
+    private static Map<String, SharedCalendarData> getInstances(ApplicationConnection client) {
+        Map<String, SharedCalendarData> instances = INSTANCES.get(client);
+        if (instances == null) {
+            instances = new HashMap<String, SharedCalendarData>();
+            INSTANCES.put(client, instances);
+        }
+        return instances;
+    }
+
+    /**
+     * Forgets the data of a component that is no longer displayed, or once the last field using it has
+     * stopped listening
+     * @param client
+     * @param id
+     */
+    public static void release(ApplicationConnection client, String id) {
+        Map<String, SharedCalendarData> instances = INSTANCES.get(client);
+        SharedCalendarData data = instances != null ? instances.get(id) : null;
+        if (data != null) {
+            data.componentAttached = false;
+            data.removeIfUnused();
+        }
+    }
+
+    /**
+     * Removes the data from the instances if neither the component nor any field uses it
+     */
+    private void removeIfUnused() {
+        if (componentAttached || !listeners.isEmpty()) return;
+        Map<String, SharedCalendarData> instances = INSTANCES.get(client);
+        if (instances != null && instances.get(id) == this) {
+            instances.remove(id);
+            if (instances.isEmpty()) {
+                INSTANCES.remove(client);
+            }
+        }
+    }
+
+    /**
+     * Replaces all of the rules and notifies the listeners
+     */
+    public void update(Integer validFromDay, Integer validToDay, Boolean excludeWeekends, DayRule exclusionRule,
+                       DayBitSet excludedDays, Map<Integer, List<String>> dateStyleNames) {
+        this.validFromDay = validFromDay;
+        this.validToDay = validToDay;
+        this.excludeWeekends = excludeWeekends;
+        this.exclusionRule = exclusionRule;
+        this.excludedDays = excludedDays;
+        this.dateStyleNames = dateStyleNames;
+        componentAttached = true;
+        for (Listener listener : new ArrayList<Listener>(listeners)) {
+            listener.calendarDataChanged(this);
+        }
+    }
+
+    /**
+     * Adds a listener, looking the data up by its id again if it was forgotten while no field was listening
+     * @param listener
+     */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+        Map<String, SharedCalendarData> instances = getInstances(client);
+        if (!instances.containsKey(id)) {
+            instances.put(id, this);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+        removeIfUnused();
+    }
+
+    /**
+     * @return  First selectable epoch day, null if there is no lower limit
+     */
+    public Integer getValidFromDay() {
+        return validFromDay;
+    }
+
+    /**
+     * @return  Last selectable epoch day, null if there is no upper limit
+     */
+    public Integer getValidToDay() {
+        return validToDay;
+    }
+
+    /**
+     * @return  Null if the rules do not specify it
+     */
+    public Boolean getExcludeWeekends() {
+        return excludeWeekends;
+    }
+
+    /**
+     * @param day   Epoch day
+     * @return  True if the day is excluded or matches the exclusion rule
+     */
+    public boolean isDayExcluded(int day) {
+        return excludedDays != null && excludedDays.contains(day) || exclusionRule != null && exclusionRule.matches(day);
+    }
+
+    /**
+     * @param day   Epoch day
+     * @return  Styles of the day, null if there are none
+     */
+    public List<String> getDayStyleNames(int day) {
+        return dateStyleNames != null ? dateStyleNames.get(day) : null;
+    }
+}
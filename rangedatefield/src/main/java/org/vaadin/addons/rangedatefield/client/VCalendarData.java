@@ -0,0 +1,58 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import com.google.gwt.user.client.DOM;
+import com.google.gwt.user.client.ui.Widget;
+import com.vaadin.terminal.gwt.client.ApplicationConnection;
+import com.vaadin.terminal.gwt.client.Paintable;
+import com.vaadin.terminal.gwt.client.UIDL;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client side of the invisible CalendarData component. Decodes the calendar rules once into the
+ * {@link SharedCalendarData} that the {@link VRangeDateField}s referencing the component use.
+ */
+public class VCalendarData extends Widget implements Paintable {
+    private ApplicationConnection client;
+    private String id;
+
+    public VCalendarData() {
+        setElement(DOM.createDiv());
+        getElement().getStyle().setProperty("display", "none");
+    }
+
+    public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
+        if (client.updateComponent(this, uidl, false)) {
+            return;
+        }
+        this.client = client;
+        id = uidl.getId();
+        Integer validFromDay = uidl.hasAttribute(VRangeDateField.VALID_FROM_DATE_PARAM)
+                ? Integer.valueOf(EpochDays.parse(uidl.getStringAttribute(VRangeDateField.VALID_FROM_DATE_PARAM))) : null;
+        Integer validToDay = uidl.hasAttribute(VRangeDateField.VALID_TO_DATE_PARAM)
+                ? Integer.valueOf(EpochDays.parse(uidl.getStringAttribute(VRangeDateField.VALID_TO_DATE_PARAM))) : null;
+        Boolean excludeWeekends = uidl.hasAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM)
+                ? Boolean.valueOf(uidl.getBooleanAttribute(VRangeDateField.EXCLUDE_WEEKENDS_PARAM)) : null;
+        DayRule exclusionRule = uidl.hasAttribute(VRangeDateField.EXCLUSION_RULE_PARAM)
+                ? DayRule.parse(uidl.getStringAttribute(VRangeDateField.EXCLUSION_RULE_PARAM)) : null;
+        DayBitSet excludedDays = VRangeDateField.decodeDays(uidl, VRangeDateField.EXCLUDE_DAYS_PARAM,
+                VRangeDateField.EXCLUDE_DATES_PARAM);
+        Map<Integer, List<String>> dateStyleNames = null;
+        if (uidl.hasAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM)) {
+            DateStyleDictionary dictionary = new DateStyleDictionary();
+            dictionary.addStyleNames(uidl.getStringArrayAttribute(VRangeDateField.STYLE_NAMES_PARAM));
+            dateStyleNames = dictionary.decode(uidl.getStringArrayAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM));
+        }
+        SharedCalendarData.get(client, id).update(validFromDay, validToDay, excludeWeekends, exclusionRule,
+                excludedDays, dateStyleNames);
+    }
+
+    @Override
+    protected void onUnload() {
+        super.onUnload();
+        if (client != null) {
+            SharedCalendarData.release(client, id);
+        }
+    }
+}
@@ -1,10 +1,21 @@
 package org.vaadin.addons.rangedatefield.client;
 
+import com.google.gwt.core.client.Scheduler;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.EventTarget;
+import com.google.gwt.dom.client.TableCellElement;
+import com.google.gwt.dom.client.TableRowElement;
 import com.google.gwt.event.dom.client.ClickEvent;
 import com.google.gwt.event.dom.client.ClickHandler;
+import com.google.gwt.event.dom.client.KeyUpEvent;
+import com.google.gwt.event.dom.client.KeyUpHandler;
 import com.google.gwt.event.dom.client.MouseDownEvent;
 import com.google.gwt.event.dom.client.MouseDownHandler;
-import com.google.gwt.i18n.client.DateTimeFormat;
+import com.google.gwt.event.dom.client.MouseOverEvent;
+import com.google.gwt.event.dom.client.MouseOverHandler;
+import com.google.gwt.event.dom.client.MouseUpEvent;
+import com.google.gwt.event.dom.client.MouseUpHandler;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.ui.Button;
 import com.google.gwt.user.client.ui.FlexTable;
 import com.google.gwt.user.client.ui.InlineHTML;
@@ -16,11 +27,13 @@ import com.vaadin.terminal.gwt.client.VConsole;
 import com.vaadin.terminal.gwt.client.ui.VCalendarPanel;
 import com.vaadin.terminal.gwt.client.ui.VPopupCalendar;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * RangeDateField extends standard Vaadin DateField and allows you to restrict date selection to a specific set of dates.
@@ -28,45 +41,96 @@ import java.util.Map;
  */
 public class VRangeDateField extends VPopupCalendar {
     public static final String DATE_TIME_FORMAT_PATTERN = "yyyy.MM.dd";
-    protected static final DateTimeFormat DATE_TIME_FORMAT = DateTimeFormat.getFormat(DATE_TIME_FORMAT_PATTERN);
     public static final String VALID_FROM_DATE_PARAM = "validFromDate";
     public static final String VALID_TO_DATE_PARAM = "validToDate";
     public static final String EXCLUDE_DATES_PARAM = "excludeDates";
+    public static final String EXCLUDE_DAYS_PARAM = "excludeDays";
     public static final String EXCLUDE_WEEKENDS_PARAM = "excludeWeekends";
+    public static final String EXCLUSION_RULE_PARAM = "exclusionRule";
     public static final String DATE_STYLE_NAMES_PARAM = "dateStyleNames";
+    public static final String STYLE_NAMES_PARAM = "styleNames";
+    public static final String DATE_DATA_DELTA_PARAM = "dateDataDelta";
+    public static final String EXCLUDE_DAYS_ADDED_PARAM = "excludeDaysAdded";
+    public static final String EXCLUDE_DATES_ADDED_PARAM = "excludeDatesAdded";
+    public static final String EXCLUDE_DAYS_REMOVED_PARAM = "excludeDaysRemoved";
+    public static final String EXCLUDE_DATES_REMOVED_PARAM = "excludeDatesRemoved";
+    public static final String DATE_STYLE_NAMES_ADDED_PARAM = "dateStyleNamesAdded";
+    public static final String DATE_STYLE_NAMES_REMOVED_PARAM = "dateStyleNamesRemoved";
+    public static final String AVAILABILITY_PROVIDER_PARAM = "availabilityProvider";
+    public static final String AVAILABILITY_RESET_PARAM = "availabilityReset";
+    public static final String AVAILABILITY_PARAM = "availability";
+    public static final String AVAILABILITY_LOADING_PARAM = "availabilityLoading";
+    public static final String CALENDAR_DATA_PARAM = "calendarData";
+    public static final String RANGE_SELECTION_PARAM = "rangeSelection";
+    public static final String RANGE_END_PARAM = "rangeEnd";
+    public static final String DESCRIPTION_PROVIDER_PARAM = "descriptionProvider";
+    public static final String DESCRIPTIONS_RESET_PARAM = "descriptionsReset";
+    public static final String DESCRIPTION_MONTHS_PARAM = "descriptionMonths";
+    public static final String DESCRIPTIONS_PARAM = "descriptions";
+    public static final String VISIBLE_MONTH_VAR = "visibleMonth";
+    public static final String DESCRIPTION_MONTH_VAR = "descriptionMonth";
+    public static final String RANGE_START_VAR = "rangeStart";
+    public static final String RANGE_END_VAR = "rangeEnd";
 
     protected VCalendarPanel calendarPanel;
     protected FlexTable days;
 
-    private Date validFromDate;
-    private Date validToDate;
-    private Date[] excludeDates;
-    private Map<String, List<String>> oldDateStyleNames;
-    private Map<String, List<String>> dateStyleNames;
-    private boolean excludeWeekends = false;
+    private final ClientDateData dateData = new ClientDateData();
+    private final DayCellCache cells = dateData.getCells();
+    private final SharedCalendarData.Listener sharedDataListener = new SharedCalendarData.Listener() {
+        public void calendarDataChanged(SharedCalendarData data) {
+            cells.clear();
+            scheduleRenderStyles();
+        }
+    };
+    private final Set<Integer> requestedMonths = new HashSet<Integer>();
+    private boolean descriptionProvider = false;
+    // descriptions by epoch day, per month index; a month is present once the server has sent it
+    private final Map<Integer, Map<Integer, String>> descriptions = new HashMap<Integer, Map<Integer, String>>();
+    private final Set<Integer> requestedDescriptionMonths = new HashSet<Integer>();
+    /**
+     * How long the pointer or the keyboard focus has to rest on a day before its descriptions are requested
+     */
+    private static final int DESCRIPTION_DELAY_MILLIS = 300;
+    // day the pointer or the keyboard focus rests on, its month is requested when the timer fires
+    private int descriptionDay;
+    private final Timer descriptionTimer = new Timer() {
+        @Override
+        public void run() {
+            requestDescriptions(descriptionDay);
+        }
+    };
+    private boolean rangeSelection = false;
+    // selected span, the start is the value of the field
+    private Integer rangeStartDay = null;
+    private Integer rangeEndDay = null;
+    // first day clicked in range selection mode, waiting for the last one
+    private Integer pendingStartDay = null;
+    // first day cell when the styles were rendered, the panel replaces all cells when it renders a month
+    private Widget renderedDayWidget = null;
+    private final Map<Widget, AppliedStyles> appliedStyles = new HashMap<Widget, AppliedStyles>();
+    private boolean renderScheduled = false;
 
     public VRangeDateField() {
         super();
-        validFromDate = null;
-        validToDate = null;
-        excludeDates = null;
-        dateStyleNames = null;
         calendarPanel = getCalendar();
-        oldDateStyleNames = null;
 
         final ClickHandler dayClickHandler = getDayClickHandler();
         setDayClickHandler(new ClickHandler() {
             public void onClick(ClickEvent clickEvent) {
-                Date currentMonth = getCurrentMonth();
                 if (clickEvent.getSource() instanceof Widget && ((InlineHTML) clickEvent.getSource()).getHTML() != null) {
-                    //Integer day = Integer.parseInt(((InlineHTML)clickEvent.getSource()).getHTML());
                     Widget day = (Widget) clickEvent.getSource();
                     if (isValidDate(day)) {
-                        dayClickHandler.onClick(clickEvent);
+                        if (rangeSelection) {
+                            selectRangeDay(EpochDays.of(getDayDate(day)));
+                        } else {
+                            dayClickHandler.onClick(clickEvent);
+                        }
                     }
                 }
             }
         });
+        initHandlers();
     }
 
     /**
@@ -85,14 +149,15 @@ public class VRangeDateField extends VPopupCalendar {
      * @return
      */
     protected boolean isExcluded(Date date) {
-        if (date == null) return false;
-        for (Date e : excludeDates) {
-            if (e != null && isSameDay(e, date)) {
-                //VConsole.log("Excluded date: " + date + ", exclusion criteria: " + e);
-                return true;
-            }
-        }
-        return false;
+        return date != null && isExcluded(EpochDays.of(date));
+    }
+
+    /**
+     * @param day   Epoch day
+     * @return  True if the day is excluded by the server or by the exclusion rule
+     */
+    protected boolean isExcluded(int day) {
+        return dateData.isExcluded(day);
     }
 
     /**
@@ -102,20 +167,120 @@ public class VRangeDateField extends VPopupCalendar {
      */
     protected boolean isValidDate(Widget day) {
         Date dayDate = getDayDate(day);
-        return dayDate != null &&
-                (!excludeWeekends || dayDate.getDay() != 0 && dayDate.getDay() != 6) &&
-                (validFromDate == null || validFromDate.before(dayDate) || isSameDay(validFromDate, dayDate)) &&
-                (validToDate == null || validToDate.after(dayDate) || isSameDay(validToDate, dayDate)) &&
-                (excludeDates == null || !isExcluded(dayDate));
+        if (dayDate == null) return false;
+        return !cells.get(EpochDays.of(dayDate)).isDisabled();
         //VConsole.log("Is valid date: " + dayDate + " RESULT: "+valid);
     }
 
+    /**
+     * @param day
+     * @return  True if the month of the day the widget represents is still being loaded by the server
+     */
+    protected boolean isLoadingDate(Widget day) {
+        Date dayDate = getDayDate(day);
+        return dayDate != null && cells.get(EpochDays.of(dayDate)).isLoading();
+    }
+
+    /**
+     * Evaluates the rules for a day whose cell is not cached yet
+     * @param epochDay
+     * @return  True if the day is not disabled in the calendar
+     */
+    protected boolean isValidDay(int epochDay) {
+        return dateData.isValidDay(epochDay);
+    }
+
+    /**
+     * Handles a click on a day in range selection mode. The first click starts a span and the second one
+     * completes it, unless the span contains a disabled day, in which case the second day starts a new span.
+     * @param day   Epoch day
+     */
+    protected void selectRangeDay(int day) {
+        if (!isEnabled() || isReadonly()) {
+            return;
+        }
+        if (pendingStartDay == null) {
+            pendingStartDay = day;
+        } else {
+            int start = Math.min(pendingStartDay, day);
+            int end = Math.max(pendingStartDay, day);
+            if (isValidRange(start, end)) {
+                pendingStartDay = null;
+                rangeStartDay = start;
+                rangeEndDay = end;
+                getClient().updateVariable(getId(), RANGE_START_VAR, EpochDays.format(start), false);
+                getClient().updateVariable(getId(), RANGE_END_VAR, EpochDays.format(end), true);
+                closeCalendarPanel();
+            } else {
+                VConsole.log("Span " + EpochDays.format(start) + " - " + EpochDays.format(end)
+                        + " contains disabled days");
+                pendingStartDay = day;
+            }
+        }
+        scheduleRenderStyles();
+    }
+
+    /**
+     * Checks a span with the prefix counts of the months instead of a check per day
+     * @param start
+     * @param end
+     * @return  True if none of the days of the span is disabled
+     */
+    protected boolean isValidRange(int start, int end) {
+        return cells.countDisabled(start, end) == 0;
+    }
+
+    /**
+     * @param day   Epoch day
+     * @return  True if the day belongs to the selected span
+     */
+    protected boolean isInRange(int day) {
+        return pendingStartDay == null && rangeStartDay != null && rangeEndDay != null
+                && rangeStartDay <= day && day <= rangeEndDay;
+    }
+
+    @Override
+    protected void onLoad() {
+        super.onLoad();
+        if (dateData.getSharedData() != null) {
+            dateData.getSharedData().addListener(sharedDataListener);
+        }
+    }
+
+    @Override
+    protected void onUnload() {
+        super.onUnload();
+        if (dateData.getSharedData() != null) {
+            dateData.getSharedData().removeListener(sharedDataListener);
+        }
+        descriptionTimer.cancel();
+    }
+
     @Override
     public void openCalendarPanel() {
+        pendingStartDay = null;
         super.openCalendarPanel();
         days = getDays();
-        initHandlers();
-        renderStyles();
+        scheduleRenderStyles();
+        requestVisibleMonths();
+    }
+
+    /**
+     * Asks the server for the month displayed in the calendar and its neighbours if some of them are not loaded yet
+     */
+    protected void requestVisibleMonths() {
+        Date currentMonth = getCurrentMonth();
+        if (!dateData.isAvailabilityProvider() || currentMonth == null) return;
+        int month = EpochDays.monthIndex(EpochDays.of(currentMonth));
+        for (int m = month - 1; m <= month + 1; m++) {
+            if (!dateData.hasMonth(m) && !requestedMonths.contains(m)) {
+                requestedMonths.add(month - 1);
+                requestedMonths.add(month);
+                requestedMonths.add(month + 1);
+                getClient().updateVariable(getId(), VISIBLE_MONTH_VAR, month, true);
+                return;
+            }
+        }
     }
 
     /**
@@ -123,75 +288,241 @@ public class VRangeDateField extends VPopupCalendar {
      * @return  A list of custom CSS styles assigned to a date
      */
     protected List<String> getDateStyles(Widget day) {
-        Date date = getDayDate(day);
-        return dateStyleNames != null ? dateStyleNames.get(DATE_TIME_FORMAT.format(date)) : null;
+        return cells.get(EpochDays.of(getDayDate(day))).getStyleNames();
     }
 
     /**
-     * @param day
-     * @return  A list of custom CSS styles that were assigned to a specific date before styles update
-     * (if custom styles are changed on the fly then this is used to remove previous CSS styles before applying
-     * the new ones).
+     * @param epochDay
+     * @return  A list of custom CSS styles assigned to a day whose cell is not cached yet
      */
-    protected List<String> getOldDateStyles(Widget day) {
-        Date date = getDayDate(day);
-        return oldDateStyleNames != null ? oldDateStyleNames.get(DATE_TIME_FORMAT.format(date)) : null;
+    protected List<String> getDayStyles(int epochDay) {
+        return dateData.getDayStyles(epochDay);
     }
 
     /**
-     * Adds custom CSS style names to calendar days
+     * Renders the styles at the end of the current event loop turn, so that a burst of updates and events
+     * is rendered only once
      */
-    protected void renderStyles() {
-        if (days != null) {
-            for (int r = 0; r < days.getRowCount(); r++) {
-                for (int c = 0; c < days.getCellCount(r); c++) {
-                    Widget d = days.getWidget(r, c);
-                    if (d != null && d instanceof InlineHTML && ((InlineHTML) d).getHTML() != null) {
-                        if (!isValidDate(d)) {
-                            d.addStyleDependentName("disabled-day");
-                        } else {
-                            // if no longer disabled remove disabled style
-                            d.removeStyleDependentName("disabled-day");
-                        }
-                        List<String> oldStyles = getOldDateStyles(d);
-                        if (oldStyles != null && oldStyles.size() > 0) {
-                            for (String style : oldStyles) {
-                                d.removeStyleName(style);
-                            }
-                        }
+    protected void scheduleRenderStyles() {
+        if (renderScheduled) return;
+        renderScheduled = true;
+        Scheduler.get().scheduleFinally(new Scheduler.ScheduledCommand() {
+            public void execute() {
+                if (renderScheduled) {
+                    renderStyles();
+                }
+            }
+        });
+    }
 
-                        List<String> styles = getDateStyles(d);
-                        if (styles != null && styles.size() > 0) {
-                            for (String style : styles) {
-                                d.addStyleName(style);
-                            }
-                        }
-                    }
+    /**
+     * Adds custom CSS style names to calendar days. Only the difference to the class names applied by the
+     * previous pass is written to the cells, and days whose state has not changed are skipped.
+     */
+    protected void renderStyles() {
+        renderScheduled = false;
+        if (days == null) return;
+        Widget firstDay = getFirstDayWidget();
+        if (firstDay != renderedDayWidget) {
+            // the panel has built new cells, none of them has been styled yet
+            appliedStyles.clear();
+            renderedDayWidget = firstDay;
+        }
+        for (int r = 0; r < days.getRowCount(); r++) {
+            for (int c = 0; c < days.getCellCount(r); c++) {
+                Widget d = days.getWidget(r, c);
+                if (d != null && d instanceof InlineHTML && ((InlineHTML) d).getHTML() != null) {
+                    renderDay(d);
+                    renderDescription(d);
                 }
             }
         }
     }
 
     /**
-     * Initializes mouse event handlers
+     * @param d     Day cell
+     */
+    private void renderDay(Widget d) {
+        Date date = getDayDate(d);
+        if (date == null) return;
+        int epochDay = EpochDays.of(date);
+        DayCellCache.Cell cell = cells.get(epochDay);
+        boolean rangeStart = rangeSelection && pendingStartDay != null && pendingStartDay == epochDay;
+        boolean inRange = rangeSelection && isInRange(epochDay);
+        AppliedStyles applied = appliedStyles.get(d);
+        if (applied != null && applied.cell == cell && applied.rangeStart == rangeStart && applied.inRange == inRange) {
+            return;
+        }
+        String prefix = d.getStylePrimaryName() + "-";
+        List<String> classes = new ArrayList<String>();
+        if (cell.isDisabled()) classes.add(prefix + "disabled-day");
+        if (cell.isLoading()) classes.add(prefix + "loading-day");
+        if (rangeStart) classes.add(prefix + "range-start");
+        if (inRange) classes.add(prefix + "in-range");
+        if (cell.getStyleNames() != null) classes.addAll(cell.getStyleNames());
+        if (applied != null) {
+            for (String style : applied.classes) {
+                if (!classes.contains(style)) d.removeStyleName(style);
+            }
+        }
+        for (String style : classes) {
+            if (applied == null || !applied.classes.contains(style)) d.addStyleName(style);
+        }
+        appliedStyles.put(d, new AppliedStyles(cell, rangeStart, inRange, classes));
+    }
+
+    /**
+     * Shows the description of the day as the tooltip of its cell
+     * @param d     Day cell
+     */
+    private void renderDescription(Widget d) {
+        Date date = getDayDate(d);
+        if (date == null) return;
+        String description = getDescription(EpochDays.of(date));
+        String title = description != null ? description : "";
+        if (!title.equals(d.getTitle())) {
+            d.setTitle(title);
+        }
+    }
+
+    /**
+     * @param epochDay
+     * @return  Description of the day, null if it has none or if its month has not been received yet
+     */
+    protected String getDescription(int epochDay) {
+        Map<Integer, String> month = descriptions.get(EpochDays.monthIndex(epochDay));
+        return month != null ? month.get(epochDay) : null;
+    }
+
+    /**
+     * Requests the descriptions of the day's month once the pointer or the focus has rested on the day for
+     * {@link #DESCRIPTION_DELAY_MILLIS}, so that moving over the calendar does not send a request per day
+     * @param epochDay
+     */
+    protected void scheduleDescriptionRequest(int epochDay) {
+        int month = EpochDays.monthIndex(epochDay);
+        if (!descriptionProvider || descriptions.containsKey(month) || requestedDescriptionMonths.contains(month)) {
+            descriptionTimer.cancel();
+            return;
+        }
+        descriptionDay = epochDay;
+        descriptionTimer.schedule(DESCRIPTION_DELAY_MILLIS);
+    }
+
+    /**
+     * Asks the server for the descriptions of the day's month unless they have been received or requested
+     * @param epochDay
+     */
+    protected void requestDescriptions(int epochDay) {
+        int month = EpochDays.monthIndex(epochDay);
+        if (!descriptionProvider || descriptions.containsKey(month) || !requestedDescriptionMonths.add(month)) {
+            return;
+        }
+        getClient().updateVariable(getId(), DESCRIPTION_MONTH_VAR, month, true);
+    }
+
+    /**
+     * Class names a day cell was given by {@link #renderStyles()} and the state they were computed from
+     */
+    private static class AppliedStyles {
+        private final DayCellCache.Cell cell;
+        private final boolean rangeStart;
+        private final boolean inRange;
+        private final List<String> classes;
+
+        AppliedStyles(DayCellCache.Cell cell, boolean rangeStart, boolean inRange, List<String> classes) {
+            this.cell = cell;
+            this.rangeStart = rangeStart;
+            this.inRange = inRange;
+            this.classes = classes;
+        }
+    }
+
+    /**
+     * Registers a single listener on the calendar panel, called once from the constructor. Navigation events
+     * of the panel's buttons and keys bubble up to it after the panel has handled them, and the styles are
+     * rendered again only if the panel built new day cells.
      */
     protected void initHandlers() {
-        MouseDownHandler handler = new MouseDownHandler() {
-            public void onMouseDown(MouseDownEvent mouseDownEvent) {
-                if (!isEnabled() || isReadonly()) {
-                    return;
+        NavigationHandler handler = new NavigationHandler();
+        calendarPanel.addDomHandler(handler, MouseDownEvent.getType());
+        calendarPanel.addDomHandler(handler, MouseUpEvent.getType());
+        calendarPanel.addDomHandler(handler, KeyUpEvent.getType());
+        calendarPanel.addDomHandler(new MouseOverHandler() {
+            public void onMouseOver(MouseOverEvent event) {
+                Widget day = findDayWidget(event.getNativeEvent().getEventTarget());
+                Date date = day != null ? getDayDate(day) : null;
+                if (date != null) {
+                    scheduleDescriptionRequest(EpochDays.of(date));
                 }
-                renderStyles();
             }
-        };
-        if (getPrevYearButton() != null)
-            getPrevYearButton().addMouseDownHandler(handler);
-        if (getNextYearButton() != null)
-            getNextYearButton().addMouseDownHandler(handler);
-        if (getPrevMonthButton() != null)
-            getPrevMonthButton().addMouseDownHandler(handler);
-        if (getNextMonthButton() != null)
-            getNextMonthButton().addMouseDownHandler(handler);
+        }, MouseOverEvent.getType());
+    }
+
+    /**
+     * Walks up from the target to the table cell of the days table that contains it
+     * @param target    Target of an event on the calendar panel
+     * @return  The day cell containing the target, null if it is not within a day
+     */
+    private Widget findDayWidget(EventTarget target) {
+        if (days == null || !Element.is(target)) return null;
+        Element table = days.getElement();
+        for (Element e = Element.as(target); e != null && e != table; e = e.getParentElement()) {
+            Element row = e.getParentElement();
+            // td, tr, tbody, table
+            if (row == null || row.getParentElement() == null || row.getParentElement().getParentElement() != table
+                    || !"td".equalsIgnoreCase(e.getTagName())) {
+                continue;
+            }
+            int r = TableRowElement.as(row).getRowIndex();
+            int c = TableCellElement.as(e).getCellIndex();
+            Widget d = r >= 1 && r < days.getRowCount() && c < days.getCellCount(r) ? days.getWidget(r, c) : null;
+            return d instanceof InlineHTML ? d : null;
+        }
+        return null;
+    }
+
+    /**
+     * Renders the styles of the days after the calendar panel has moved to another month or year
+     */
+    private class NavigationHandler implements MouseDownHandler, MouseUpHandler, KeyUpHandler {
+        public void onMouseDown(MouseDownEvent event) {
+            onNavigation();
+        }
+
+        public void onMouseUp(MouseUpEvent event) {
+            onNavigation();
+        }
+
+        public void onKeyUp(KeyUpEvent event) {
+            onNavigation();
+            Date focused = getFocusedDate();
+            if (focused != null && days != null) {
+                scheduleDescriptionRequest(EpochDays.of(focused));
+            }
+        }
+
+        private void onNavigation() {
+            if (!isEnabled() || isReadonly() || days == null) {
+                return;
+            }
+            if (getFirstDayWidget() != renderedDayWidget) {
+                scheduleRenderStyles();
+            }
+            requestVisibleMonths();
+        }
+    }
+
+    /**
+     * @return  The first day cell of the calendar, replaced with a new widget whenever the panel is rendered again
+     */
+    private Widget getFirstDayWidget() {
+        if (days == null || days.getRowCount() < 2) return null;
+        for (int c = 0; c < days.getCellCount(1); c++) {
+            Widget d = days.getWidget(1, c);
+            if (d instanceof InlineHTML) return d;
+        }
+        return null;
     }
 
     /**
@@ -266,6 +597,14 @@ public class VRangeDateField extends VPopupCalendar {
         return calPan.@com.vaadin.terminal.gwt.client.ui.VCalendarPanel::displayedMonth;
     }-*/;
 
+    /**
+     * @return  Private property VCalendarPanel.focusedDate, the day focused with the keyboard
+     */
+    public native Date getFocusedDate() /*-{
+        var calPan = this.@org.vaadin.addons.rangedatefield.client.VRangeDateField::calendarPanel;
+        return calPan.@com.vaadin.terminal.gwt.client.ui.VCalendarPanel::focusedDate;
+    }-*/;
+
     /**
      * Calls a private method of VCalendarPanel.Day.getDate
      * @return
@@ -275,61 +614,121 @@ public class VRangeDateField extends VPopupCalendar {
     }-*/;
 
     /**
-     * Called whenever an update is received from the server
+     * Reads a set of days sent either as a bitset or as a list of formatted dates
+     * @param uidl
+     * @param bitSetParam   Attribute name of the bitset form
+     * @param listParam     Attribute name of the list form
+     * @return  The days or null if neither attribute is present
+     */
+    protected DayBitSet readDays(UIDL uidl, String bitSetParam, String listParam) {
+        return decodeDays(uidl, bitSetParam, listParam);
+    }
+
+    /**
+     * @see #readDays(UIDL, String, String)
+     */
+    static DayBitSet decodeDays(UIDL uidl, String bitSetParam, String listParam) {
+        return ClientDateData.decodeDays(attributes(uidl), bitSetParam, listParam);
+    }
+
+    /**
+     * @param uidl
+     * @return  The attributes of the UIDL
+     */
+    static ClientDateData.Attributes attributes(final UIDL uidl) {
+        return new ClientDateData.Attributes() {
+            public boolean hasAttribute(String name) {
+                return uidl.hasAttribute(name);
+            }
+
+            public String getStringAttribute(String name) {
+                return uidl.getStringAttribute(name);
+            }
+
+            public String[] getStringArrayAttribute(String name) {
+                return uidl.getStringArrayAttribute(name);
+            }
+
+            public boolean getBooleanAttribute(String name) {
+                return uidl.getBooleanAttribute(name);
+            }
+        };
+    }
+
+    /**
+     * Reads date styles sent as a list of "styleId1,styleId2:day1,day2" values
+     * @param uidl
+     * @param param
+     * @return  Styles by epoch day or null if the attribute is not present
+     */
+    protected Map<Integer, List<String>> readDateStyleNames(UIDL uidl, String param) {
+        return dateData.decodeDateStyleNames(attributes(uidl), param);
+    }
+
+    /**
+     * Stores the descriptions sent by the server, see {@link #requestDescriptions(int)}
+     * @param uidl
+     */
+    protected void updateDescriptions(UIDL uidl) {
+        boolean provider = uidl.hasAttribute(DESCRIPTION_PROVIDER_PARAM);
+        if (!provider || uidl.hasAttribute(DESCRIPTIONS_RESET_PARAM)) {
+            descriptions.clear();
+            requestedDescriptionMonths.clear();
+        }
+        descriptionProvider = provider;
+        if (uidl.hasAttribute(DESCRIPTION_MONTHS_PARAM)) {
+            for (String month : uidl.getStringArrayAttribute(DESCRIPTION_MONTHS_PARAM)) {
+                Integer monthIndex = Integer.valueOf(month);
+                requestedDescriptionMonths.remove(monthIndex);
+                descriptions.put(monthIndex, new HashMap<Integer, String>());
+            }
+        }
+        if (uidl.hasAttribute(DESCRIPTIONS_PARAM)) {
+            for (String encoded : uidl.getStringArrayAttribute(DESCRIPTIONS_PARAM)) {
+                int separator = encoded.indexOf(':');
+                int day = Integer.parseInt(encoded.substring(0, separator));
+                Map<Integer, String> month = descriptions.get(EpochDays.monthIndex(day));
+                if (month != null) {
+                    month.put(day, encoded.substring(separator + 1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Called whenever an update is received from the server. The restrictions and date styles are applied by
+     * {@link ClientDateData#update(ClientDateData.Attributes)}.
      */
     public void updateFromUIDL(UIDL uidl, ApplicationConnection client) {
         super.updateFromUIDL(uidl, client);
-        VConsole.log("Updating from UIDL");
-        if (uidl.hasAttribute(VALID_FROM_DATE_PARAM)) {
-            String validFromDateString = uidl.getStringAttribute(VALID_FROM_DATE_PARAM);
-            validFromDate = DATE_TIME_FORMAT.parse(validFromDateString);
-        } else {
-            validFromDate = null;
+        if (uidl.getBooleanAttribute("cached")) {
+            // nothing was painted, the previous state is still valid
+            return;
         }
-        if (uidl.hasAttribute(VALID_TO_DATE_PARAM)) {
-            String validToDateString = uidl.getStringAttribute(VALID_TO_DATE_PARAM);
-            validToDate = DATE_TIME_FORMAT.parse(validToDateString);
-        } else {
-            validToDate = null;
+        VConsole.log("Updating from UIDL");
+        dateData.update(attributes(uidl));
+        if (!dateData.isAvailabilityProvider() || uidl.hasAttribute(AVAILABILITY_RESET_PARAM)) {
+            requestedMonths.clear();
         }
-        if (uidl.hasAttribute(EXCLUDE_DATES_PARAM)) {
-            String[] excludeDatesString = uidl.getStringArrayAttribute(EXCLUDE_DATES_PARAM);
-            List<Date> result = new LinkedList<Date>();
-            for (String date : excludeDatesString) {
-                result.add(DATE_TIME_FORMAT.parse(date));
-            }
-            excludeDates = result.toArray(new Date[result.size()]);
-        } else {
-            excludeDates = null;
+        SharedCalendarData data = uidl.hasAttribute(CALENDAR_DATA_PARAM)
+                ? SharedCalendarData.get(client, uidl.getStringAttribute(CALENDAR_DATA_PARAM)) : null;
+        if (data != dateData.getSharedData()) {
+            if (dateData.getSharedData() != null) dateData.getSharedData().removeListener(sharedDataListener);
+            dateData.setSharedData(data);
+            if (data != null) data.addListener(sharedDataListener);
         }
-        if (uidl.hasAttribute(EXCLUDE_WEEKENDS_PARAM)) {
-            excludeWeekends = uidl.getBooleanAttribute(EXCLUDE_WEEKENDS_PARAM);
+        rangeSelection = uidl.hasAttribute(RANGE_SELECTION_PARAM);
+        if (rangeSelection && uidl.hasAttribute(RANGE_END_PARAM) && getCurrentDate() != null) {
+            rangeStartDay = EpochDays.of(getCurrentDate());
+            rangeEndDay = EpochDays.parse(uidl.getStringAttribute(RANGE_END_PARAM));
         } else {
-            excludeWeekends = false;
+            rangeStartDay = null;
+            rangeEndDay = null;
         }
-        if (uidl.hasAttribute(DATE_STYLE_NAMES_PARAM)) {
-            String[] dateStyles = uidl.getStringArrayAttribute(DATE_STYLE_NAMES_PARAM);
-            oldDateStyleNames = dateStyleNames;
-            dateStyleNames = new HashMap<String, List<String>>();
-            for (String dateStyle : dateStyles) {
-                String[] s1 = dateStyle.split(":");
-                if (s1.length == 2) {
-                    try {
-                        String date = s1[0];
-                        List<String> styles = new LinkedList<String>();
-                        for (String style : s1[1].split(",")) {
-                            styles.add(style);
-                        }
-                        dateStyleNames.put(date, styles);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        } else {
-            dateStyleNames = null;
+        if (!rangeSelection) {
+            pendingStartDay = null;
         }
-        initHandlers();
-        renderStyles();
+        updateDescriptions(uidl);
+        scheduleRenderStyles();
     }
 }
\ No newline at end of file
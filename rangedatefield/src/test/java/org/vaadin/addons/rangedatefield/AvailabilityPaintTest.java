@@ -0,0 +1,99 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.MonthAvailability;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that only the months around the one displayed in the calendar are loaded from an availability provider
+ * and sent to the client, each of them once
+ */
+public class AvailabilityPaintTest {
+    private static final int MAY = EpochDays.monthIndex(2013, 5);
+
+    /**
+     * Excludes the first day of every month, counting the loads
+     */
+    private static class FirstDayProvider implements DateAvailabilityProvider {
+        private final List<Integer> loaded = new ArrayList<Integer>();
+
+        public DateAvailability getAvailability(int year, int month) {
+            loaded.add(EpochDays.monthIndex(year, month));
+            DateAvailability availability = new DateAvailability(year, month);
+            availability.excludeDay(1);
+            return availability;
+        }
+    }
+
+    @Test
+    public void sendsTheMonthsAroundTheDisplayedOne() throws Exception {
+        FirstDayProvider provider = new FirstDayProvider();
+        RangeDateField field = new RangeDateField();
+        field.setAvailabilityProvider(provider);
+        field.setValue(RangeDateFieldUtils.toDate(EpochDays.of(2013, 5, 15), TimeZone.getDefault()));
+
+        RecordingPaintTarget full = paint(field, true);
+        assertEquals(Boolean.TRUE, full.getAttribute(VRangeDateField.AVAILABILITY_RESET_PARAM));
+        assertEquals(Arrays.asList(MAY - 1, MAY, MAY + 1), paintedMonths(full));
+        assertTrue(MonthAvailability.decode(((String[]) full.getAttribute(VRangeDateField.AVAILABILITY_PARAM))[0])
+                .isDayExcluded(1));
+
+        // the user moves to June, only July is new
+        field.changeVariables(this, Collections.<String, Object>singletonMap(VRangeDateField.VISIBLE_MONTH_VAR,
+                MAY + 1));
+        RecordingPaintTarget next = paint(field, false);
+        assertNull(next.getAttribute(VRangeDateField.AVAILABILITY_RESET_PARAM));
+        assertEquals(Arrays.asList(MAY + 2), paintedMonths(next));
+        assertEquals(Collections.<Integer>emptyList(), paintedMonths(paint(field, false)));
+        assertEquals(Arrays.asList(MAY - 1, MAY, MAY + 1, MAY + 2), provider.loaded);
+
+        // a new widget gets all the months around June again, from the cache
+        RecordingPaintTarget again = paint(field, true);
+        assertEquals(Boolean.TRUE, again.getAttribute(VRangeDateField.AVAILABILITY_RESET_PARAM));
+        assertEquals(Arrays.asList(MAY, MAY + 1, MAY + 2), paintedMonths(again));
+        assertEquals(4, provider.loaded.size());
+    }
+
+    @Test
+    public void refreshLoadsTheMonthsAgain() throws Exception {
+        FirstDayProvider provider = new FirstDayProvider();
+        RangeDateField field = new RangeDateField();
+        field.setAvailabilityProvider(provider);
+        field.changeVariables(this, Collections.<String, Object>singletonMap(VRangeDateField.VISIBLE_MONTH_VAR, MAY));
+        paint(field, true);
+        field.refreshAvailability();
+        RecordingPaintTarget refreshed = paint(field, false);
+        assertEquals(Boolean.TRUE, refreshed.getAttribute(VRangeDateField.AVAILABILITY_RESET_PARAM));
+        assertEquals(Arrays.asList(MAY - 1, MAY, MAY + 1), paintedMonths(refreshed));
+        assertEquals(6, provider.loaded.size());
+    }
+
+    private static List<Integer> paintedMonths(RecordingPaintTarget target) {
+        List<Integer> months = new ArrayList<Integer>();
+        String[] encoded = (String[]) target.getAttribute(VRangeDateField.AVAILABILITY_PARAM);
+        if (encoded != null) {
+            for (String month : encoded) {
+                months.add(MonthAvailability.decode(month).getMonthIndex());
+            }
+        }
+        return months;
+    }
+
+    private static RecordingPaintTarget paint(RangeDateField field, boolean fullRepaint) throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(fullRepaint);
+        field.paintContent(target);
+        return target;
+    }
+}
@@ -0,0 +1,147 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Imports the iCalendar and CSV files next to this test and compares the imported days with the events of the files
+ */
+public class CalendarImporterTest {
+
+    @Test
+    public void importsICalendarInUtc() throws Exception {
+        CalendarRules rules = importICalendar("UTC");
+        assertExcluded(rules,
+                // New Year party from 23:00 to 01:00 UTC
+                day(2013, 1, 1), day(2013, 1, 2),
+                // ends at midnight, DTEND is exclusive
+                day(2013, 3, 1),
+                // midnight to midnight in Helsinki is 21:00 to 21:00 UTC
+                day(2013, 5, 31), day(2013, 6, 1), day(2013, 6, 2),
+                // 22:00 in New York, with the TZID folded over two lines
+                day(2013, 7, 5),
+                // only the first weekly meeting
+                day(2013, 9, 2),
+                day(2013, 12, 24), day(2013, 12, 25));
+    }
+
+    @Test
+    public void importsICalendarInTimeZoneOfBuilder() throws Exception {
+        assertExcluded(importICalendar("Europe/Helsinki"), day(2013, 1, 2), day(2013, 3, 1), day(2013, 6, 1),
+                day(2013, 6, 2), day(2013, 7, 5), day(2013, 9, 2), day(2013, 12, 24), day(2013, 12, 25));
+        assertExcluded(importICalendar("America/New_York"), day(2013, 1, 1), day(2013, 3, 1), day(2013, 5, 31),
+                day(2013, 6, 1), day(2013, 6, 2), day(2013, 7, 4), day(2013, 9, 2), day(2013, 12, 24),
+                day(2013, 12, 25));
+    }
+
+    @Test
+    public void unfoldsContinuationLines() throws Exception {
+        CalendarRules.Builder builder = new CalendarRules.Builder(TimeZone.getTimeZone("UTC"));
+        String content = "BEGIN:VEVENT\r\nDTSTART;VALUE=DA\r\n TE:2013\r\n\t0102\r\nEND:VEVENT\r\n"
+                + "BEGIN:VEVENT\nDTSTART:20130103T120000\nDTEND:20130105T1\n 20000\nEND:VEVENT\n";
+        assertEquals(4, new CalendarImporter(builder).importICalendar(new StringReader(content)));
+        assertExcluded(builder.build(), day(2013, 1, 2), day(2013, 1, 3), day(2013, 1, 4), day(2013, 1, 5));
+    }
+
+    @Test
+    public void importsCsvWithHeaderAndColumns() throws Exception {
+        CalendarRules.Builder builder = new CalendarRules.Builder(TimeZone.getTimeZone("UTC"));
+        int count = new CalendarImporter(builder).setCsvColumns(0, 1, 3).importCsv(resource("holidays.csv"));
+        CalendarRules rules = builder.build();
+        assertEquals(6, count);
+        assertExcluded(rules, day(2013, 1, 1), day(2013, 5, 1), day(2013, 6, 21), day(2013, 12, 24),
+                day(2013, 12, 25), day(2013, 12, 26));
+        assertEquals(Arrays.asList("holiday", "christmas"), rules.getDayStyleNames(day(2013, 12, 26)));
+        assertEquals(Collections.singletonList("holiday"), rules.getDayStyleNames(day(2013, 1, 1)));
+        assertTrue(rules.getDayStyleNames(day(2013, 5, 1)).isEmpty());
+    }
+
+    @Test
+    public void importsCsvWithoutEndDateColumn() throws Exception {
+        CalendarRules.Builder builder = new CalendarRules.Builder(TimeZone.getTimeZone("UTC"));
+        // without the column options only the first day of Christmas is imported, without styles
+        assertEquals(4, new CalendarImporter(builder).importCsv(resource("holidays.csv")));
+        CalendarRules rules = builder.build();
+        assertExcluded(rules, day(2013, 1, 1), day(2013, 5, 1), day(2013, 6, 21), day(2013, 12, 24));
+        assertTrue(rules.getStyledDays().isEmpty());
+    }
+
+    @Test
+    public void importsCsvWithSeparatorAndStyleOptions() throws Exception {
+        CalendarRules.Builder builder = new CalendarRules.Builder(TimeZone.getTimeZone("UTC"));
+        int count = new CalendarImporter(builder).setCsvSeparator(';').setCsvColumns(1, -1, 2)
+                .setExclude(false).setStyleName("imported").importCsv(resource("holidays-semicolon.csv"));
+        CalendarRules rules = builder.build();
+        assertEquals(2, count);
+        assertExcluded(rules);
+        assertEquals(Arrays.asList("imported", "short"), rules.getDayStyleNames(day(2013, 3, 28)));
+        assertEquals(Arrays.asList("imported", "holiday"), rules.getDayStyleNames(day(2013, 3, 29)));
+    }
+
+    @Test
+    public void rejectsDatesAfterTheHeader() throws Exception {
+        CalendarRules.Builder builder = new CalendarRules.Builder(TimeZone.getTimeZone("UTC"));
+        try {
+            // the name column is taken for dates, the first line for a header
+            new CalendarImporter(builder).setCsvSeparator(';').importCsv(resource("holidays-semicolon.csv"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid date on line 2"));
+        }
+        try {
+            new CalendarImporter(builder).importCsv(new StringReader("date\n2013-02-30\n"));
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid date on line 2"));
+        }
+    }
+
+    private static CalendarRules importICalendar(String timeZone) throws Exception {
+        CalendarRules.Builder builder = new CalendarRules.Builder(TimeZone.getTimeZone(timeZone));
+        int count = new CalendarImporter(builder).importICalendar(resource("holidays.ics"));
+        CalendarRules rules = builder.build();
+        assertEquals(rules.getExcludedDays().size(), count);
+        return rules;
+    }
+
+    private static void assertExcluded(CalendarRules rules, int... days) {
+        List<Integer> excluded = new ArrayList<Integer>();
+        for (int i = 0; i < rules.getExcludedDays().size(); i++) {
+            excluded.add(rules.getExcludedDays().get(i));
+        }
+        List<Integer> expected = new ArrayList<Integer>();
+        for (int day : days) {
+            expected.add(day);
+        }
+        assertEquals(format(expected), format(excluded));
+    }
+
+    private static List<String> format(List<Integer> days) {
+        List<String> result = new ArrayList<String>();
+        for (Integer day : days) {
+            result.add(EpochDays.format(day));
+        }
+        return result;
+    }
+
+    private static int day(int year, int month, int dayOfMonth) {
+        return EpochDays.of(year, month, dayOfMonth);
+    }
+
+    private static File resource(String name) throws Exception {
+        return new File(CalendarImporterTest.class.getResource(name).toURI());
+    }
+}
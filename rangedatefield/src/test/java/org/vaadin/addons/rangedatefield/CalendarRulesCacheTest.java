@@ -0,0 +1,152 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that concurrent requests share one load, that failed loads are not cached and that entries are evicted
+ * by weight in least recently used order
+ */
+public class CalendarRulesCacheTest {
+    private static final int NEW_YEAR = EpochDays.of(2013, 1, 1);
+
+    @Test(timeout = 10000)
+    public void concurrentRequestsShareOneLoad() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final CalendarRulesCache cache = new CalendarRulesCache(new CalendarRulesCache.Loader() {
+            public CalendarRules load(String region, int year) {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return rules(1);
+            }
+        }, 100);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CalendarRules>> results = new ArrayList<Future<CalendarRules>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<CalendarRules>() {
+                    public CalendarRules call() {
+                        return cache.get("FI", 2013);
+                    }
+                }));
+            }
+            loading.await();
+            // the entry is not visible before it has been loaded
+            assertNull(cache.getIfPresent("FI", 2013));
+            assertEquals(1, cache.size());
+            while (cache.getHitCount() < threads - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<CalendarRules> result : results) {
+                assertSame(rules(1), result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getMissCount());
+        assertSame(rules(1), cache.getIfPresent("FI", 2013));
+    }
+
+    @Test
+    public void failedLoadsAreNotCached() {
+        final AtomicInteger loads = new AtomicInteger();
+        CalendarRulesCache cache = new CalendarRulesCache(new CalendarRulesCache.Loader() {
+            public CalendarRules load(String region, int year) {
+                if (loads.incrementAndGet() == 1) throw new IllegalArgumentException("unavailable");
+                return loads.get() == 2 ? null : rules(1);
+            }
+        }, 100);
+        try {
+            cache.get("FI", 2013);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("unavailable", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+        try {
+            cache.get("FI", 2013);
+            fail();
+        } catch (IllegalStateException expected) {
+            // the loader returned null
+        }
+        assertEquals(0, cache.size());
+        assertSame(rules(1), cache.get("FI", 2013));
+        assertEquals(3, cache.getMissCount());
+        assertEquals(2, cache.getLoadFailureCount());
+        // only the successful load adds its weight
+        assertEquals(2, cache.getWeight());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedByWeight() {
+        // the year decides the number of excluded days, the weight of an entry is one more than that
+        CalendarRulesCache cache = new CalendarRulesCache(new CalendarRulesCache.Loader() {
+            public CalendarRules load(String region, int year) {
+                return rules(year);
+            }
+        }, 10);
+        cache.get("a", 3);
+        cache.get("b", 2);
+        cache.get("c", 1);
+        assertEquals(9, cache.getWeight());
+        // makes b the least recently used entry
+        cache.get("a", 3);
+        cache.get("c", 1);
+
+        cache.get("d", 2);
+        assertNull(cache.getIfPresent("b", 2));
+        assertNotNull(cache.getIfPresent("a", 3));
+        assertEquals(9, cache.getWeight());
+        assertEquals(1, cache.getEvictionCount());
+
+        // an entry heavier than the maximum replaces all others but stays cached itself
+        cache.get("e", 20);
+        assertEquals(1, cache.size());
+        assertEquals(21, cache.getWeight());
+        assertEquals(4, cache.getEvictionCount());
+
+        cache.invalidate("e", 20);
+        assertEquals(0, cache.getWeight());
+        cache.get("a", 3);
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertTrue(cache.getHitCount() > 0);
+    }
+
+    private static CalendarRules rules(int excludedDays) {
+        CalendarRules.Builder builder = new CalendarRules.Builder();
+        for (int i = 0; i < excludedDays; i++) {
+            builder.excludeDay(NEW_YEAR + i);
+        }
+        return builder.build();
+    }
+}
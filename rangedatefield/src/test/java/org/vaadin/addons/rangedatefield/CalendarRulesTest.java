@@ -0,0 +1,89 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.DayRule;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that equal rules are shared, also after deserialization, and that fields apply their own values on top
+ * of the rules
+ */
+public class CalendarRulesTest {
+    private static final int NEW_YEAR = EpochDays.of(2014, 1, 1);
+
+    @Test
+    public void equalRulesAreShared() {
+        CalendarRules rules = holidays().build();
+        assertSame(rules, holidays().build());
+        assertEquals(Arrays.asList("holiday", "new-year"), rules.getDayStyleNames(NEW_YEAR));
+        assertTrue(rules.getStyledDays().contains(NEW_YEAR));
+        assertEquals(2, rules.getStyledDayCount());
+
+        CalendarRules other = holidays().addDayStyleName(NEW_YEAR, "other").build();
+        assertNotSame(rules, other);
+        assertFalse(rules.equals(other));
+        // the order of the styles matters, they are rendered in that order
+        assertNotSame(rules, new CalendarRules.Builder().excludeDay(NEW_YEAR).excludeDay(NEW_YEAR + 5)
+                .addDayStyleName(NEW_YEAR, "new-year").addDayStyleName(NEW_YEAR, "holiday")
+                .addDayStyleName(NEW_YEAR + 5, "holiday").build());
+    }
+
+    @Test
+    public void deserializedRulesAreShared() throws Exception {
+        CalendarRules rules = holidays().build();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(rules);
+        out.close();
+        Object restored = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertSame(rules, restored);
+    }
+
+    @Test
+    public void builderCanBeUsedAfterBuilding() {
+        CalendarRules.Builder builder = holidays();
+        CalendarRules rules = builder.build();
+        builder.addDayStyleName(NEW_YEAR + 1, "holiday");
+        assertTrue(rules.getDayStyleNames(NEW_YEAR + 1).isEmpty());
+        assertEquals(Arrays.asList("holiday"), builder.build().getDayStyleNames(NEW_YEAR + 1));
+    }
+
+    @Test
+    public void fieldValuesApplyOnTopOfTheRules() {
+        RangeDateField field = new RangeDateField();
+        field.setCalendarRules(holidays().excludeRule(DayRule.weekdays(6)).build());
+        assertTrue(field.isDayExcluded(NEW_YEAR));
+        assertTrue(field.isDayExcluded(EpochDays.of(2014, 1, 4)));
+        assertFalse(field.isDayExcluded(NEW_YEAR + 1));
+
+        field.setExcludeDates(new Date[]{toDate(NEW_YEAR + 1)});
+        field.addDateStyleName(toDate(NEW_YEAR), "booked");
+        assertTrue(field.isDayExcluded(NEW_YEAR + 1));
+        assertTrue(field.isDayExcluded(NEW_YEAR));
+        assertEquals(Arrays.asList("booked"), field.getDateStyleNames(toDate(NEW_YEAR)));
+    }
+
+    private static CalendarRules.Builder holidays() {
+        return new CalendarRules.Builder().excludeDay(NEW_YEAR).excludeDay(NEW_YEAR + 5)
+                .addDayStyleName(NEW_YEAR, "holiday").addDayStyleName(NEW_YEAR, "new-year")
+                .addDayStyleName(NEW_YEAR + 5, "holiday");
+    }
+
+    private static Date toDate(int day) {
+        return RangeDateFieldUtils.toDate(day, TimeZone.getDefault());
+    }
+}
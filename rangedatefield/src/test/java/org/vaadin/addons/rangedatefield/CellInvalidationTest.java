@@ -0,0 +1,94 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.ClientDateData;
+import org.vaadin.addons.rangedatefield.client.DayCellCache;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The widget skips rendering a day whose cached cell is the one it rendered before. Checks that updates replace
+ * the cells of the months with changed days and keep the cells of other months.
+ */
+public class CellInvalidationTest {
+    private static final int DAY = EpochDays.of(2013, 5, 10);
+    private static final int NEXT_MONTH_DAY = EpochDays.of(2013, 6, 10);
+    private static final int MAY = EpochDays.monthIndex(2013, 5);
+
+    @Test
+    public void styleChangesReplaceOnlyTheCellsOfTheirMonth() throws Exception {
+        RangeDateField field = new RangeDateField();
+        ClientDateData client = new ClientDateData();
+        field.addDateStyleName(toDate(DAY), "a");
+        paint(field, client, true);
+        DayCellCache cells = client.getCells();
+        DayCellCache.Cell styled = cells.get(DAY);
+        DayCellCache.Cell plain = cells.get(NEXT_MONTH_DAY);
+        assertEquals(Arrays.asList("a"), styled.getStyleNames());
+
+        paint(field, client, false);
+        assertSame(styled, cells.get(DAY));
+
+        field.addDateStyleName(toDate(DAY), "b");
+        paint(field, client, false);
+        assertNotSame(styled, cells.get(DAY));
+        assertEquals(Arrays.asList("a", "b"), cells.get(DAY).getStyleNames());
+        assertSame(plain, cells.get(NEXT_MONTH_DAY));
+
+        field.removeDateStyleName(toDate(DAY), "a");
+        field.removeDateStyleName(toDate(DAY), "b");
+        paint(field, client, false);
+        assertNull(cells.get(DAY).getStyleNames());
+        assertSame(plain, cells.get(NEXT_MONTH_DAY));
+    }
+
+    @Test
+    public void availabilityReplacesTheCellsOfItsMonth() throws Exception {
+        RangeDateField field = new RangeDateField();
+        ClientDateData client = new ClientDateData();
+        field.setAvailabilityProvider(new DateAvailabilityProvider() {
+            public DateAvailability getAvailability(int year, int month) {
+                DateAvailability availability = new DateAvailability(year, month);
+                availability.excludeDay(1);
+                return availability;
+            }
+        });
+        field.setValue(toDate(DAY));
+        paint(field, client, true);
+        DayCellCache cells = client.getCells();
+        DayCellCache.Cell may = cells.get(DAY);
+        DayCellCache.Cell july = cells.get(EpochDays.of(2013, 7, 10));
+        assertTrue(cells.get(EpochDays.of(2013, 5, 1)).isDisabled());
+        assertFalse(may.isDisabled());
+
+        // moving to June sends July, the cells of May stay
+        field.changeVariables(this, Collections.<String, Object>singletonMap(VRangeDateField.VISIBLE_MONTH_VAR,
+                MAY + 1));
+        paint(field, client, false);
+        assertSame(may, cells.get(DAY));
+        assertNotSame(july, cells.get(EpochDays.of(2013, 7, 10)));
+        assertTrue(cells.get(EpochDays.of(2013, 7, 1)).isDisabled());
+    }
+
+    private static Date toDate(int day) {
+        return RangeDateFieldUtils.toDate(day, TimeZone.getDefault());
+    }
+
+    private static void paint(RangeDateField field, ClientDateData client, boolean fullRepaint) throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(fullRepaint);
+        field.paintContent(target);
+        client.update(target.getClientAttributes());
+    }
+}
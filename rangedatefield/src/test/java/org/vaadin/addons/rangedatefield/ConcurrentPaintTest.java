@@ -0,0 +1,152 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Paints many fields at the same time and compares every paint with a single threaded reference, and the painted
+ * dates with {@link SimpleDateFormat}
+ */
+public class ConcurrentPaintTest {
+    private static final int FIELDS = 50;
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 40;
+
+    @Test
+    public void formatMatchesSimpleDateFormat() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd");
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1899, Calendar.DECEMBER, 1);
+        for (int i = 0; i < 100000; i++) {
+            Date date = calendar.getTime();
+            int day = RangeDateFieldUtils.toEpochDay(date, calendar.getTimeZone());
+            assertEquals(format.format(date), EpochDays.format(day));
+            assertEquals(day, EpochDays.parse(format.format(date)));
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    @Test
+    public void concurrentPaintsMatchReference() throws Exception {
+        final List<String> references = new ArrayList<String>();
+        for (int i = 0; i < FIELDS; i++) {
+            RecordingPaintTarget target = paint(createField(i));
+            assertArrayEquals(expectedExcludeDates(i), (Object[]) target.getAttribute(VRangeDateField.EXCLUDE_DATES_PARAM));
+            assertEquals(new SimpleDateFormat("yyyy.MM.dd").format(validFrom(i)),
+                    target.getAttribute(VRangeDateField.VALID_FROM_DATE_PARAM));
+            references.add(describe(target));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int offset = t;
+                results.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws Exception {
+                        int mismatches = 0;
+                        for (int round = 0; round < ROUNDS; round++) {
+                            for (int i = 0; i < FIELDS; i++) {
+                                // the threads paint different fields at the same time
+                                int field = (i + offset * 7) % FIELDS;
+                                if (!references.get(field).equals(describe(paint(createField(field))))) {
+                                    mismatches++;
+                                }
+                            }
+                        }
+                        return mismatches;
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertEquals(0, result.get().intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static RangeDateField createField(int i) {
+        RangeDateField field = new RangeDateField();
+        field.setCompactEncoding(false);
+        field.setValidFromDate(validFrom(i));
+        field.setValidToDate(date(2020 + i % 7, Calendar.DECEMBER, 31));
+        field.setExcludeDates(excludeDates(i));
+        field.addDateStyleName(date(2013, i % 12, 1 + i % 28), "style" + i % 5);
+        field.setValue(date(2013, i % 12, 15));
+        return field;
+    }
+
+    private static Date validFrom(int i) {
+        return date(1990 + i, i % 12, 1 + i % 28);
+    }
+
+    private static Date[] excludeDates(int i) {
+        Date[] dates = new Date[20];
+        for (int d = 0; d < dates.length; d++) {
+            dates[d] = date(2000 + (i + d) % 30, (i * d) % 12, 1 + (i + d * 3) % 28);
+        }
+        return dates;
+    }
+
+    private static String[] expectedExcludeDates(int i) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy.MM.dd");
+        Date[] dates = excludeDates(i);
+        String[] expected = new String[dates.length];
+        for (int d = 0; d < dates.length; d++) {
+            expected[d] = format.format(dates[d]);
+        }
+        // yyyy.MM.dd sorts like the days, duplicates are painted once
+        Arrays.sort(expected);
+        List<String> distinct = new ArrayList<String>();
+        for (String date : expected) {
+            if (distinct.isEmpty() || !distinct.get(distinct.size() - 1).equals(date)) distinct.add(date);
+        }
+        return distinct.toArray(new String[distinct.size()]);
+    }
+
+    private static Date date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTime();
+    }
+
+    private static RecordingPaintTarget paint(RangeDateField field) throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(true);
+        field.paintContent(target);
+        return target;
+    }
+
+    private static String describe(RecordingPaintTarget target) {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Object> entry : target.getAttributes().entrySet()) {
+            Object value = entry.getValue();
+            result.append(entry.getKey()).append('=')
+                    .append(value instanceof Object[] ? Arrays.toString((Object[]) value) : value).append(';');
+        }
+        for (Map.Entry<String, Object> entry : target.getVariables().entrySet()) {
+            Object value = entry.getValue();
+            result.append(entry.getKey()).append('=')
+                    .append(value instanceof Object[] ? Arrays.toString((Object[]) value) : value).append(';');
+        }
+        return result.toString();
+    }
+}
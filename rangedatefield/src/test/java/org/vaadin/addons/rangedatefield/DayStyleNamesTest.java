@@ -0,0 +1,146 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the table of days as it grows and shrinks, that shared style arrays are forgotten once no day uses them,
+ * and the map of dates subclasses used to see
+ */
+public class DayStyleNamesTest {
+
+    @Test
+    public void findsDaysAfterGrowingAndDeleting() {
+        DayStyleNames styles = new DayStyleNames();
+        // negative and positive days far apart, through several resizes
+        for (int i = -2000; i < 2000; i++) {
+            styles.add(i * 4096, "day" + (i & 3));
+        }
+        assertEquals(4000, styles.size());
+        assertEquals(4, styles.getStyleSetCount());
+        for (int i = -2000; i < 2000; i += 2) {
+            assertTrue(styles.remove(i * 4096, "day" + (i & 3)));
+        }
+        assertEquals(2000, styles.size());
+        for (int i = -2000; i < 2000; i++) {
+            List<String> expected = i % 2 == 0 ? Arrays.<String>asList() : Arrays.asList("day" + (i & 3));
+            assertEquals(expected, styles.get(i * 4096));
+            assertTrue(styles.get(i * 4096 + 1).isEmpty());
+        }
+        assertEquals(2000, styles.getDays().length);
+    }
+
+    @Test
+    public void removedStylesAreACopy() {
+        DayStyleNames styles = new DayStyleNames();
+        styles.add(1, "booked");
+        styles.add(2, "booked");
+        assertEquals(1, styles.getStyleSetCount());
+        List<String> removed = styles.removeAll(1);
+        assertEquals(Arrays.asList("booked"), removed);
+        try {
+            removed.set(0, "free");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(Arrays.asList("booked"), styles.get(2));
+        // still used by the second day
+        assertEquals(1, styles.getStyleSetCount());
+        styles.removeAll(2);
+        assertEquals(0, styles.getStyleSetCount());
+        assertTrue(styles.removeAll(2).isEmpty());
+    }
+
+    @Test
+    public void forgetsUnusedStyleSets() throws Exception {
+        DayStyleNames styles = new DayStyleNames();
+        for (int round = 0; round < 100; round++) {
+            for (int day = 0; day < 50; day++) {
+                styles.add(day, "style" + round);
+                styles.add(day, "booked");
+            }
+            for (int day = 0; day < 50; day++) {
+                if (day % 2 == 0) {
+                    styles.removeAll(day);
+                } else {
+                    styles.remove(day, "style" + round);
+                }
+            }
+        }
+        // only the odd days are left, all of them with just booked
+        assertEquals(25, styles.size());
+        assertEquals(1, styles.getStyleSetCount());
+        assertEquals(Arrays.asList("booked"), styles.get(1));
+
+        DayStyleNames restored = deserialize(serialize(styles));
+        assertEquals(1, restored.getStyleSetCount());
+        restored.remove(1, "booked");
+        restored.add(3, "other");
+        assertEquals(2, restored.getStyleSetCount());
+        for (int day = 3; day < 50; day += 2) {
+            restored.removeAll(day);
+        }
+        assertEquals(0, restored.getStyleSetCount());
+        assertTrue(restored.isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedApiChangesTheField() {
+        final Date christmas = date(2013, Calendar.DECEMBER, 25);
+        RangeDateField field = new RangeDateField() {
+            {
+                addStyle(christmas, "holiday");
+                dateStyleNames.put(date(2013, Calendar.DECEMBER, 24), Arrays.asList("holiday", "eve"));
+                assertTrue(containsStyle(christmas, "holiday"));
+                assertEquals(Arrays.asList("holiday"), dateStyleNames.get(christmas));
+                assertNull(dateStyleNames.get(date(2013, Calendar.DECEMBER, 26)));
+                assertEquals(2, dateStyleNames.size());
+
+                Iterator<Map.Entry<Date, List<String>>> entries = dateStyleNames.entrySet().iterator();
+                while (entries.hasNext()) {
+                    if (entries.next().getKey().equals(christmas)) entries.remove();
+                }
+                assertFalse(dateStyleNames.containsKey(christmas));
+            }
+        };
+        assertEquals(Arrays.asList("holiday", "eve"), field.getDateStyleNames(date(2013, Calendar.DECEMBER, 24)));
+        assertTrue(field.getDateStyleNames(christmas).isEmpty());
+    }
+
+    private static Date date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTime();
+    }
+
+    private static byte[] serialize(Object object) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static DayStyleNames deserialize(byte[] bytes) throws Exception {
+        return (DayStyleNames) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    }
+}
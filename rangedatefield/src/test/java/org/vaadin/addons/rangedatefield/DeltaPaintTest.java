@@ -0,0 +1,112 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.DayBitSet;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that repaints after the first one send only the excluded dates and date styles that have changed
+ */
+public class DeltaPaintTest {
+    private static final int MAY_1 = EpochDays.of(2013, 5, 1);
+
+    @Test
+    public void sendsOnlyTheChangedExcludedDates() throws Exception {
+        RangeDateField field = new RangeDateField();
+        field.setCompactEncoding(false);
+        field.setExcludeDates(new Date[]{toDate(MAY_1), toDate(MAY_1 + 1)});
+        RecordingPaintTarget full = paint(field, true);
+        assertNull(full.getAttribute(VRangeDateField.DATE_DATA_DELTA_PARAM));
+        assertArrayEquals(new Object[]{"2013.05.01", "2013.05.02"},
+                (Object[]) full.getAttribute(VRangeDateField.EXCLUDE_DATES_PARAM));
+
+        field.setExcludeDates(new Date[]{toDate(MAY_1 + 1), toDate(MAY_1 + 2)});
+        RecordingPaintTarget delta = paint(field, false);
+        assertEquals(Boolean.TRUE, delta.getAttribute(VRangeDateField.DATE_DATA_DELTA_PARAM));
+        assertNull(delta.getAttribute(VRangeDateField.EXCLUDE_DATES_PARAM));
+        assertArrayEquals(new Object[]{"2013.05.03"},
+                (Object[]) delta.getAttribute(VRangeDateField.EXCLUDE_DATES_ADDED_PARAM));
+        assertArrayEquals(new Object[]{"2013.05.01"},
+                (Object[]) delta.getAttribute(VRangeDateField.EXCLUDE_DATES_REMOVED_PARAM));
+
+        RecordingPaintTarget unchanged = paint(field, false);
+        assertNull(unchanged.getAttribute(VRangeDateField.EXCLUDE_DATES_ADDED_PARAM));
+        assertNull(unchanged.getAttribute(VRangeDateField.EXCLUDE_DATES_REMOVED_PARAM));
+
+        RecordingPaintTarget again = paint(field, true);
+        assertNull(again.getAttribute(VRangeDateField.DATE_DATA_DELTA_PARAM));
+        assertArrayEquals(new Object[]{"2013.05.02", "2013.05.03"},
+                (Object[]) again.getAttribute(VRangeDateField.EXCLUDE_DATES_PARAM));
+    }
+
+    @Test
+    public void sendsCompactDeltasAsBitsets() throws Exception {
+        RangeDateField field = new RangeDateField();
+        int[] days = new int[40];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = MAY_1 + i;
+        }
+        field.setExcludeDates(toDates(days));
+        paint(field, true);
+
+        days[0] = MAY_1 + 100;
+        days[1] = MAY_1 + 101;
+        field.setExcludeDates(toDates(days));
+        RecordingPaintTarget delta = paint(field, false);
+        assertArrayEquals(new int[]{MAY_1 + 100, MAY_1 + 101}, DayBitSet.decode(
+                (String) delta.getAttribute(VRangeDateField.EXCLUDE_DAYS_ADDED_PARAM)).toArray());
+        assertArrayEquals(new int[]{MAY_1, MAY_1 + 1}, DayBitSet.decode(
+                (String) delta.getAttribute(VRangeDateField.EXCLUDE_DAYS_REMOVED_PARAM)).toArray());
+    }
+
+    @Test
+    public void sendsOnlyTheChangedStyles() throws Exception {
+        RangeDateField field = new RangeDateField();
+        field.addDateStyleName(toDate(MAY_1), "booked");
+        RecordingPaintTarget full = paint(field, true);
+        assertArrayEquals(new Object[]{"0:" + MAY_1},
+                (Object[]) full.getAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM));
+
+        field.addDateStyleName(toDate(MAY_1 + 1), "booked");
+        field.removeDateStyleName(toDate(MAY_1), "booked");
+        RecordingPaintTarget delta = paint(field, false);
+        assertNull(delta.getAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM));
+        assertArrayEquals(new Object[]{"0:" + (MAY_1 + 1)},
+                (Object[]) delta.getAttribute(VRangeDateField.DATE_STYLE_NAMES_ADDED_PARAM));
+        assertArrayEquals(new Object[]{"0:" + MAY_1},
+                (Object[]) delta.getAttribute(VRangeDateField.DATE_STYLE_NAMES_REMOVED_PARAM));
+
+        // added and removed again before the paint
+        field.addDateStyleName(toDate(MAY_1 + 2), "booked");
+        field.removeDateStyleName(toDate(MAY_1 + 2), "booked");
+        RecordingPaintTarget unchanged = paint(field, false);
+        assertNull(unchanged.getAttribute(VRangeDateField.DATE_STYLE_NAMES_ADDED_PARAM));
+        assertNull(unchanged.getAttribute(VRangeDateField.DATE_STYLE_NAMES_REMOVED_PARAM));
+    }
+
+    private static Date toDate(int day) {
+        return RangeDateFieldUtils.toDate(day, TimeZone.getDefault());
+    }
+
+    private static Date[] toDates(int[] days) {
+        Date[] dates = new Date[days.length];
+        for (int i = 0; i < days.length; i++) {
+            dates[i] = toDate(days[i]);
+        }
+        return dates;
+    }
+
+    private static RecordingPaintTarget paint(RangeDateField field, boolean fullRepaint) throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(fullRepaint);
+        field.paintContent(target);
+        return target;
+    }
+}
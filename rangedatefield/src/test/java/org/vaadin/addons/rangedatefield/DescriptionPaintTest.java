@@ -0,0 +1,105 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that descriptions are painted only for the months the client asks for, once per request, and that a
+ * refresh makes the client drop the descriptions it has
+ */
+public class DescriptionPaintTest {
+    private static final int MAY = EpochDays.monthIndex(2013, 5);
+
+    /**
+     * Describes the tenth day of May, counting the loads
+     */
+    private static class MayProvider implements DateDescriptionProvider {
+        private final List<Integer> loaded = new ArrayList<Integer>();
+
+        public Map<Integer, String> getDescriptions(int year, int month) {
+            loaded.add(EpochDays.monthIndex(year, month));
+            if (month != 5) return null;
+            Map<Integer, String> descriptions = new HashMap<Integer, String>();
+            descriptions.put(10, "Booked: 10:00 - 12:00");
+            descriptions.put(11, null);
+            return descriptions;
+        }
+    }
+
+    @Test
+    public void paintsOnlyTheRequestedMonths() throws Exception {
+        MayProvider provider = new MayProvider();
+        RangeDateField field = new RangeDateField();
+        field.setDescriptionProvider(provider);
+
+        RecordingPaintTarget full = paint(field, true);
+        assertEquals(Boolean.TRUE, full.getAttribute(VRangeDateField.DESCRIPTION_PROVIDER_PARAM));
+        assertEquals(Boolean.TRUE, full.getAttribute(VRangeDateField.DESCRIPTIONS_RESET_PARAM));
+        assertNull(full.getAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM));
+        assertEquals(Collections.<Integer>emptyList(), provider.loaded);
+
+        requestMonth(field, MAY);
+        RecordingPaintTarget may = paint(field, false);
+        assertNull(may.getAttribute(VRangeDateField.DESCRIPTIONS_RESET_PARAM));
+        assertArrayEquals(new Object[]{String.valueOf(MAY)},
+                (Object[]) may.getAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM));
+        assertArrayEquals(new Object[]{EpochDays.of(2013, 5, 10) + ":Booked: 10:00 - 12:00"},
+                (Object[]) may.getAttribute(VRangeDateField.DESCRIPTIONS_PARAM));
+
+        // a month without descriptions is still answered, so that the client stops asking for it
+        requestMonth(field, MAY + 1);
+        RecordingPaintTarget june = paint(field, false);
+        assertArrayEquals(new Object[]{String.valueOf(MAY + 1)},
+                (Object[]) june.getAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM));
+        assertNull(june.getAttribute(VRangeDateField.DESCRIPTIONS_PARAM));
+
+        assertNull(paint(field, false).getAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM));
+        assertEquals(Arrays.asList(MAY, MAY + 1), provider.loaded);
+    }
+
+    @Test
+    public void refreshDropsPendingRequests() throws Exception {
+        MayProvider provider = new MayProvider();
+        RangeDateField field = new RangeDateField();
+        field.setDescriptionProvider(provider);
+        paint(field, true);
+
+        requestMonth(field, MAY);
+        field.refreshDescriptions();
+        RecordingPaintTarget refreshed = paint(field, false);
+        assertEquals(Boolean.TRUE, refreshed.getAttribute(VRangeDateField.DESCRIPTIONS_RESET_PARAM));
+        assertNull(refreshed.getAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM));
+        assertNull(paint(field, false).getAttribute(VRangeDateField.DESCRIPTIONS_RESET_PARAM));
+        assertEquals(Collections.<Integer>emptyList(), provider.loaded);
+
+        // requests are ignored without a provider
+        field.setDescriptionProvider(null);
+        requestMonth(field, MAY);
+        RecordingPaintTarget none = paint(field, false);
+        assertNull(none.getAttribute(VRangeDateField.DESCRIPTION_PROVIDER_PARAM));
+        assertNull(none.getAttribute(VRangeDateField.DESCRIPTION_MONTHS_PARAM));
+    }
+
+    private void requestMonth(RangeDateField field, int month) {
+        field.changeVariables(this, Collections.<String, Object>singletonMap(VRangeDateField.DESCRIPTION_MONTH_VAR,
+                month));
+    }
+
+    private static RecordingPaintTarget paint(RangeDateField field, boolean fullRepaint) throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(fullRepaint);
+        field.paintContent(target);
+        return target;
+    }
+}
@@ -0,0 +1,192 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that failed loads are not left pending or cached and that a deserialized provider can be given
+ * an executor again
+ */
+public class ExecutorAvailabilityProviderTest {
+
+    /**
+     * Fails with an error on the first load of a month
+     */
+    private static class FailingOnceProvider implements DateAvailabilityProvider {
+        private int loads = 0;
+
+        public DateAvailability getAvailability(int year, int month) {
+            if (loads++ == 0) throw new AssertionError("first load");
+            return new DateAvailability(year, month);
+        }
+    }
+
+    /**
+     * Runs the loads on the calling thread and counts them
+     */
+    private static class CountingExecutor implements Executor {
+        private int runs = 0;
+
+        public void execute(Runnable command) {
+            runs++;
+            command.run();
+        }
+    }
+
+    /**
+     * Keeps the loads until they are run
+     */
+    private static class QueuedExecutor implements Executor {
+        private final List<Runnable> queue = new ArrayList<Runnable>();
+
+        public void execute(Runnable command) {
+            queue.add(command);
+        }
+
+        void runAll() {
+            while (!queue.isEmpty()) {
+                queue.remove(0).run();
+            }
+        }
+    }
+
+    /**
+     * Fails while failing is set, otherwise excludes the 20th day of every month
+     */
+    private static class SwitchableProvider implements DateAvailabilityProvider {
+        private boolean failing = true;
+        private final List<Integer> requested = new ArrayList<Integer>();
+
+        public DateAvailability getAvailability(int year, int month) {
+            requested.add(EpochDays.monthIndex(year, month));
+            if (failing) throw new IllegalStateException("unavailable");
+            DateAvailability availability = new DateAvailability(year, month);
+            availability.excludeDay(20);
+            return availability;
+        }
+    }
+
+    /**
+     * Records the results of the loads
+     */
+    private static class RecordingCallback implements AsyncDateAvailabilityProvider.Callback {
+        private final List<Object> results = new ArrayList<Object>();
+
+        public void loaded(DateAvailability availability) {
+            results.add(availability);
+        }
+
+        public void failed(Throwable cause) {
+            results.add(cause);
+        }
+    }
+
+    @Test
+    public void errorDoesNotLeaveTheMonthPending() {
+        ExecutorAvailabilityProvider provider = new ExecutorAvailabilityProvider(new FailingOnceProvider(),
+                new CountingExecutor());
+        RecordingCallback callback = new RecordingCallback();
+        try {
+            provider.loadAvailability(2013, 5, callback);
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("first load", e.getMessage());
+        }
+        provider.loadAvailability(2013, 5, callback);
+        assertEquals(2, callback.results.size());
+        assertEquals(AssertionError.class, callback.results.get(0).getClass());
+        assertEquals(2013, ((DateAvailability) callback.results.get(1)).getYear());
+    }
+
+    @Test
+    public void failedMonthIsNeitherValidNorCounted() {
+        SwitchableProvider provider = new SwitchableProvider();
+        QueuedExecutor executor = new QueuedExecutor();
+        RangeDateField field = new RangeDateField();
+        field.setAvailabilityProvider(new ExecutorAvailabilityProvider(provider, executor));
+        Date first = toDate(2013, 5, 1);
+        Date last = toDate(2013, 5, 31);
+        // only the month is requested
+        field.setValidFromDate(first);
+        field.setValidToDate(last);
+        field.setValue(toDate(2013, 5, 10));
+
+        // loading
+        assertFalse(field.isValid());
+        assertEquals(0, field.countSelectableDays(first, last));
+        executor.runAll();
+        // failed, requested again
+        assertFalse(field.isValid());
+        assertEquals(0, field.countSelectableDays(first, last));
+        assertEquals(1, executor.queue.size());
+
+        provider.failing = false;
+        executor.runAll();
+        assertTrue(field.isValid());
+        assertEquals(30, field.countSelectableDays(first, last));
+    }
+
+    @Test
+    public void searchesRequestOnlyTheMonthsAroundTheCalendar() {
+        SwitchableProvider provider = new SwitchableProvider();
+        provider.failing = false;
+        RangeDateField field = new RangeDateField();
+        field.setAvailabilityProvider(new ExecutorAvailabilityProvider(provider, new CountingExecutor()));
+        field.setValue(toDate(2013, 5, 10));
+
+        int windowDays = EpochDays.of(2013, 10, 31) - EpochDays.of(2012, 12, 1) + 1;
+        assertEquals(windowDays - 11, field.countSelectableDays(toDate(2012, 1, 1), toDate(2014, 12, 31)));
+        assertEquals(11, provider.requested.size());
+        for (int month : provider.requested) {
+            assertTrue(month >= EpochDays.monthIndex(2012, 12) && month <= EpochDays.monthIndex(2013, 10));
+        }
+    }
+
+    private static Date toDate(int year, int month, int day) {
+        return RangeDateFieldUtils.toDate(EpochDays.of(year, month, day), TimeZone.getDefault());
+    }
+
+    @Test
+    public void executorCanBeSetAfterDeserialization() throws Exception {
+        ExecutorAvailabilityProvider provider = new ExecutorAvailabilityProvider(new SerializableProvider(),
+                new CountingExecutor());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(provider);
+        out.close();
+        ExecutorAvailabilityProvider restored = (ExecutorAvailabilityProvider) new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertNull(restored.getExecutor());
+
+        CountingExecutor executor = new CountingExecutor();
+        restored.setExecutor(executor);
+        assertSame(executor, restored.getExecutor());
+        RecordingCallback callback = new RecordingCallback();
+        restored.loadAvailability(2013, 5, callback);
+        assertEquals(1, executor.runs);
+        assertEquals(1, callback.results.size());
+    }
+
+    private static class SerializableProvider implements DateAvailabilityProvider {
+        public DateAvailability getAvailability(int year, int month) {
+            return new DateAvailability(year, month);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RangeSelectionTest {
+    @Test
+    public void selectsTheSentSpan() {
+        RangeDateField field = createField();
+        field.changeVariables(this, range("2013.05.10", "2013.05.14"));
+        assertEquals(EpochDays.of(2013, 5, 10), field.toEpochDay(field.getRangeStart()));
+        assertEquals(EpochDays.of(2013, 5, 14), field.toEpochDay(field.getRangeEnd()));
+    }
+
+    @Test
+    public void ignoresMalformedSpans() {
+        RangeDateField field = createField();
+        field.changeVariables(this, range("2013.05.10", "14.5."));
+        field.changeVariables(this, range("not a date", "2013.05.14"));
+        field.changeVariables(this, range(null, "2013.05.14"));
+        Map<String, Object> endOnly = new HashMap<String, Object>();
+        endOnly.put(VRangeDateField.RANGE_END_VAR, "2013.05.14");
+        field.changeVariables(this, endOnly);
+        assertNull(field.getRangeStart());
+        assertNull(field.getRangeEnd());
+    }
+
+    private static RangeDateField createField() {
+        RangeDateField field = new RangeDateField();
+        field.setRangeSelection(true);
+        return field;
+    }
+
+    private static Map<String, Object> range(String start, String end) {
+        Map<String, Object> variables = new HashMap<String, Object>();
+        variables.put(VRangeDateField.RANGE_START_VAR, start);
+        variables.put(VRangeDateField.RANGE_END_VAR, end);
+        return variables;
+    }
+}
@@ -0,0 +1,212 @@
+package org.vaadin.addons.rangedatefield;
+
+import com.vaadin.terminal.PaintException;
+import com.vaadin.terminal.PaintTarget;
+import com.vaadin.terminal.Paintable;
+import com.vaadin.terminal.Resource;
+import com.vaadin.terminal.StreamVariable;
+import com.vaadin.terminal.VariableOwner;
+import org.vaadin.addons.rangedatefield.client.ClientDateData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A paint target that keeps the painted attributes and variables in memory instead of writing UIDL, so painting
+ * can be tested and measured without a servlet container. {@link #getEncodedSize()} approximates the size of the JSON
+ * the attributes would take in a real response.
+ */
+public class RecordingPaintTarget implements PaintTarget {
+    private final boolean fullRepaint;
+    private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    private final Map<String, Object> variables = new LinkedHashMap<String, Object>();
+
+    /**
+     * @param fullRepaint   Value returned by {@link #isFullRepaint()}
+     */
+    public RecordingPaintTarget(boolean fullRepaint) {
+        this.fullRepaint = fullRepaint;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    /**
+     * @return  The painted attributes as the client reads them from the UIDL
+     */
+    public ClientDateData.Attributes getClientAttributes() {
+        return new ClientDateData.Attributes() {
+            public boolean hasAttribute(String name) {
+                return attributes.containsKey(name);
+            }
+
+            public String getStringAttribute(String name) {
+                return String.valueOf(attributes.get(name));
+            }
+
+            public String[] getStringArrayAttribute(String name) {
+                Object[] values = (Object[]) attributes.get(name);
+                String[] result = new String[values.length];
+                for (int i = 0; i < values.length; i++) {
+                    result[i] = String.valueOf(values[i]);
+                }
+                return result;
+            }
+
+            public boolean getBooleanAttribute(String name) {
+                return Boolean.TRUE.equals(attributes.get(name));
+            }
+        };
+    }
+
+    /**
+     * @return  Approximate number of characters the painted attributes and variables take in a UIDL response
+     */
+    public int getEncodedSize() {
+        return getEncodedSize(attributes) + getEncodedSize(variables);
+    }
+
+    private static int getEncodedSize(Map<String, Object> values) {
+        int size = 0;
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            // "name":value,
+            size += entry.getKey().length() + 4;
+            Object value = entry.getValue();
+            if (value instanceof Object[]) {
+                size += 2;
+                for (Object item : (Object[]) value) {
+                    size += String.valueOf(item).length() + 3;
+                }
+            } else if (value instanceof String) {
+                size += ((String) value).length() + 2;
+            } else {
+                size += String.valueOf(value).length();
+            }
+        }
+        return size;
+    }
+
+    public boolean isFullRepaint() {
+        return fullRepaint;
+    }
+
+    public void addAttribute(String name, boolean value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, int value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, long value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, float value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, double value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, String value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, Resource value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, Map<?, ?> value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, Paintable value) throws PaintException {
+        attributes.put(name, value);
+    }
+
+    public void addAttribute(String name, Object[] values) {
+        attributes.put(name, values);
+    }
+
+    public void addVariable(VariableOwner owner, String name, String value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, int value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, long value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, float value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, double value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, boolean value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, String[] value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, Paintable value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addVariable(VariableOwner owner, String name, StreamVariable value) throws PaintException {
+        variables.put(name, value);
+    }
+
+    public void addUploadStreamVariable(VariableOwner owner, String name) throws PaintException {
+    }
+
+    public void addSection(String sectionTagName, String sectionData) throws PaintException {
+    }
+
+    public boolean startTag(Paintable paintable, String tag) throws PaintException {
+        return false;
+    }
+
+    public void paintReference(Paintable paintable, String referenceName) throws PaintException {
+    }
+
+    public void startTag(String tagName) throws PaintException {
+    }
+
+    public void endTag(String tagName) throws PaintException {
+    }
+
+    public void addXMLSection(String sectionTagName, String sectionData, String namespace) throws PaintException {
+    }
+
+    public void addUIDL(String uidl) throws PaintException {
+    }
+
+    public void addText(String text) throws PaintException {
+    }
+
+    public void addCharacterData(String text) throws PaintException {
+    }
+
+    public String getTag(Paintable paintable) {
+        return null;
+    }
+}
@@ -0,0 +1,130 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.DayRule;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the answers of {@link SelectableDays} with a day by day evaluation of the same restrictions
+ */
+public class SelectableDaysTest {
+    private static final int FIRST_DAY = EpochDays.of(2010, 3, 17);
+    private static final int LAST_DAY = EpochDays.of(2016, 11, 2);
+
+    /**
+     * Matches every fifth day, counting the rule evaluations
+     */
+    private static class EveryFifthDay extends DayRule {
+        private int evaluations = 0;
+
+        @Override
+        public boolean matches(int epochDay) {
+            evaluations++;
+            return epochDay % 5 == 0;
+        }
+
+        @Override
+        protected void encode(StringBuilder target) {
+            target.append("fifth");
+        }
+    }
+
+    private static boolean isSelectable(int day) {
+        int dayOfWeek = EpochDays.dayOfWeek(day);
+        return day >= FIRST_DAY && day <= LAST_DAY && dayOfWeek != EpochDays.SATURDAY
+                && dayOfWeek != EpochDays.SUNDAY && day % 5 != 0 && day % 13 != 0;
+    }
+
+    private static SelectableDays create(final DayRule rule) {
+        final EpochDaySet excluded = everyThirteenthDay();
+        return new SelectableDays(new SelectableDays.Filter() {
+            public void removeUnselectable(int base, int[] words) {
+                SelectableDays.removeWeekends(base, words);
+                SelectableDays.removeDays(excluded, base, words);
+                SelectableDays.removeMatching(rule, base, words);
+            }
+        }, FIRST_DAY, LAST_DAY);
+    }
+
+    private static EpochDaySet everyThirteenthDay() {
+        int[] days = new int[(LAST_DAY - FIRST_DAY) / 13 + 3];
+        int count = 0;
+        for (int day = FIRST_DAY - 13; day <= LAST_DAY + 13; day++) {
+            if (day % 13 == 0) days[count++] = day;
+        }
+        int[] result = new int[count];
+        System.arraycopy(days, 0, result, 0, count);
+        return EpochDaySet.of(result);
+    }
+
+    @Test
+    public void countsLikeADayByDayCheck() {
+        SelectableDays days = create(new EveryFifthDay());
+        for (int from = FIRST_DAY - 40; from < LAST_DAY + 40; from += 97) {
+            int expected = 0;
+            for (int to = from; to < from + 1500; to++) {
+                if (isSelectable(to)) expected++;
+                if (to % 31 == 0) assertEquals(from + ".." + to, expected, days.count(from, to));
+            }
+        }
+        assertEquals(0, days.count(LAST_DAY, FIRST_DAY));
+        assertEquals(0, days.count(Integer.MIN_VALUE, FIRST_DAY - 1));
+    }
+
+    @Test
+    public void searchesLikeADayByDayCheck() {
+        SelectableDays days = create(new EveryFifthDay());
+        for (int day = FIRST_DAY - 600; day < LAST_DAY + 600; day += 7) {
+            assertEquals(isSelectable(day), days.isSelectable(day));
+            Integer next = null;
+            for (int d = day + 1; next == null && d <= LAST_DAY; d++) {
+                if (isSelectable(d)) next = d;
+            }
+            assertEquals(next, days.next(day));
+            Integer previous = null;
+            for (int d = day - 1; previous == null && d >= FIRST_DAY; d--) {
+                if (isSelectable(d)) previous = d;
+            }
+            assertEquals(previous, days.previous(day));
+            Integer unselectable = null;
+            for (int d = day; unselectable == null && d <= day + 20; d++) {
+                if (!isSelectable(d)) unselectable = d;
+            }
+            assertEquals(unselectable, days.firstUnselectable(day, day + 20));
+        }
+    }
+
+    @Test
+    public void evaluatesRulesOnlyForRemainingDays() {
+        EveryFifthDay rule = new EveryFifthDay();
+        SelectableDays days = create(rule);
+        days.count(FIRST_DAY, LAST_DAY);
+        // weekends and excluded days are removed before the rule is evaluated
+        assertTrue(rule.evaluations < (LAST_DAY - FIRST_DAY + 1) * 5 / 7 + 1);
+        int evaluations = rule.evaluations;
+        days.count(FIRST_DAY, LAST_DAY);
+        days.next(FIRST_DAY);
+        assertEquals(evaluations, rule.evaluations);
+    }
+
+    @Test
+    public void stopsAtTheEndsOfTheDays() {
+        SelectableDays all = new SelectableDays(new SelectableDays.Filter() {
+            public void removeUnselectable(int base, int[] words) {
+            }
+        }, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertNull(all.next(Integer.MAX_VALUE));
+        assertNull(all.previous(Integer.MIN_VALUE));
+        assertEquals(Integer.valueOf(Integer.MAX_VALUE), all.next(Integer.MAX_VALUE - 1));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), all.previous(Integer.MIN_VALUE + 1));
+        assertTrue(all.isSelectable(Integer.MAX_VALUE));
+        assertFalse(create(new EveryFifthDay()).isSelectable(Integer.MAX_VALUE));
+        assertEquals(3, all.count(Integer.MAX_VALUE - 2, Integer.MAX_VALUE));
+        assertNull(all.firstUnselectable(Integer.MAX_VALUE - 2, Integer.MAX_VALUE));
+    }
+}
@@ -0,0 +1,126 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the serialized size of a field with a year of excluded and styled days with the form written before
+ * the field had a custom serialized form
+ */
+public class SerializedSizeTest {
+    /**
+     * Size of {@link #createField()} serialized by the field before it had a custom serialized form, measured in the
+     * UTC time zone, which gives the smallest serialized Calendar
+     */
+    private static final int BASELINE_BYTES = 11781;
+
+    /**
+     * The state of the field before it had a custom serialized form
+     */
+    private static class LegacyState implements Serializable {
+        private Date[] excludeDates;
+        private Map<Date, List<String>> dateStyleNames = new HashMap<Date, List<String>>();
+        private Calendar calendar = Calendar.getInstance();
+    }
+
+    @Test
+    public void smallerThanBaseline() throws Exception {
+        int size = serialize(createField()).length;
+        assertTrue("Serialized size " + size + " is not below half of " + BASELINE_BYTES, size < BASELINE_BYTES / 2);
+    }
+
+    @Test
+    public void smallerThanLegacyForm() throws Exception {
+        RangeDateField field = createField();
+        LegacyState legacy = new LegacyState();
+        legacy.excludeDates = field.getExcludeDates();
+        for (Date date : days()) {
+            List<String> styles = field.getDateStyleNames(date);
+            if (styles != null && !styles.isEmpty()) {
+                legacy.dateStyleNames.put(date, new LinkedList<String>(styles));
+            }
+        }
+        // the restrictions and styles, without the state both forms share
+        int size = serialize(field).length - serialize(new RangeDateField()).length;
+        int legacySize = serialize(legacy).length - serialize(new LegacyState()).length;
+        assertTrue("Serialized size " + size + " is not below a quarter of " + legacySize, size < legacySize / 4);
+    }
+
+    @Test
+    public void restoresRestrictionsAndStyles() throws Exception {
+        RangeDateField field = createField();
+        field.paintContent(new RecordingPaintTarget(true));
+        RangeDateField restored = deserialize(serialize(field));
+        assertEquals(field.getExcludedDays(), restored.getExcludedDays());
+        assertArrayEquals(field.getExcludeDates(), restored.getExcludeDates());
+        assertEquals(field.getValidFromDate(), restored.getValidFromDate());
+        assertEquals(field.getValidToDate(), restored.getValidToDate());
+        for (Date date : days()) {
+            assertEquals(field.getDateStyleNames(date), restored.getDateStyleNames(date));
+        }
+    }
+
+    /**
+     * @return  A field with every third day of 2013 excluded, every other day styled as booked and every seventh day
+     * styled as a holiday
+     */
+    private static RangeDateField createField() {
+        RangeDateField field = new RangeDateField();
+        List<Date> days = days();
+        List<Date> excluded = new ArrayList<Date>();
+        for (int d = 0; d < days.size(); d++) {
+            if (d % 3 == 0) excluded.add(days.get(d));
+            if (d % 2 == 0) field.addDateStyleName(days.get(d), "booked");
+            if (d % 7 == 0) field.addDateStyleName(days.get(d), "holiday");
+        }
+        field.setExcludeDates(excluded.toArray(new Date[excluded.size()]));
+        field.setValidFromDate(days.get(0));
+        field.setValidToDate(days.get(days.size() - 1));
+        return field;
+    }
+
+    /**
+     * @return  The start of each day of 2013
+     */
+    private static List<Date> days() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2013, Calendar.JANUARY, 1);
+        List<Date> days = new ArrayList<Date>();
+        while (calendar.get(Calendar.YEAR) == 2013) {
+            days.add(calendar.getTime());
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return days;
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static RangeDateField deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        return (RangeDateField) in.readObject();
+    }
+}
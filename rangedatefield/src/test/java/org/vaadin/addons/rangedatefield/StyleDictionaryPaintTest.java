@@ -0,0 +1,81 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.ClientDateData;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+import org.vaadin.addons.rangedatefield.client.VRangeDateField;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Applies full and delta paints to the client side date data and checks that style names are sent once per
+ * full update and that the ids of the dictionary decode to the styles of the field
+ */
+public class StyleDictionaryPaintTest {
+    private static final int DAY = EpochDays.of(2013, 5, 1);
+
+    @Test
+    public void styleNamesAreSentOncePerFullUpdate() throws Exception {
+        RangeDateField field = new RangeDateField();
+        ClientDateData client = new ClientDateData();
+        field.addDateStyleName(toDate(DAY), "a");
+        field.addDateStyleName(toDate(DAY), "b");
+        field.addDateStyleName(toDate(DAY + 1), "b");
+        RecordingPaintTarget full = paint(field, client, true);
+        assertArrayEquals(new Object[]{"a", "b"}, (Object[]) full.getAttribute(VRangeDateField.STYLE_NAMES_PARAM));
+        assertArrayEquals(new Object[]{"0,1:" + DAY, "1:" + (DAY + 1)},
+                (Object[]) full.getAttribute(VRangeDateField.DATE_STYLE_NAMES_PARAM));
+        assertSameStyles(field, client);
+
+        // only the new style gets an id
+        field.addDateStyleName(toDate(DAY + 2), "c");
+        field.addDateStyleName(toDate(DAY + 2), "a");
+        field.removeDateStyleName(toDate(DAY), "a");
+        RecordingPaintTarget delta = paint(field, client, false);
+        assertArrayEquals(new Object[]{"c"}, (Object[]) delta.getAttribute(VRangeDateField.STYLE_NAMES_PARAM));
+        assertArrayEquals(new Object[]{"2,0:" + (DAY + 2)},
+                (Object[]) delta.getAttribute(VRangeDateField.DATE_STYLE_NAMES_ADDED_PARAM));
+        assertSameStyles(field, client);
+
+        field.removeDateStyleName(toDate(DAY + 1), "b");
+        field.addDateStyleName(toDate(DAY + 3), "c");
+        RecordingPaintTarget known = paint(field, client, false);
+        assertNull(known.getAttribute(VRangeDateField.STYLE_NAMES_PARAM));
+        assertSameStyles(field, client);
+
+        // a full update assigns the ids again, only to the styles still in use
+        field.addDateStyleName(toDate(DAY + 4), "d");
+        RecordingPaintTarget again = paint(field, client, true);
+        assertEquals(Arrays.asList("b", "c", "a", "d"),
+                Arrays.asList((Object[]) again.getAttribute(VRangeDateField.STYLE_NAMES_PARAM)));
+        assertSameStyles(field, client);
+    }
+
+    private static void assertSameStyles(RangeDateField field, ClientDateData client) {
+        for (int day = DAY - 1; day <= DAY + 5; day++) {
+            List<String> styles = client.getDayStyles(day);
+            assertEquals(EpochDays.format(day), field.getDateStyleNames(toDate(day)),
+                    styles != null ? styles : Collections.<String>emptyList());
+        }
+    }
+
+    private static Date toDate(int day) {
+        return RangeDateFieldUtils.toDate(day, TimeZone.getDefault());
+    }
+
+    private static RecordingPaintTarget paint(RangeDateField field, ClientDateData client, boolean fullRepaint)
+            throws Exception {
+        RecordingPaintTarget target = new RecordingPaintTarget(fullRepaint);
+        field.paintContent(target);
+        client.update(target.getClientAttributes());
+        return target;
+    }
+}
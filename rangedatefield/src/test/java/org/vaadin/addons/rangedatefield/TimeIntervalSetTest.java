@@ -0,0 +1,99 @@
+package org.vaadin.addons.rangedatefield;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.client.EpochDays;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks merging of intervals in any order, lookups at the interval bounds and the days covered around a
+ * daylight saving change
+ */
+public class TimeIntervalSetTest {
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Helsinki");
+    // daylight saving time starts on 2013-03-31, the day is 23 hours long
+    private static final int DST_DAY = EpochDays.of(2013, 3, 31);
+
+    @Test
+    public void overlappingAndAdjacentIntervalsAreMerged() {
+        TimeIntervalSet set = new TimeIntervalSet.Builder()
+                .add(50, 60).add(10, 20).add(20, 30).add(15, 25).add(70, 70).add(40, 45).add(55, 58)
+                .build();
+        assertEquals(3, set.size());
+        assertInterval(set, 0, 10, 30);
+        assertInterval(set, 1, 40, 45);
+        assertInterval(set, 2, 50, 60);
+        assertEquals(set, new TimeIntervalSet.Builder().add(40, 45).add(10, 30).add(50, 60).build());
+        assertEquals(set, new TimeIntervalSet.Builder().addAll(set).build());
+        assertSame(TimeIntervalSet.EMPTY, new TimeIntervalSet.Builder().add(5, 5).add(7, 3).build());
+    }
+
+    @Test
+    public void manyIntervalsGrowTheBuilder() {
+        TimeIntervalSet.Builder builder = new TimeIntervalSet.Builder();
+        for (int i = 99; i >= 0; i--) {
+            builder.add(i * 10, i * 10 + 5);
+        }
+        TimeIntervalSet set = builder.build();
+        assertEquals(100, set.size());
+        for (int i = 0; i < 100; i++) {
+            assertInterval(set, i, i * 10, i * 10 + 5);
+        }
+    }
+
+    @Test
+    public void startsAreIncludedAndEndsExcluded() {
+        TimeIntervalSet set = new TimeIntervalSet.Builder().add(10, 20).add(30, 40).build();
+        assertFalse(set.contains(9));
+        assertTrue(set.contains(10));
+        assertTrue(set.contains(19));
+        assertFalse(set.contains(20));
+        assertFalse(set.contains(29));
+        assertTrue(set.contains(30));
+        assertFalse(set.contains(40));
+
+        assertFalse(set.overlaps(0, 10));
+        assertTrue(set.overlaps(0, 11));
+        assertTrue(set.overlaps(19, 21));
+        assertFalse(set.overlaps(20, 30));
+        assertTrue(set.overlaps(20, 31));
+        assertTrue(set.overlaps(5, 50));
+        assertFalse(set.overlaps(40, 50));
+        assertFalse(set.overlaps(15, 15));
+        assertFalse(TimeIntervalSet.EMPTY.overlaps(0, 100));
+    }
+
+    @Test
+    public void onlyWholeDaysAreCovered() {
+        TimeIntervalSet set = new TimeIntervalSet.Builder()
+                // the 23 hour day is covered from midnight to midnight
+                .add(time(DST_DAY, 0), time(DST_DAY + 1, 0))
+                // the day before misses its last minute
+                .add(time(DST_DAY - 3, 0), time(DST_DAY - 1, 23) + 59 * 60000L)
+                // covers one whole day in the middle of two partial ones
+                .add(time(DST_DAY + 2, 12), time(DST_DAY + 4, 1))
+                .build();
+        assertArrayEquals(new int[]{DST_DAY - 3, DST_DAY - 2, DST_DAY, DST_DAY + 3},
+                set.getCoveredDays(ZONE).toArray());
+        assertTrue(TimeIntervalSet.EMPTY.getCoveredDays(ZONE).isEmpty());
+    }
+
+    private static void assertInterval(TimeIntervalSet set, int index, long start, long end) {
+        assertEquals(start, set.getStart(index));
+        assertEquals(end, set.getEnd(index));
+    }
+
+    private static long time(int day, int hour) {
+        Calendar calendar = Calendar.getInstance(ZONE);
+        calendar.clear();
+        calendar.set(EpochDays.year(day), EpochDays.month(day) - 1, EpochDays.dayOfMonth(day), hour, 0);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,70 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import org.junit.Test;
+import org.vaadin.addons.rangedatefield.EpochDaySet;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that excluded days survive the trip from an {@link EpochDaySet} through the encoded bitset to the client
+ */
+public class DayBitSetTest {
+
+    @Test
+    public void decodesWhatWasEncoded() {
+        int today = EpochDays.of(2013, 5, 15);
+        assertRoundTrip(new int[]{today});
+        assertRoundTrip(new int[]{-40, -33, -32, -31, -1, 0, 1, 31, 32, 33});
+        // a character holds six days and a word 32, so both end inside the set
+        assertRoundTrip(new int[]{today, today + 5, today + 6, today + 31, today + 32, today + 63, today + 64});
+        Random random = new Random(2013);
+        for (int round = 0; round < 20; round++) {
+            int[] days = new int[1 + random.nextInt(300)];
+            for (int i = 0; i < days.length; i++) {
+                days[i] = today + random.nextInt(3 * 365) - 365;
+            }
+            assertRoundTrip(days);
+        }
+    }
+
+    @Test
+    public void emptySetStaysEmpty() {
+        DayBitSet decoded = DayBitSet.decode(DayBitSet.of(new int[0]).encode());
+        assertTrue(decoded.isEmpty());
+        assertArrayEquals(new int[0], decoded.toArray());
+    }
+
+    @Test
+    public void growsInBothDirections() {
+        int today = EpochDays.of(2013, 5, 15);
+        DayBitSet days = DayBitSet.of(new int[]{today});
+        days.add(today - 100);
+        days.add(today + 1000);
+        days.add(today - 101);
+        days.remove(today);
+        days.remove(today + 5000);
+        assertArrayEquals(new int[]{today - 101, today - 100, today + 1000}, days.toArray());
+        assertFalse(days.contains(today));
+
+        DayBitSet other = DayBitSet.decode(days.encode());
+        other.add(today);
+        days.addAll(other);
+        assertArrayEquals(new int[]{today - 101, today - 100, today, today + 1000}, days.toArray());
+        days.removeAll(DayBitSet.of(new int[]{today - 100, today + 1000}));
+        assertArrayEquals(new int[]{today - 101, today}, days.toArray());
+    }
+
+    private static void assertRoundTrip(int[] days) {
+        EpochDaySet set = EpochDaySet.of(days);
+        DayBitSet decoded = DayBitSet.decode(DayBitSet.of(set.toArray()).encode());
+        assertArrayEquals(set.toArray(), decoded.toArray());
+        for (int i = 0; i < set.size(); i++) {
+            assertTrue(decoded.contains(set.get(i)));
+            if (!set.contains(set.get(i) + 1)) assertFalse(decoded.contains(set.get(i) + 1));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DayCellCacheTest {
+    private int created = 0;
+
+    // every seventh day is disabled
+    private final DayCellCache cells = new DayCellCache(new DayCellCache.CellFactory() {
+        public DayCellCache.Cell createCell(int epochDay) {
+            created++;
+            return new DayCellCache.Cell(Math.abs(epochDay) % 7 == 0, null);
+        }
+    });
+
+    @Test
+    public void countsLikeADayByDayCheck() {
+        int from = EpochDays.of(2012, 11, 20);
+        for (int to = from - 1; to < from + 800; to += 13) {
+            int expected = 0;
+            for (int day = from; day <= to; day++) {
+                if (Math.abs(day) % 7 == 0) expected++;
+            }
+            assertEquals(expected, cells.countDisabled(from, to));
+        }
+    }
+
+    @Test
+    public void longSpansKeepTheCachedMonths() {
+        int today = EpochDays.of(2013, 5, 15);
+        cells.get(today);
+        int afterGet = created;
+        cells.countDisabled(today, today + 3 * 365);
+        int afterFirstCount = created;
+        cells.get(today);
+        assertEquals(afterFirstCount, created);
+        // only the cached month is not evaluated again
+        cells.countDisabled(today, today + 3 * 365);
+        assertEquals(afterFirstCount + afterFirstCount - afterGet, created);
+    }
+
+    @Test
+    public void invalidatedMonthsAreCountedAgain() {
+        int day = EpochDays.of(2013, 5, 15);
+        cells.get(day);
+        cells.countDisabled(day, day + 10);
+        int afterFirstCount = created;
+        cells.invalidateDay(day);
+        cells.countDisabled(day, day + 10);
+        assertEquals(afterFirstCount + 31, created);
+    }
+
+    @Test
+    public void countsAreDroppedWithTheirMonths() {
+        DayCellCache twoMonths = new DayCellCache(new DayCellCache.CellFactory() {
+            public DayCellCache.Cell createCell(int epochDay) {
+                created++;
+                return new DayCellCache.Cell(false, null);
+            }
+        }, 2);
+        int may = EpochDays.of(2013, 5, 1);
+        twoMonths.get(may);
+        twoMonths.get(EpochDays.of(2013, 6, 1));
+        twoMonths.get(EpochDays.of(2013, 7, 1));
+        assertEquals(92, created);
+        // May was dropped, and counting it does not cache it again
+        twoMonths.countDisabled(may, may + 30);
+        twoMonths.countDisabled(may, may + 30);
+        assertEquals(92 + 31 + 31, created);
+    }
+}
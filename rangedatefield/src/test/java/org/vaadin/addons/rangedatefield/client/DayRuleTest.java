@@ -0,0 +1,210 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Compares every kind of rule with the same rule evaluated with {@link Calendar}, day by day over two centuries
+ * that include the leap year 2000 and the common year 1900, and checks that every rule survives the text form
+ */
+public class DayRuleTest {
+    private static final int ANCHOR = EpochDays.of(2013, 1, 1);
+
+    /**
+     * The fields of a day as given by {@link Calendar}
+     */
+    private static class Day {
+        final int epochDay;
+        final int year;
+        final int month;
+        final int dayOfMonth;
+        final int dayOfWeek;
+        final int lengthOfMonth;
+
+        Day(int epochDay, Calendar calendar) {
+            this.epochDay = epochDay;
+            year = calendar.get(Calendar.YEAR);
+            month = calendar.get(Calendar.MONTH) + 1;
+            dayOfMonth = calendar.get(Calendar.DAY_OF_MONTH);
+            dayOfWeek = calendar.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+            lengthOfMonth = calendar.getActualMaximum(Calendar.DAY_OF_MONTH);
+        }
+
+        boolean isWeekend(int dayOfMonth) {
+            int dayOfWeek = (this.dayOfWeek + dayOfMonth - this.dayOfMonth + 35) % 7;
+            return dayOfWeek == 0 || dayOfWeek == 6;
+        }
+    }
+
+    /**
+     * Decides whether a day matches without using {@link EpochDays}
+     */
+    private interface Expectation {
+        boolean matches(Day day);
+    }
+
+    @Test
+    public void weekdays() {
+        assertMatches(DayRule.weekdays(0, 6), "W65", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfWeek == 0 || day.dayOfWeek == 6;
+            }
+        });
+    }
+
+    @Test
+    public void everyNthWeek() {
+        assertMatches(DayRule.everyNthWeek(4, 3, ANCHOR), "E4,3," + ANCHOR, new Expectation() {
+            public boolean matches(Day day) {
+                // the anchor is a Tuesday, the first matching Thursday is two days later
+                return ((day.epochDay - ANCHOR - 2) % 21 + 21) % 21 == 0;
+            }
+        });
+    }
+
+    @Test
+    public void nthWeekdayOfMonth() {
+        assertMatches(DayRule.nthWeekdayOfMonth(2, 1), "N2,1", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfWeek == 1 && day.dayOfMonth >= 8 && day.dayOfMonth <= 14;
+            }
+        });
+        assertMatches(DayRule.nthWeekdayOfMonth(5, 3), "N5,3", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfWeek == 3 && day.dayOfMonth >= 29;
+            }
+        });
+        assertMatches(DayRule.nthWeekdayOfMonth(-1, 5), "N-1,5", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfWeek == 5 && day.dayOfMonth + 7 > day.lengthOfMonth;
+            }
+        });
+        assertMatches(DayRule.nthWeekdayOfMonth(-2, 0), "N-2,0", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfWeek == 0 && day.dayOfMonth + 7 <= day.lengthOfMonth
+                        && day.dayOfMonth + 14 > day.lengthOfMonth;
+            }
+        });
+    }
+
+    @Test
+    public void dayOfMonth() {
+        assertMatches(DayRule.dayOfMonth(31), "D31", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfMonth == 31;
+            }
+        });
+        assertMatches(DayRule.dayOfMonth(-1), "D-1", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfMonth == day.lengthOfMonth;
+            }
+        });
+        assertMatches(DayRule.dayOfMonth(-29), "D-29", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfMonth == day.lengthOfMonth - 28;
+            }
+        });
+    }
+
+    @Test
+    public void lastBusinessDayOfMonth() {
+        assertMatches(DayRule.lastBusinessDayOfMonth(), "B", new Expectation() {
+            public boolean matches(Day day) {
+                int last = day.lengthOfMonth;
+                while (day.isWeekend(last)) last--;
+                return day.dayOfMonth == last;
+            }
+        });
+    }
+
+    @Test
+    public void yearly() {
+        assertMatches(DayRule.yearly(2, 29), "Y2,29", new Expectation() {
+            public boolean matches(Day day) {
+                return day.month == 2 && day.dayOfMonth == 29;
+            }
+        });
+        assertEquals(51, count(DayRule.yearly(2, 29)));
+        assertEquals(0, count(DayRule.yearly(4, 31)));
+    }
+
+    @Test
+    public void interval() {
+        final int to = ANCHOR + 45;
+        assertMatches(DayRule.interval(ANCHOR, to), "I" + ANCHOR + "," + to, new Expectation() {
+            public boolean matches(Day day) {
+                return day.epochDay >= ANCHOR && day.epochDay <= to;
+            }
+        });
+    }
+
+    @Test
+    public void composites() {
+        DayRule weekend = DayRule.weekdays(0, 6);
+        DayRule lastDay = DayRule.dayOfMonth(-1);
+        DayRule year2000 = DayRule.interval(EpochDays.of(2000, 1, 1), EpochDays.of(2000, 12, 31));
+        assertMatches(DayRule.union(weekend, lastDay), "U(W65;D-1)", new Expectation() {
+            public boolean matches(Day day) {
+                return day.dayOfWeek == 0 || day.dayOfWeek == 6 || day.dayOfMonth == day.lengthOfMonth;
+            }
+        });
+        assertMatches(DayRule.intersection(lastDay, year2000), "A(D-1;" + year2000.encode() + ")",
+                new Expectation() {
+                    public boolean matches(Day day) {
+                        return day.year == 2000 && day.dayOfMonth == day.lengthOfMonth;
+                    }
+                });
+        assertMatches(DayRule.difference(DayRule.union(weekend, lastDay), weekend), "X(U(W65;D-1);W65)",
+                new Expectation() {
+                    public boolean matches(Day day) {
+                        return day.dayOfWeek != 0 && day.dayOfWeek != 6 && day.dayOfMonth == day.lengthOfMonth;
+                    }
+                });
+        assertEquals(12, count(DayRule.intersection(lastDay, year2000)));
+    }
+
+    @Test
+    public void rejectsMalformedText() {
+        String[] malformed = {"", "Q1", "W65)", "X(W65)", "U(W65", "U(W65,D1)", "D0", "N6,1", "E1,0,0", "Y13,1",
+                "I5,4", "W"};
+        for (String encoded : malformed) {
+            try {
+                DayRule.parse(encoded);
+                fail(encoded);
+            } catch (RuntimeException e) {
+                // expected
+            }
+        }
+    }
+
+    private static void assertMatches(DayRule rule, String encoded, Expectation expectation) {
+        assertEquals(encoded, rule.encode());
+        DayRule parsed = DayRule.parse(encoded);
+        assertEquals(rule, parsed);
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(1895, Calendar.JANUARY, 1);
+        int last = EpochDays.of(2105, 12, 31);
+        for (int day = EpochDays.of(1895, 1, 1); day <= last; day++) {
+            boolean expected = expectation.matches(new Day(day, calendar));
+            if (rule.matches(day) != expected || parsed.matches(day) != expected) {
+                fail(encoded + " " + EpochDays.format(day) + " should " + (expected ? "" : "not ") + "match");
+            }
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+        }
+    }
+
+    private static int count(DayRule rule) {
+        int count = 0;
+        for (int day = EpochDays.of(1895, 1, 1); day <= EpochDays.of(2105, 12, 31); day++) {
+            if (rule.matches(day)) count++;
+        }
+        return count;
+    }
+}
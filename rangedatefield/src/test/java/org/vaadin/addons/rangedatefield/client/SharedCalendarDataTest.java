@@ -0,0 +1,50 @@
+package org.vaadin.addons.rangedatefield.client;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SharedCalendarDataTest {
+    private static final String ID = "PID1";
+
+    private final SharedCalendarData.Listener listener = new SharedCalendarData.Listener() {
+        public void calendarDataChanged(SharedCalendarData data) {
+        }
+    };
+
+    @Test
+    public void dataIsKeptWhileAFieldListens() {
+        SharedCalendarData data = SharedCalendarData.get(null, ID);
+        data.update(null, null, null, null, null, null);
+        data.addListener(listener);
+        SharedCalendarData.release(null, ID);
+        assertSame(data, SharedCalendarData.get(null, ID));
+        data.removeListener(listener);
+        assertNotSame(data, SharedCalendarData.get(null, ID));
+        SharedCalendarData.release(null, ID);
+    }
+
+    @Test
+    public void dataIsKeptWhileTheComponentIsAttached() {
+        SharedCalendarData data = SharedCalendarData.get(null, ID);
+        data.update(null, null, null, null, null, null);
+        data.addListener(listener);
+        data.removeListener(listener);
+        assertSame(data, SharedCalendarData.get(null, ID));
+        SharedCalendarData.release(null, ID);
+        assertNotSame(data, SharedCalendarData.get(null, ID));
+        SharedCalendarData.release(null, ID);
+    }
+
+    @Test
+    public void listeningAgainLooksTheDataUp() {
+        SharedCalendarData data = SharedCalendarData.get(null, ID);
+        data.addListener(listener);
+        data.removeListener(listener);
+        data.addListener(listener);
+        assertSame(data, SharedCalendarData.get(null, ID));
+        data.removeListener(listener);
+        SharedCalendarData.release(null, ID);
+    }
+}